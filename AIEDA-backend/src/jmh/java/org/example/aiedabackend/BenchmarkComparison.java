@@ -0,0 +1,105 @@
+package org.example.aiedabackend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 对比两次JMH运行的结果（-rf json 输出），列出每个基准的变化
+ * <p>
+ * 吞吐量模式（thrpt）越大越好，其余模式（avgt、sample、ss）越小越好。变差超过阈值、且差值大于两次结果误差之和时
+ * 判定为退化，存在退化时以退出码1结束，便于在提交前或流水线中检查。
+ * <pre>
+ * mvn -B -Pbenchmark test-compile exec:exec@jmh-compare -Djmh.baseline=src/jmh/baseline.json -Djmh.threshold=10
+ * </pre>
+ */
+public class BenchmarkComparison {
+
+    private record Result(String mode, double score, double error, String unit) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: BenchmarkComparison <基线结果.json> <本次结果.json> [阈值百分比，默认10]");
+            System.exit(2);
+        }
+        File baselineFile = new File(args[0]);
+        File currentFile = new File(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        if (!baselineFile.isFile()) {
+            System.err.println("基线结果不存在: " + baselineFile + "，可将本次结果复制为基线: cp " + currentFile + " " + baselineFile);
+            System.exit(2);
+        }
+        if (!currentFile.isFile()) {
+            System.err.println("本次结果不存在: " + currentFile + "，请先运行 exec:exec@jmh");
+            System.exit(2);
+        }
+
+        Map<String, Result> baseline = load(baselineFile);
+        Map<String, Result> current = load(currentFile);
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s  %s%n", entry.getKey(), "-", now.score, "new", now.unit);
+                continue;
+            }
+            if (!before.unit.equals(now.unit)) {
+                System.out.printf("%-90s 单位不一致（%s / %s），跳过%n", entry.getKey(), before.unit, now.unit);
+                continue;
+            }
+            boolean higherIsBetter = "thrpt".equals(now.mode);
+            double change = (now.score - before.score) / before.score * 100;
+            double worse = higherIsBetter ? -change : change;
+            boolean significant = Math.abs(now.score - before.score) > safe(before.error) + safe(now.error);
+            String verdict = "";
+            if (worse > threshold && significant) {
+                verdict = "  退化";
+                regressions++;
+            } else if (-worse > threshold && significant) {
+                verdict = "  改进";
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%  %s%s%n",
+                    entry.getKey(), before.score, now.score, change, now.unit, verdict);
+        }
+        for (String missing : baseline.keySet()) {
+            if (!current.containsKey(missing)) {
+                System.out.printf("%-90s 本次未运行%n", missing);
+            }
+        }
+        if (regressions > 0) {
+            System.out.printf("%d 个基准退化超过 %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 读取结果文件：基准名（含参数）-> 主指标
+     */
+    private static Map<String, Result> load(File file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonNode node : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(node.path("benchmark").asText());
+            JsonNode params = node.path("params");
+            for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                key.append(key.indexOf(":") < 0 ? ":" : ",").append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            JsonNode metric = node.path("primaryMetric");
+            results.put(key.toString(), new Result(node.path("mode").asText(),
+                    metric.path("score").asDouble(), metric.path("scoreError").asDouble(), metric.path("scoreUnit").asText()));
+        }
+        return results;
+    }
+
+    private static double safe(double error) {
+        return Double.isNaN(error) ? 0 : error;
+    }
+}
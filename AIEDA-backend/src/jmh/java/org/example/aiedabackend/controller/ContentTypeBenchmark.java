@@ -0,0 +1,52 @@
+package org.example.aiedabackend.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件预览时按文件名确定Content-Type的开销（{@link FileController#determineContentType}）
+ * <p>
+ * 文件名按项目中常见的分布混合：文档、图片、判断链末尾的代码文件，以及不在列表中、
+ * 需要走完整条判断链再回退到上传时MIME类型的Verilog/约束文件。
+ * <pre>
+ * mvn -B -Pbenchmark test-compile exec:exec@jmh -Djmh.include=ContentTypeBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentTypeBenchmark {
+
+    private static final String[][] FILES = {
+            {"README.md", "text/markdown"},
+            {"设计说明.PDF", "application/pdf"},
+            {"waveform.png", "image/png"},
+            {"testbench.py", "text/x-python"},
+            {"build.yml", "application/x-yaml"},
+            {"alu_32bit.v", "application/octet-stream"},
+            {"top_module.sv", null},
+            {"pins.xdc", ""},
+    };
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void determineContentType(Blackhole blackhole) {
+        for (String[] file : FILES) {
+            blackhole.consume(FileController.determineContentType(file[0], file[1]));
+        }
+    }
+}
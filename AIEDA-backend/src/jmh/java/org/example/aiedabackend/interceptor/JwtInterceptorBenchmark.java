@@ -0,0 +1,114 @@
+package org.example.aiedabackend.interceptor;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.example.aiedabackend.util.JwtUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 鉴权拦截器开销：原先每个请求三次解析验签（每次重建密钥），与只解析一次、以及验证结果缓存命中时的对比
+ * <pre>
+ * mvn -B -Pbenchmark test-compile exec:exec@jmh -Djmh.include=JwtInterceptorBenchmark -Djmh.args="-prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtInterceptorBenchmark {
+
+    private static final String SECRET = "aieda-benchmark-secret-".repeat(3);
+
+    private String token;
+    private JwtInterceptor uncachedInterceptor;
+    private JwtInterceptor cachedInterceptor;
+
+    @Setup
+    public void setUp() {
+        uncachedInterceptor = interceptor(jwtUtil(0));
+        cachedInterceptor = interceptor(jwtUtil(10000));
+        token = jwtUtil(0).generateToken(10001, "benchmark-user");
+    }
+
+    private static JwtUtil jwtUtil(long cacheMaxSize) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaxSize", cacheMaxSize);
+        ReflectionTestUtils.setField(jwtUtil, "cacheTtlSeconds", 300L);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    private static JwtInterceptor interceptor(JwtUtil jwtUtil) {
+        JwtInterceptor interceptor = new JwtInterceptor();
+        ReflectionTestUtils.setField(interceptor, "jwtUtil", jwtUtil);
+        return interceptor;
+    }
+
+    private MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/chat/sessions");
+        request.addHeader("token", token);
+        return request;
+    }
+
+    /**
+     * 原先的 preHandle：validateToken、extractUsername、getUserIdFromToken 各自重建密钥并完整解析验签
+     */
+    @Benchmark
+    public Object legacyTripleParse() {
+        MockHttpServletRequest request = request();
+        String header = request.getHeader("token");
+        if (!legacyParse(header).getExpiration().before(new Date())) {
+            request.setAttribute("username", legacyParse(header).get("username", String.class));
+            request.setAttribute("userId", Integer.valueOf(legacyParse(header).get("userId").toString()));
+        }
+        return request.getAttribute("userId");
+    }
+
+    private static Claims legacyParse(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    /**
+     * 只解析验签一次，不使用缓存（每个请求都是新token时的开销）
+     */
+    @Benchmark
+    public Object singleParse() throws Exception {
+        MockHttpServletRequest request = request();
+        uncachedInterceptor.preHandle(request, new MockHttpServletResponse(), null);
+        return request.getAttribute("userId");
+    }
+
+    /**
+     * 验证结果缓存命中：只计算token摘要
+     */
+    @Benchmark
+    public Object cachedVerification() throws Exception {
+        MockHttpServletRequest request = request();
+        cachedInterceptor.preHandle(request, new MockHttpServletResponse(), null);
+        return request.getAttribute("userId");
+    }
+}
@@ -0,0 +1,146 @@
+package org.example.aiedabackend.relay;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * finish标签过滤基准：在录制事件流的全部delta上对比原先的 processAndFilterDelta（去掉日志）与状态机过滤器
+ * <pre>
+ * mvn -B -Pbenchmark test-compile exec:exec@jmh -Djmh.include=FinishTagFilterBenchmark -Djmh.args="-prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FinishTagFilterBenchmark {
+
+    private List<String> deltas;
+
+    @Setup
+    public void loadRecordedDeltas() throws IOException {
+        byte[] stream;
+        try (InputStream in = FinishTagFilterBenchmark.class.getResourceAsStream("/relay/upstream-stream.sse")) {
+            if (in == null) {
+                throw new IOException("找不到录制数据: /relay/upstream-stream.sse");
+            }
+            stream = in.readAllBytes();
+        }
+        deltas = new ArrayList<>();
+        SseFrameParser parser = new SseFrameParser((eventType, lastEventId, data, length) -> {
+            try {
+                for (UpstreamEvent event : UpstreamFrameDecoder.decode(data, length)) {
+                    if (event.kind() == UpstreamEvent.Kind.CHUNK && event.text() != null) {
+                        deltas.add(event.text());
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return false;
+        });
+        parser.feed(stream, 0, stream.length);
+    }
+
+    @Benchmark
+    public void legacyRegexFilter(Blackhole blackhole) {
+        StringBuilder fullDelta = new StringBuilder();
+        for (String delta : deltas) {
+            blackhole.consume(legacyProcessAndFilterDelta(delta, fullDelta));
+        }
+    }
+
+    @Benchmark
+    public void stateMachineFilter(Blackhole blackhole) {
+        FinishTagFilter filter = new FinishTagFilter();
+        for (String delta : deltas) {
+            blackhole.consume(filter.filter(delta));
+        }
+        blackhole.consume(filter.flush());
+    }
+
+    /**
+     * 原 ChatServiceImpl.processAndFilterDelta 的逻辑（去掉日志输出）
+     */
+    private static String legacyProcessAndFilterDelta(String delta, StringBuilder fullDelta) {
+        fullDelta.append(delta);
+        String accumulated = fullDelta.toString();
+        StringBuilder result = new StringBuilder();
+        StringBuilder remaining = new StringBuilder();
+
+        if (accumulated.length() > 50) {
+            fullDelta.setLength(0);
+            return accumulated.replaceAll("(?i)</?finish>", "");
+        }
+
+        int i = 0;
+        while (i < accumulated.length()) {
+            char c = accumulated.charAt(i);
+            if (c == '<') {
+                int tagEnd = legacyFindCompleteTag(accumulated, i);
+                if (tagEnd == -1) {
+                    String potentialTag = accumulated.substring(i, Math.min(i + 50, accumulated.length()));
+                    if (!potentialTag.matches("<\\s*[a-zA-Z/].*") || potentialTag.matches(".*[<>=+\\-*/].*")) {
+                        result.append(c);
+                        i++;
+                        continue;
+                    }
+                    if (accumulated.substring(i).length() > 100) {
+                        result.append(accumulated.substring(i));
+                        break;
+                    }
+                    remaining.append(accumulated.substring(i));
+                    break;
+                }
+                String tag = accumulated.substring(i, tagEnd + 1);
+                if (!tag.matches("(?i)</?finish>")) {
+                    result.append(tag);
+                }
+                i = tagEnd + 1;
+            } else {
+                result.append(c);
+                i++;
+            }
+        }
+
+        fullDelta.setLength(0);
+        fullDelta.append(remaining);
+        return result.toString();
+    }
+
+    private static int legacyFindCompleteTag(String text, int startPos) {
+        int pos = startPos + 1;
+        boolean inQuotes = false;
+        char quoteChar = 0;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (!inQuotes && (c == '"' || c == '\'')) {
+                inQuotes = true;
+                quoteChar = c;
+            } else if (inQuotes && c == quoteChar) {
+                inQuotes = false;
+            } else if (!inQuotes && c == '>') {
+                return pos;
+            }
+            pos++;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.aiedabackend.relay;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个token的SSE帧构建开销：原先的 replace链 + String.format + SseEmitter.event() + 反射flush
+ * 与 {@link SseFrameWriter} 的对比（不包含实际网络写出，两者写出路径相同）
+ * <pre>
+ * mvn -B -Pbenchmark test-compile exec:exec@jmh -Djmh.include=SseFrameWriterBenchmark -Djmh.args="-prof gc"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseFrameWriterBenchmark {
+
+    @Param({"Verilog;", "assign sum = a + b; // \"进位\" \\ 输出"})
+    public String delta;
+
+    private SseEmitter emitter;
+    private SseFrameWriter writer;
+
+    @Setup
+    public void setUp() {
+        emitter = new SseEmitter();
+        writer = new SseFrameWriter(emitter);
+    }
+
+    @Benchmark
+    public Set<ResponseBodyEmitter.DataWithMediaType> legacyFormatAndBuilder(Blackhole blackhole) {
+        String cleanContent = delta
+                .replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r")
+                .replace("\t", "\\t");
+        String deltaJson = String.format("{\"type\":\"delta\",\"content\":\"%s\"}", cleanContent);
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = SseEmitter.event()
+                .name("message")
+                .data(deltaJson)
+                .reconnectTime(3000)
+                .build();
+
+        // 原先每个token都执行的反射flush（handler字段声明在父类上，这里总是抛出异常后被吞掉）
+        try {
+            java.lang.reflect.Field field = emitter.getClass().getDeclaredField("handler");
+            field.setAccessible(true);
+            Object handler = field.get(emitter);
+            if (handler != null) {
+                handler.getClass().getMethod("flush").invoke(handler);
+            }
+        } catch (Exception flushEx) {
+            blackhole.consume(flushEx.getMessage());
+        }
+        return frame;
+    }
+
+    @Benchmark
+    public Set<ResponseBodyEmitter.DataWithMediaType> preSerializedWriter() {
+        return writer.deltaFrame(delta);
+    }
+}
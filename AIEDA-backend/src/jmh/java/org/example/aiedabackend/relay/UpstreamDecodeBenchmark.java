@@ -0,0 +1,167 @@
+package org.example.aiedabackend.relay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上游事件帧解码基准：在录制的事件流上对比原先的Map解析方式与类型化解码
+ * <ul>
+ *     <li>mapBasedNewMapper：原实现，每帧新建ObjectMapper并解析为Map，再逐层强转取字段</li>
+ *     <li>mapBasedSharedMapper：同上，但共用一个ObjectMapper，用于区分创建ObjectMapper与构建Map的开销</li>
+ *     <li>typedBinding：共享ObjectReader绑定为 {@link UpstreamFrame} 记录</li>
+ *     <li>streamingFastPath：{@link UpstreamFrameDecoder#decode}，流式解析只取需要的字段</li>
+ *     <li>parseAndDecode：按转发时的8KB读取块把原始字节流交给 {@link SseFrameParser} 切帧并解码，即转发热路径的完整上游处理</li>
+ * </ul>
+ * 每次操作解码整条录制流（约400帧），配合 {@code -prof gc} 查看每次操作的分配量。
+ * <pre>
+ * mvn -B -Pbenchmark test-compile exec:exec@jmh -Djmh.include=UpstreamDecodeBenchmark -Djmh.args="-prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpstreamDecodeBenchmark {
+
+    private static final ObjectMapper SHARED_MAPPER = new ObjectMapper();
+
+    // 与 ChatServiceImpl 中阻塞转发的读取缓冲区大小一致
+    private static final int READ_CHUNK_SIZE = 8192;
+
+    private byte[] stream;
+    private List<byte[]> frames;
+
+    @Setup
+    public void loadRecordedStream() throws IOException {
+        stream = loadResource("/relay/upstream-stream.sse");
+        frames = new ArrayList<>();
+        SseFrameParser parser = new SseFrameParser((eventType, lastEventId, data, length) -> {
+            frames.add(Arrays.copyOf(data, length));
+            return false;
+        });
+        parser.feed(stream, 0, stream.length);
+    }
+
+    @Benchmark
+    public void mapBasedNewMapper(Blackhole blackhole) throws IOException {
+        for (byte[] frame : frames) {
+            decodeWithMaps(new ObjectMapper(), new String(frame, StandardCharsets.UTF_8), blackhole);
+        }
+    }
+
+    @Benchmark
+    public void mapBasedSharedMapper(Blackhole blackhole) throws IOException {
+        for (byte[] frame : frames) {
+            decodeWithMaps(SHARED_MAPPER, new String(frame, StandardCharsets.UTF_8), blackhole);
+        }
+    }
+
+    @Benchmark
+    public void typedBinding(Blackhole blackhole) throws IOException {
+        for (byte[] frame : frames) {
+            blackhole.consume(UpstreamFrameDecoder.decodeFrame(frame, frame.length).toEvents());
+        }
+    }
+
+    @Benchmark
+    public void streamingFastPath(Blackhole blackhole) throws IOException {
+        for (byte[] frame : frames) {
+            blackhole.consume(UpstreamFrameDecoder.decode(frame, frame.length));
+        }
+    }
+
+    @Benchmark
+    public void parseAndDecode(Blackhole blackhole) {
+        SseFrameParser parser = new SseFrameParser((eventType, lastEventId, data, length) -> {
+            try {
+                blackhole.consume(UpstreamFrameDecoder.decode(data, length));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return false;
+        });
+        for (int offset = 0; offset < stream.length; offset += READ_CHUNK_SIZE) {
+            parser.feed(stream, offset, Math.min(READ_CHUNK_SIZE, stream.length - offset));
+        }
+    }
+
+    /**
+     * 原先 processSSEEventData / processSingleEvent 中的字段提取方式
+     */
+    @SuppressWarnings("unchecked")
+    private static void decodeWithMaps(ObjectMapper mapper, String jsonData, Blackhole blackhole) throws IOException {
+        Map<String, Object> eventData = mapper.readValue(jsonData, Map.class);
+        if ("connection".equals(eventData.get("type"))) {
+            blackhole.consume(eventData.get("message"));
+            return;
+        }
+        List<Map<String, Object>> events = null;
+        if (eventData.containsKey("events")) {
+            events = (List<Map<String, Object>>) eventData.get("events");
+        } else if ("event".equals(eventData.get("type"))) {
+            Map<String, Object> data = (Map<String, Object>) eventData.get("data");
+            Map<String, Object> innerData = data != null ? (Map<String, Object>) data.get("data") : null;
+            if (innerData != null && Boolean.TRUE.equals(innerData.get("batch"))) {
+                events = (List<Map<String, Object>>) innerData.get("events");
+            }
+        }
+        if (events == null) {
+            return;
+        }
+        for (Map<String, Object> event : events) {
+            String sessionId = (String) event.get("session_id");
+            String userId = (String) event.get("user_id");
+            String eventType = (String) event.get("event");
+            String tool = (String) event.get("tool");
+            Map<String, Object> data = (Map<String, Object>) event.get("data");
+            if ((sessionId == null || userId == null || eventType == null) && data != null) {
+                if (sessionId == null) sessionId = (String) data.get("session_id");
+                if (userId == null) userId = (String) data.get("user_id");
+                if (eventType == null) eventType = (String) data.get("event");
+                if (tool == null) tool = (String) data.get("tool");
+            }
+            blackhole.consume(sessionId);
+            blackhole.consume(userId);
+            blackhole.consume(tool);
+            if ("llm_tool.chunk".equals(eventType)) {
+                Map<String, Object> payload = (Map<String, Object>) event.get("payload");
+                if (payload == null && data != null) {
+                    payload = (Map<String, Object>) data.get("payload");
+                }
+                if (payload != null && payload.get("delta") != null) {
+                    blackhole.consume(payload.get("delta").toString());
+                }
+            }
+        }
+    }
+
+    private static byte[] loadResource(String name) throws IOException {
+        try (InputStream in = UpstreamDecodeBenchmark.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("找不到录制数据: " + name);
+            }
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import org.example.aiedabackend.po.Record;
+import org.example.aiedabackend.util.ContentCodec;
+import org.example.aiedabackend.vo.RecordVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 长内容压缩存储：读取一个会话全部历史记录（查询 + 解压 + 转换为VO）的耗时，与按原文存储的对比
+ * <p>
+ * 准备数据时把两种存储方式下记录内容占用的字节数打印到控制台。默认使用H2内存库，
+ * 通过 -Dbench.jdbc.url / -Dbench.jdbc.user / -Dbench.jdbc.password 指向MySQL（表结构按 createTable.sql 预先建好，
+ * 会话 bench.sid 与 bench.sid+1 需已存在）可以测到网络传输量减少的效果。
+ * <pre>
+ * mvn -B -Pbenchmark test-compile exec:exec@jmh -Djmh.include=RecordCompressionBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordCompressionBenchmark {
+
+    private static final String SELECT_SQL = "SELECT rid, sid, uid, direction, content, content_data, content_length, " +
+            "sequence, type, create_time FROM records WHERE sid = ? ORDER BY sequence";
+
+    // 会话中的记录数，用户消息短、AI回复长
+    @Param({"100"})
+    private int records;
+
+    private JdbcTemplate jdbcTemplate;
+    private int plainSid;
+    private int compressedSid;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String url = System.getProperty("bench.jdbc.url", "jdbc:h2:mem:compression;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url,
+                System.getProperty("bench.jdbc.user", "sa"), System.getProperty("bench.jdbc.password", ""));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        if (url.startsWith("jdbc:h2:")) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS records (rid INT PRIMARY KEY, sid INT NOT NULL, " +
+                    "uid INT NOT NULL, direction BOOLEAN NOT NULL, content LONGTEXT NOT NULL, content_data LONGBLOB, " +
+                    "content_length INT, sequence INT NOT NULL, type INT NOT NULL, create_time DATETIME NOT NULL)");
+        }
+        plainSid = Integer.getInteger("bench.sid", 1);
+        compressedSid = plainSid + 1;
+        tearDown();
+
+        ContentCodec codec = new ContentCodec();
+        ReflectionTestUtils.setField(codec, "enabled", true);
+        ReflectionTestUtils.setField(codec, "thresholdChars", 4096);
+        ReflectionTestUtils.setField(codec, "prefixChars", 1024);
+        ReflectionTestUtils.setField(codec, "level", 6);
+
+        Random random = new Random(42);
+        int rid = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(rid), 0) FROM records", Integer.class);
+        for (int sequence = 1; sequence <= records; sequence++) {
+            boolean user = sequence % 2 == 1;
+            String content = user ? "请检查这个模块的时序并给出修改建议 #" + sequence : generation(random);
+            insert(++rid, plainSid, sequence, user, content, null);
+            insert(++rid, compressedSid, sequence, user, content, codec.encode(content));
+        }
+        System.out.printf("%n内容存储字节数 - 原文: %d, 压缩: %d%n", storedBytes(plainSid), storedBytes(compressedSid));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM records WHERE sid IN (?, ?)", plainSid, compressedSid);
+    }
+
+    private void insert(int rid, int sid, int sequence, boolean user, String content, ContentCodec.Encoded encoded) {
+        jdbcTemplate.update("INSERT INTO records (rid, sid, uid, direction, content, content_data, content_length, " +
+                        "sequence, type, create_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", ps -> {
+            ps.setInt(1, rid);
+            ps.setInt(2, sid);
+            ps.setInt(3, 1);
+            ps.setBoolean(4, user);
+            ps.setString(5, encoded != null ? encoded.prefix() : content);
+            ps.setBytes(6, encoded != null ? encoded.data() : null);
+            ps.setObject(7, encoded != null ? encoded.length() : null, Types.INTEGER);
+            ps.setInt(8, sequence);
+            ps.setInt(9, user ? 1 : 2);
+            ps.setTimestamp(10, Timestamp.valueOf(LocalDateTime.now()));
+        });
+    }
+
+    private long storedBytes(int sid) {
+        return jdbcTemplate.queryForObject("SELECT SUM(OCTET_LENGTH(content) + COALESCE(OCTET_LENGTH(content_data), 0)) " +
+                "FROM records WHERE sid = ?", Long.class, sid);
+    }
+
+    /**
+     * 模拟一次AI回复：说明文字、Verilog代码和时序报告，标识符和数值随机
+     */
+    private static String generation(Random random) {
+        StringBuilder builder = new StringBuilder("下面是修改后的模块，关键路径已经拆分为两级流水线：\n```verilog\n");
+        int modules = 2 + random.nextInt(4);
+        for (int m = 0; m < modules; m++) {
+            String name = "stage_" + Integer.toHexString(random.nextInt(0xffff));
+            builder.append("module ").append(name).append(" #(parameter WIDTH = ").append(8 << random.nextInt(3))
+                    .append(") (\n    input wire clk,\n    input wire rst_n,\n");
+            int ports = 4 + random.nextInt(8);
+            for (int p = 0; p < ports; p++) {
+                builder.append("    ").append(random.nextBoolean() ? "input" : "output reg")
+                        .append(" wire [WIDTH-1:0] sig_").append(random.nextInt(1000)).append(",\n");
+            }
+            builder.append(");\n    always @(posedge clk or negedge rst_n) begin\n");
+            int statements = 10 + random.nextInt(30);
+            for (int s = 0; s < statements; s++) {
+                builder.append("        r").append(random.nextInt(64)).append(" <= sig_").append(random.nextInt(1000))
+                        .append(random.nextBoolean() ? " + " : " ^ ").append(random.nextInt(256)).append(";\n");
+            }
+            builder.append("    end\nendmodule\n\n");
+        }
+        builder.append("```\n时序报告：\n");
+        int paths = 20 + random.nextInt(40);
+        for (int p = 0; p < paths; p++) {
+            builder.append(String.format("  path %3d  slack %6.3f ns  from u_%d/q to u_%d/d%n",
+                    p, random.nextDouble() * 2 - 0.5, random.nextInt(500), random.nextInt(500)));
+        }
+        return builder.toString();
+    }
+
+    private List<RecordVO> readHistory(int sid) {
+        List<Record> history = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> {
+            Record record = new Record(rs.getInt("sid"), rs.getInt("uid"), rs.getBoolean("direction"),
+                    rs.getString("content"), rs.getInt("sequence"), rs.getInt("type"),
+                    rs.getTimestamp("create_time").toLocalDateTime());
+            record.setRid(rs.getInt("rid"));
+            record.setContentData(rs.getBytes("content_data"));
+            record.setContentLength((Integer) rs.getObject("content_length"));
+            return record;
+        }, sid);
+        List<RecordVO> result = new ArrayList<>(history.size());
+        for (Record record : history) {
+            result.add(record.toVO());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<RecordVO> plainHistory() {
+        return readHistory(plainSid);
+    }
+
+    @Benchmark
+    public List<RecordVO> compressedHistory() {
+        return readHistory(compressedSid);
+    }
+}
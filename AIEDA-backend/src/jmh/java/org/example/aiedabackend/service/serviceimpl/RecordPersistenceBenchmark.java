@@ -0,0 +1,158 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.aiedabackend.po.Record;
+import org.example.aiedabackend.util.ContentCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对话记录写入吞吐：原先每条记录一个事务、IDENTITY主键逐条INSERT，与批量写入队列的对比
+ * <p>
+ * 默认使用H2内存库（MySQL兼容模式），只能体现语句和事务数量的差异；
+ * 通过 -Djmh.args="-jvmArgsAppend -Dbench.jdbc.url=..."（另有 bench.jdbc.user / bench.jdbc.password）指向MySQL
+ * （连接参数加 rewriteBatchedStatements=true，表结构按 createTable.sql 预先建好）可以测到真实的网络往返开销。
+ * <pre>
+ * mvn -B -Pbenchmark test-compile exec:exec@jmh -Djmh.include=RecordPersistenceBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordPersistenceBenchmark {
+
+    private static final int RECORDS_PER_INVOCATION = 200;
+    private static final String CONTENT = "assign sum = a + b; // 32位加法器流水线第一级\n".repeat(20);
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private RecordPersistencePipeline pipeline;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String url = System.getProperty("bench.jdbc.url", "jdbc:h2:mem:records;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource = new DriverManagerDataSource(url,
+                System.getProperty("bench.jdbc.user", "sa"), System.getProperty("bench.jdbc.password", ""));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        if (url.startsWith("jdbc:h2:")) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS records (rid INT AUTO_INCREMENT PRIMARY KEY, sid INT NOT NULL, " +
+                    "uid INT NOT NULL, direction BOOLEAN NOT NULL, content LONGTEXT NOT NULL, content_data LONGBLOB, " +
+                    "content_length INT, sequence INT NOT NULL, " +
+                    "type INT NOT NULL, create_time DATETIME NOT NULL)");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS id_blocks (name VARCHAR(32) PRIMARY KEY, max_id BIGINT NOT NULL)");
+        }
+        // 之前的基准运行可能用自增主键写入过记录，ID水位推进到已有记录之后
+        jdbcTemplate.update("UPDATE id_blocks SET max_id = GREATEST(max_id, (SELECT COALESCE(MAX(rid), 0) FROM records)) " +
+                "WHERE name = 'records'");
+        // 基准使用独立的会话ID，顺序号从该会话已有的最大值之后开始
+        sequence.set(jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(sequence), 0) FROM records WHERE sid = ?", Integer.class, sid()));
+
+        RecordIdAllocator allocator = new RecordIdAllocator();
+        ReflectionTestUtils.setField(allocator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(allocator, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(allocator, "blockSize", 100);
+        ReflectionTestUtils.setField(allocator, "prefetchThreshold", 20);
+        allocator.init();
+
+        pipeline = new RecordPersistencePipeline();
+        ReflectionTestUtils.setField(pipeline, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(pipeline, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(pipeline, "recordIdAllocator", allocator);
+        ReflectionTestUtils.setField(pipeline, "meterRegistry", new SimpleMeterRegistry());
+        // 基准内容未达到压缩阈值，使用默认（关闭）的压缩配置
+        ReflectionTestUtils.setField(pipeline, "contentCodec", new ContentCodec());
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 10000);
+        ReflectionTestUtils.setField(pipeline, "maxBatchSize", 100);
+        ReflectionTestUtils.setField(pipeline, "maxRetries", 3);
+        pipeline.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        pipeline.stop();
+        jdbcTemplate.update("DELETE FROM records WHERE sid = ?", sid());
+    }
+
+    private static int sid() {
+        return Integer.getInteger("bench.sid", 1);
+    }
+
+    private Record newRecord() {
+        return new Record(sid(), 1, false, CONTENT, sequence.incrementAndGet(), 2, LocalDateTime.now());
+    }
+
+    /**
+     * 原先的写入方式：每条记录一个事务，INSERT后取回自增主键
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS_PER_INVOCATION)
+    public int legacyInsertPerRecord() {
+        int lastId = 0;
+        for (int i = 0; i < RECORDS_PER_INVOCATION; i++) {
+            Record record = newRecord();
+            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement("INSERT INTO records " +
+                        "(sid, uid, direction, content, sequence, type, create_time) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS);
+                ps.setInt(1, record.getSid());
+                ps.setInt(2, record.getUid());
+                ps.setBoolean(3, record.getDirection());
+                ps.setString(4, record.getContent());
+                ps.setInt(5, record.getSequence());
+                ps.setInt(6, record.getType());
+                ps.setTimestamp(7, Timestamp.valueOf(record.getCreateTime()));
+                return ps;
+            }, keyHolder));
+            lastId = keyHolder.getKey().intValue();
+        }
+        return lastId;
+    }
+
+    /**
+     * 批量写入队列：提交全部记录后等待最后一条落库
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS_PER_INVOCATION)
+    public Record batchedPipeline() {
+        CompletableFuture<Record> last = null;
+        for (int i = 0; i < RECORDS_PER_INVOCATION; i++) {
+            last = pipeline.submit(newRecord());
+        }
+        return last.join();
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.aiedabackend.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI生成任务线程池配置
+ * 使用有界队列的专用线程池处理流式回复，避免占用公共ForkJoinPool；
+ * 队列满时拒绝任务，由调用方转换为SSE错误事件。
+ * 开启 spring.threads.virtual.enabled 且运行在 Java 21+ 时，改为每个任务一个虚拟线程，
+ * 并用信号量限制同时进行的生成数量
+ */
+@Slf4j
+@Configuration
+public class GenerationExecutorConfig {
+
+    @Value("${llm.generation.core-pool-size:8}")
+    private int corePoolSize;
+
+    @Value("${llm.generation.max-pool-size:32}")
+    private int maxPoolSize;
+
+    @Value("${llm.generation.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${llm.generation.keep-alive-seconds:60}")
+    private long keepAliveSeconds;
+
+    // 虚拟线程模式下允许同时进行的生成任务数
+    @Value("${llm.generation.max-concurrent:1000}")
+    private int maxConcurrent;
+
+    // 与Spring Boot共用同一个开关：同时切换Tomcat请求线程和生成任务线程
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    @Bean
+    public Executor generationExecutor(MeterRegistry meterRegistry) {
+        Counter rejected = Counter.builder("ai.generation.rejected")
+                .description("因线程池和队列已满而被拒绝的生成任务数")
+                .register(meterRegistry);
+
+        if (virtualThreadsEnabled) {
+            Executor virtualExecutor = createVirtualThreadExecutor(meterRegistry, rejected);
+            if (virtualExecutor != null) {
+                return virtualExecutor;
+            }
+        }
+        return createPlatformThreadExecutor(meterRegistry, rejected);
+    }
+
+    private Executor createPlatformThreadExecutor(MeterRegistry meterRegistry, Counter rejected) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "ai-generation-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                corePoolSize, maxPoolSize, keepAliveSeconds, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+                (runnable, pool) -> {
+                    rejected.increment();
+                    log.warn("AI生成线程池已满，拒绝任务 - active: {}, queued: {}",
+                            pool.getActiveCount(), pool.getQueue().size());
+                    throw new RejectedExecutionException("服务繁忙，请稍后重试");
+                });
+
+        // 活跃线程数、排队任务数、完成任务数等指标
+        new ExecutorServiceMetrics(executor, "ai.generation", Tags.empty()).bindTo(meterRegistry);
+        log.info("AI生成线程池已创建（平台线程） - core: {}, max: {}, queue: {}", corePoolSize, maxPoolSize, queueCapacity);
+        return executor;
+    }
+
+    /**
+     * 创建虚拟线程执行器，JDK不支持虚拟线程时返回null
+     */
+    private Executor createVirtualThreadExecutor(MeterRegistry meterRegistry, Counter rejected) {
+        VirtualThreadTaskExecutor delegate;
+        try {
+            delegate = new VirtualThreadTaskExecutor("ai-generation-");
+        } catch (UnsupportedOperationException e) {
+            log.warn("当前JDK（{}）不支持虚拟线程，AI生成任务回退为平台线程池", Runtime.version());
+            return null;
+        }
+
+        Semaphore permits = new Semaphore(maxConcurrent);
+        Gauge.builder("ai.generation.active", permits, p -> maxConcurrent - p.availablePermits())
+                .description("正在执行的生成任务数")
+                .register(meterRegistry);
+        Gauge.builder("ai.generation.queued", () -> 0)
+                .description("排队中的生成任务数（虚拟线程模式不排队）")
+                .register(meterRegistry);
+
+        log.info("AI生成执行器已创建（虚拟线程） - maxConcurrent: {}", maxConcurrent);
+        return runnable -> {
+            if (!permits.tryAcquire()) {
+                rejected.increment();
+                log.warn("AI生成任务数已达上限，拒绝任务 - maxConcurrent: {}", maxConcurrent);
+                throw new RejectedExecutionException("服务繁忙，请稍后重试");
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        runnable.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        };
+    }
+}
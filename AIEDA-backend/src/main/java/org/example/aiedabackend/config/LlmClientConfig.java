@@ -0,0 +1,176 @@
+package org.example.aiedabackend.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 大模型服务客户端配置
+ * 提供共享的连接池HTTP客户端（普通请求与文件请求），以及用于转发SSE事件流的JDK HttpClient
+ */
+@Configuration
+public class LlmClientConfig {
+
+    @Value("${llm.relay.io-threads:4}")
+    private int relayIoThreads;
+
+    // 响应式转发中解析事件、写前端SSE的线程数上限
+    @Value("${llm.relay.write-threads:64}")
+    private int relayWriteThreads;
+
+    @Value("${llm.relay.connect-timeout-ms:10000}")
+    private long connectTimeoutMs;
+
+    // 事件流使用的HTTP版本：HTTP_1_1 或 HTTP_2（上游支持时协商升级，否则回退到HTTP/1.1）
+    @Value("${llm.relay.http-version:HTTP_1_1}")
+    private HttpClient.Version relayHttpVersion;
+
+    @Value("${llm.upstream.max-connections:200}")
+    private int maxConnections;
+
+    @Value("${llm.upstream.max-connections-per-route:100}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${llm.upstream.connection-ttl-seconds:300}")
+    private long connectionTtlSeconds;
+
+    @Value("${llm.upstream.idle-evict-seconds:60}")
+    private long idleEvictSeconds;
+
+    // 普通请求（提交输入、文件列表、预览）的读取超时
+    @Value("${llm.upstream.read-timeout-ms:30000}")
+    private int readTimeoutMs;
+
+    // 文件上传下载的读取超时
+    @Value("${llm.upstream.file-read-timeout-ms:300000}")
+    private int fileReadTimeoutMs;
+
+    /**
+     * 大模型服务连接池，所有RestTemplate共用
+     */
+    @Bean
+    public PoolingHttpClientConnectionManager llmConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setTimeToLive(TimeValue.ofSeconds(connectionTtlSeconds))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        // 连接池使用情况指标
+        Gauge.builder("llm.upstream.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased())
+                .description("正在使用的上游连接数")
+                .register(meterRegistry);
+        Gauge.builder("llm.upstream.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable())
+                .description("空闲可复用的上游连接数")
+                .register(meterRegistry);
+        Gauge.builder("llm.upstream.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+                .description("等待获取连接的请求数")
+                .register(meterRegistry);
+        Gauge.builder("llm.upstream.pool.max", connectionManager, cm -> cm.getTotalStats().getMax())
+                .description("连接池最大连接数")
+                .register(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean
+    public CloseableHttpClient llmHttpClient(PoolingHttpClientConnectionManager llmConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(llmConnectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+                .build();
+    }
+
+    /**
+     * 普通请求使用的RestTemplate：提交用户输入、文件列表、预览
+     */
+    @Bean
+    public RestTemplate llmRestTemplate(RestTemplateBuilder builder, CloseableHttpClient llmHttpClient) {
+        return builder.requestFactory(() -> requestFactory(llmHttpClient, readTimeoutMs)).build();
+    }
+
+    /**
+     * 文件上传下载使用的RestTemplate，与普通请求共用连接池，读取超时更长
+     */
+    @Bean
+    public RestTemplate llmFileRestTemplate(RestTemplateBuilder builder, CloseableHttpClient llmHttpClient) {
+        return builder.requestFactory(() -> requestFactory(llmHttpClient, fileReadTimeoutMs)).build();
+    }
+
+    private HttpComponentsClientHttpRequestFactory requestFactory(CloseableHttpClient httpClient, int timeoutMs) {
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        factory.setConnectionRequestTimeout((int) connectTimeoutMs);
+        factory.setReadTimeout(timeoutMs);
+        return factory;
+    }
+
+    /**
+     * 响应式转发使用的IO线程池
+     * 所有会话的流式数据都在这几个线程上回调处理，不再为每个会话占用一个线程
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService llmRelayExecutor() {
+        return Executors.newFixedThreadPool(relayIoThreads, daemonThreads("llm-relay-"));
+    }
+
+    /**
+     * 响应式转发中解析事件流、写出前端SSE和生成收尾的线程池
+     * 写前端SSE是阻塞IO，放在这里执行而不占用上面的IO线程，个别前端写出缓慢只占住自己的线程；
+     * 线程空闲时回收，超过上限的任务排队
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService llmRelayWriteExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(relayWriteThreads, relayWriteThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("llm-relay-write-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory daemonThreads(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 共享HTTP客户端，用于订阅大模型的 /api/v1/stream 事件流（内部维护keep-alive连接池）
+     */
+    @Bean
+    public HttpClient llmStreamHttpClient(@Qualifier("llmRelayExecutor") ExecutorService llmRelayExecutor) {
+        return HttpClient.newBuilder()
+                .version(relayHttpVersion)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(llmRelayExecutor)
+                .build();
+    }
+}
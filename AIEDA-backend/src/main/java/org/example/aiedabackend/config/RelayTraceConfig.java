@@ -0,0 +1,45 @@
+package org.example.aiedabackend.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.aiedabackend.relay.RelayTracer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 转发热路径追踪配置
+ * 按采样率追踪部分生成过程，事件保存在内存中，通过 /api/monitor/relay-trace 导出
+ */
+@Configuration
+public class RelayTraceConfig {
+
+    // 每个会话保留的事件数
+    @Value("${relay.trace.events-per-session:512}")
+    private int eventsPerSession;
+
+    // 同时保留追踪的会话数
+    @Value("${relay.trace.max-sessions:256}")
+    private int maxSessions;
+
+    // 每次生成被追踪的概率（0~1），0表示只追踪强制开启的会话
+    @Value("${relay.trace.sample-rate:0.05}")
+    private double sampleRate;
+
+    // 会话追踪多久未访问后丢弃（秒）
+    @Value("${relay.trace.idle-seconds:1800}")
+    private long idleSeconds;
+
+    @Bean
+    public RelayTracer relayTracer(MeterRegistry meterRegistry) {
+        RelayTracer tracer = new RelayTracer(eventsPerSession, maxSessions, sampleRate, idleSeconds);
+        Gauge.builder("ai.relay.trace.sessions", tracer, RelayTracer::size)
+                .description("保留追踪记录的会话数")
+                .register(meterRegistry);
+        FunctionCounter.builder("ai.relay.trace.generations", tracer, RelayTracer::getTracedGenerations)
+                .description("被追踪的生成次数")
+                .register(meterRegistry);
+        return tracer;
+    }
+}
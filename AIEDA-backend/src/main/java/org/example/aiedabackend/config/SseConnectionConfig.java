@@ -0,0 +1,48 @@
+package org.example.aiedabackend.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.aiedabackend.relay.RelayMetrics;
+import org.example.aiedabackend.relay.SseConnectionRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 前端SSE连接管理配置
+ * 所有会话的SSE连接共用一个注册表，无活动超时由单个时间轮线程检测；转发指标由所有连接的写入器共用
+ */
+@Configuration
+public class SseConnectionConfig {
+
+    // 连接无活动超时时间（毫秒）
+    @Value("${sse.inactivity-timeout-ms:120000}")
+    private long inactivityTimeoutMs;
+
+    // 时间轮推进间隔（毫秒），即超时检测精度
+    @Value("${sse.timeout-wheel.tick-ms:1000}")
+    private long tickMs;
+
+    // 时间轮槽位数，覆盖超时时间时每个连接每个超时周期只检查一次
+    @Value("${sse.timeout-wheel.slots:256}")
+    private int slots;
+
+    @Bean(destroyMethod = "close")
+    public SseConnectionRegistry sseConnectionRegistry(MeterRegistry meterRegistry) {
+        SseConnectionRegistry registry = new SseConnectionRegistry(inactivityTimeoutMs, tickMs, slots);
+        Gauge.builder("ai.sse.connections.open", registry, SseConnectionRegistry::size)
+                .description("当前打开的前端SSE连接数")
+                .register(meterRegistry);
+        FunctionCounter.builder("ai.sse.connections.timeout", registry, SseConnectionRegistry::getTimeoutCount)
+                .description("因无活动而关闭的前端SSE连接数")
+                .register(meterRegistry);
+        registry.start();
+        return registry;
+    }
+
+    @Bean
+    public RelayMetrics relayMetrics(MeterRegistry meterRegistry) {
+        return new RelayMetrics(meterRegistry);
+    }
+}
@@ -6,9 +6,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.example.aiedabackend.service.ChatService;
 import org.example.aiedabackend.vo.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -16,15 +18,33 @@ import java.util.List;
 @Tag(name = "聊天管理", description = "聊天相关接口")
 public class ChatController {
 
+    private static final int DEFAULT_SESSION_PAGE_SIZE = 50;
+    private static final int MAX_SESSION_PAGE_SIZE = 200;
+    private static final int DEFAULT_RECORD_PAGE_SIZE = 50;
+    private static final int MAX_RECORD_PAGE_SIZE = 200;
+
     @Autowired
     private ChatService chatService;
 
-    @Operation(summary = "获取用户会话列表", description = "根据用户ID获取所有聊天会话")
+    @Operation(summary = "获取用户会话列表", description = "根据用户ID获取聊天会话，按更新时间倒序。不带分页参数时返回全部会话；" +
+            "指定limit时分页，下一页传入上一页最后一个会话的updateTime和sid，返回条数小于limit表示已无更多")
     @GetMapping("/sessions/{uid}")
     public Response<List<SessionVO>> getSessions(
             @Parameter(description = "用户ID", required = true)
-            @PathVariable Integer uid) {
-        List<SessionVO> sessions = chatService.getSessions(uid);
+            @PathVariable Integer uid,
+            @Parameter(description = "上一页最后一个会话的更新时间（ISO格式，如2024-01-15T11:45:00）")
+            @RequestParam(value = "beforeUpdateTime", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeUpdateTime,
+            @Parameter(description = "上一页最后一个会话的ID")
+            @RequestParam(value = "beforeSid", required = false) Integer beforeSid,
+            @Parameter(description = "每页条数，默认" + DEFAULT_SESSION_PAGE_SIZE + "，最大" + MAX_SESSION_PAGE_SIZE)
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        if (limit == null && beforeUpdateTime == null) {
+            List<SessionVO> sessions = chatService.getSessions(uid);
+            return Response.buildSuccess(sessions);
+        }
+        int pageSize = limit == null ? DEFAULT_SESSION_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_SESSION_PAGE_SIZE));
+        List<SessionVO> sessions = chatService.getSessions(uid, beforeUpdateTime, beforeSid, pageSize);
         return Response.buildSuccess(sessions);
     }
 
@@ -37,15 +57,46 @@ public class ChatController {
         return Response.buildSuccess(sessionVO);
     }
 
-    @Operation(summary = "获取会话记录", description = "根据会话ID获取所有聊天记录")
+    @Operation(summary = "获取会话记录", description = "根据会话ID获取聊天记录。不带分页参数时返回全部记录；" +
+            "指定limit、beforeSequence或afterSequence时按顺序号游标分页，结果按顺序号正序排列，返回条数小于limit表示已无更多")
     @GetMapping("/sessions/{sid}/records")
     public Response<List<RecordVO>> getRecords(
             @Parameter(description = "会话ID", required = true)
-            @PathVariable Integer sid) {
-        List<RecordVO> records = chatService.getRecords(sid);
+            @PathVariable Integer sid,
+            @Parameter(description = "只返回顺序号小于该值的记录（向前翻页）")
+            @RequestParam(value = "beforeSequence", required = false) Integer beforeSequence,
+            @Parameter(description = "只返回顺序号大于该值的记录（向后翻页）")
+            @RequestParam(value = "afterSequence", required = false) Integer afterSequence,
+            @Parameter(description = "每页条数，默认" + DEFAULT_RECORD_PAGE_SIZE + "，最大" + MAX_RECORD_PAGE_SIZE)
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @Parameter(description = "大于0时只返回内容的前N个字符，完整内容通过单条记录接口获取")
+            @RequestParam(value = "previewLength", required = false) Integer previewLength) {
+        if (beforeSequence == null && afterSequence == null && limit == null) {
+            List<RecordVO> records = chatService.getRecords(sid);
+            return Response.buildSuccess(records);
+        }
+        if (beforeSequence != null && afterSequence != null) {
+            return Response.buildFailure("beforeSequence和afterSequence不能同时指定", "400");
+        }
+        int pageSize = limit == null ? DEFAULT_RECORD_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_RECORD_PAGE_SIZE));
+        List<RecordVO> records = chatService.getRecords(sid, beforeSequence, afterSequence, pageSize, previewLength);
         return Response.buildSuccess(records);
     }
 
+    @Operation(summary = "获取单条会话记录", description = "获取指定记录的完整内容，用于预览模式下按需加载")
+    @GetMapping("/sessions/{sid}/records/{rid}")
+    public Response<RecordVO> getRecord(
+            @Parameter(description = "会话ID", required = true)
+            @PathVariable Integer sid,
+            @Parameter(description = "记录ID", required = true)
+            @PathVariable Integer rid) {
+        RecordVO record = chatService.getRecord(sid, rid);
+        if (record == null) {
+            return Response.buildFailure("记录不存在", "404");
+        }
+        return Response.buildSuccess(record);
+    }
+
     @Operation(summary = "发送消息并流式获取AI回复", description = "向指定会话发送用户消息（支持文件引用和不同输入类型），并通过SSE流式获取AI回复")
     @PostMapping(value = "/messages/{sid}/stream", produces = "text/event-stream")
     public SseEmitter sendMessageSSE(
@@ -3,8 +3,11 @@ package org.example.aiedabackend.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
 import org.example.aiedabackend.service.FileService;
 import org.example.aiedabackend.vo.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
@@ -15,6 +18,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.util.Map;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/files")
 @Tag(name = "文件管理", description = "文件上传、下载、预览相关接口")
@@ -77,30 +81,29 @@ public class FileController {
         }
     }
 
-    @Operation(summary = "文件下载", description = "从大模型服务下载指定文件")
+    @Operation(summary = "文件下载", description = "从大模型服务下载指定文件，以流的方式转发，支持Range分段下载")
     @GetMapping("/download/{fid}")
-    public ResponseEntity<Resource> downloadFile(
+    public void downloadFile(
             @Parameter(description = "文件ID", required = true)
-            @PathVariable String fid) {
+            @PathVariable String fid,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         
-        System.out.println("FileController.downloadFile 被调用，fid: " + fid);
+        log.debug("开始下载文件，fid: {}", fid);
         
         try {
-            Resource resource = fileService.downloadFile(fid);
             FileVO fileInfo = fileService.getFileInfo(fid);
             
-            System.out.println("文件下载成功，准备返回: " + fileInfo.getOriginalName());
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"" + fileInfo.getOriginalName() + "\"");
+            fileService.streamFile(fid, request, response);
             
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, 
-                            "attachment; filename=\"" + fileInfo.getOriginalName() + "\"")
-                    .body(resource);
+            log.debug("文件下载完成: {}", fileInfo.getOriginalName());
                     
         } catch (Exception e) {
-            System.out.println("文件下载失败: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.notFound().build();
+            log.warn("文件下载失败，fid: {}, 原因: {}", fid, e.getMessage());
+            handleStreamFailure(response);
         }
     }
 
@@ -119,33 +122,42 @@ public class FileController {
         }
     }
 
-    @Operation(summary = "文件预览", description = "预览文件内容（从大模型服务获取二进制流）")
+    @Operation(summary = "文件预览", description = "预览文件内容（从大模型服务以流的方式转发，支持Range分段读取）")
     @GetMapping("/preview/{fid}")
-    public ResponseEntity<Resource> previewFile(
+    public void previewFile(
             @Parameter(description = "文件ID", required = true)
-            @PathVariable String fid) {
+            @PathVariable String fid,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         
-        System.out.println("FileController.previewFile 被调用，fid: " + fid);
+        log.debug("开始预览文件，fid: {}", fid);
         
         try {
-            Resource resource = fileService.downloadFile(fid);
             FileVO fileInfo = fileService.getFileInfo(fid);
             
-            System.out.println("文件预览成功，准备返回: " + fileInfo.getOriginalName());
-            
             // 根据文件类型设置Content-Type
             String contentType = determineContentType(fileInfo.getOriginalName(), fileInfo.getFileType());
             
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, 
-                            "inline; filename=\"" + fileInfo.getOriginalName() + "\"")
-                    .body(resource);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    "inline; filename=\"" + fileInfo.getOriginalName() + "\"");
+            fileService.streamFile(fid, request, response);
+            
+            log.debug("文件预览完成: {}", fileInfo.getOriginalName());
                     
         } catch (Exception e) {
-            System.out.println("文件预览失败: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.notFound().build();
+            log.warn("文件预览失败，fid: {}, 原因: {}", fid, e.getMessage());
+            handleStreamFailure(response);
+        }
+    }
+
+    /**
+     * 转发失败时：尚未开始写入内容则返回404；已经开始写入则只能中断连接，由客户端按长度不足识别
+     */
+    private void handleStreamFailure(HttpServletResponse response) {
+        if (!response.isCommitted()) {
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
         }
     }
 
@@ -371,9 +383,9 @@ public class FileController {
     }
 
     /**
-     * 根据文件名和MIME类型确定Content-Type
+     * 根据文件名和MIME类型确定Content-Type（包内可见，供基准测试直接调用）
      */
-    private String determineContentType(String filename, String mimeType) {
+    static String determineContentType(String filename, String mimeType) {
         if (filename == null || filename.trim().isEmpty()) {
             return mimeType != null ? mimeType : "application/octet-stream";
         }
@@ -0,0 +1,153 @@
+package org.example.aiedabackend.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.example.aiedabackend.jfr.FlightRecordingManager;
+import org.example.aiedabackend.relay.RelayTracer;
+import org.example.aiedabackend.service.AccountService;
+import org.example.aiedabackend.vo.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 运行时诊断接口，仅管理员可用
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/monitor")
+@Tag(name = "运行监控", description = "转发追踪、JFR录制等运行时诊断接口（仅管理员）")
+public class MonitorController {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private RelayTracer relayTracer;
+
+    @Autowired
+    private FlightRecordingManager flightRecordingManager;
+
+    @Operation(summary = "追踪中的会话", description = "列出保留了转发追踪记录的会话和强制追踪的会话")
+    @GetMapping("/relay-trace")
+    public Response<Map<String, Object>> getTracedSessions(
+            @RequestAttribute(value = "userId", required = false) Integer userId) {
+        if (!accountService.isAdmin(userId)) {
+            return Response.buildFailure("无权限", "403");
+        }
+        return Response.buildSuccess(Map.of(
+                "sessions", relayTracer.sessions(),
+                "forced", relayTracer.getForcedSessions(),
+                "tracedGenerations", relayTracer.getTracedGenerations()));
+    }
+
+    @Operation(summary = "导出会话的转发追踪", description = "按时间顺序返回会话最近的转发事件（帧、delta、发送失败、结束等）")
+    @GetMapping("/relay-trace/{sid}")
+    public Response<List<RelayTracer.Event>> dumpRelayTrace(
+            @Parameter(description = "会话ID", required = true)
+            @PathVariable String sid,
+            @RequestAttribute(value = "userId", required = false) Integer userId) {
+        if (!accountService.isAdmin(userId)) {
+            return Response.buildFailure("无权限", "403");
+        }
+        return Response.buildSuccess(relayTracer.dump(sid));
+    }
+
+    @Operation(summary = "强制追踪会话", description = "从下一次生成开始追踪该会话，不受采样率限制")
+    @PostMapping("/relay-trace/{sid}")
+    public Response<Boolean> enableRelayTrace(
+            @Parameter(description = "会话ID", required = true)
+            @PathVariable String sid,
+            @RequestAttribute(value = "userId", required = false) Integer userId) {
+        if (!accountService.isAdmin(userId)) {
+            return Response.buildFailure("无权限", "403");
+        }
+        relayTracer.enable(sid);
+        return Response.buildSuccess(true);
+    }
+
+    @Operation(summary = "取消强制追踪", description = "取消后已记录的事件保留到被淘汰")
+    @DeleteMapping("/relay-trace/{sid}")
+    public Response<Boolean> disableRelayTrace(
+            @Parameter(description = "会话ID", required = true)
+            @PathVariable String sid,
+            @RequestAttribute(value = "userId", required = false) Integer userId) {
+        if (!accountService.isAdmin(userId)) {
+            return Response.buildFailure("无权限", "403");
+        }
+        relayTracer.disable(sid);
+        return Response.buildSuccess(true);
+    }
+
+    @Operation(summary = "JFR录制状态", description = "当前按需录制的状态、开始时间和数据量")
+    @GetMapping("/jfr")
+    public Response<Map<String, Object>> getRecordingStatus(
+            @RequestAttribute(value = "userId", required = false) Integer userId) {
+        if (!accountService.isAdmin(userId)) {
+            return Response.buildFailure("无权限", "403");
+        }
+        return Response.buildSuccess(flightRecordingManager.status());
+    }
+
+    @Operation(summary = "开始JFR录制", description = "开启JDK自带配置和生成过程事件（提交输入、连接上游、首字、增量写出、记录落库、生成结束），已在录制时返回当前状态")
+    @PostMapping("/jfr/start")
+    public Response<Map<String, Object>> startRecording(
+            @Parameter(description = "JDK录制配置：default 或 profile，默认按配置文件")
+            @RequestParam(required = false) String settings,
+            @RequestAttribute(value = "userId", required = false) Integer userId) {
+        if (!accountService.isAdmin(userId)) {
+            return Response.buildFailure("无权限", "403");
+        }
+        try {
+            return Response.buildSuccess(flightRecordingManager.start(settings));
+        } catch (Exception e) {
+            log.error("开始JFR录制失败", e);
+            return Response.buildFailure("开始录制失败: " + e.getMessage(), "500");
+        }
+    }
+
+    @Operation(summary = "停止JFR录制", description = "停止后录制数据保留，仍可导出")
+    @PostMapping("/jfr/stop")
+    public Response<Map<String, Object>> stopRecording(
+            @RequestAttribute(value = "userId", required = false) Integer userId) {
+        if (!accountService.isAdmin(userId)) {
+            return Response.buildFailure("无权限", "403");
+        }
+        return Response.buildSuccess(flightRecordingManager.stop());
+    }
+
+    @Operation(summary = "导出JFR录制", description = "下载.jfr文件，运行中的录制导出当前快照；没有录制时返回404")
+    @GetMapping("/jfr/dump")
+    public void dumpRecording(
+            @RequestAttribute(value = "userId", required = false) Integer userId,
+            HttpServletResponse response) {
+        if (!accountService.isAdmin(userId)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        String fileName = "aieda-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr";
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        try {
+            if (!flightRecordingManager.dump(response.getOutputStream())) {
+                response.reset();
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (Exception e) {
+            log.error("导出JFR录制失败", e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+}
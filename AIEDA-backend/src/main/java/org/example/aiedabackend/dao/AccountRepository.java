@@ -9,4 +9,6 @@ public interface AccountRepository extends JpaRepository<Account, String> {
 
     Account findByPhone(String phone);
 
+    Account findByUid(Integer uid);
+
 }
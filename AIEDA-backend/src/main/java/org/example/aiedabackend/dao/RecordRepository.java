@@ -1,9 +1,13 @@
 package org.example.aiedabackend.dao;
 
 import org.example.aiedabackend.po.Record;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -14,6 +18,56 @@ public interface RecordRepository extends JpaRepository<Record, Integer> {
     // 根据会话ID查询所有记录并按顺序倒序排列
     List<Record> findBySidOrderBySequenceDesc(Integer sid);
 
+    /**
+     * 按顺序号游标向前翻页：顺序号小于before的记录，按顺序倒序，条数由pageable限制
+     * 使用 (sid, sequence) 唯一索引，翻页开销与会话长度无关
+     */
+    List<Record> findBySidAndSequenceLessThanOrderBySequenceDesc(Integer sid, Integer before, Pageable pageable);
+
+    /**
+     * 按顺序号游标向后翻页：顺序号大于after的记录，按顺序正序
+     */
+    List<Record> findBySidAndSequenceGreaterThanOrderBySequenceAsc(Integer sid, Integer after, Pageable pageable);
+
+    /**
+     * 同 {@link #findBySidAndSequenceLessThanOrderBySequenceDesc}，只在数据库中截取内容前缀，不读取完整的LONGTEXT
+     * 压缩存储的记录content列只有前缀，预览长度超过前缀时由调用方读取完整记录
+     */
+    @Query("SELECT r.rid AS rid, r.sid AS sid, r.direction AS direction, SUBSTRING(r.content, 1, :previewLength) AS content, " +
+            "COALESCE(r.contentLength, LENGTH(r.content)) AS contentLength, r.sequence AS sequence, r.type AS type, r.createTime AS createTime " +
+            "FROM Record r WHERE r.sid = :sid AND r.sequence < :before ORDER BY r.sequence DESC")
+    List<RecordPreview> findPreviewsBefore(@Param("sid") Integer sid, @Param("before") Integer before,
+                                           @Param("previewLength") int previewLength, Pageable pageable);
+
+    /**
+     * 同 {@link #findBySidAndSequenceGreaterThanOrderBySequenceAsc}，只返回内容前缀
+     */
+    @Query("SELECT r.rid AS rid, r.sid AS sid, r.direction AS direction, SUBSTRING(r.content, 1, :previewLength) AS content, " +
+            "COALESCE(r.contentLength, LENGTH(r.content)) AS contentLength, r.sequence AS sequence, r.type AS type, r.createTime AS createTime " +
+            "FROM Record r WHERE r.sid = :sid AND r.sequence > :after ORDER BY r.sequence ASC")
+    List<RecordPreview> findPreviewsAfter(@Param("sid") Integer sid, @Param("after") Integer after,
+                                          @Param("previewLength") int previewLength, Pageable pageable);
+
+    /**
+     * 记录预览投影，content为截取后的前缀，contentLength为完整内容的字符数
+     */
+    interface RecordPreview {
+        Integer getRid();
+        Integer getSid();
+        Boolean getDirection();
+        String getContent();
+        Integer getContentLength();
+        Integer getSequence();
+        Integer getType();
+        LocalDateTime getCreateTime();
+    }
+
+    /**
+     * 查询会话当前最大的消息顺序号，没有记录时返回0
+     */
+    @Query("SELECT COALESCE(MAX(r.sequence), 0) FROM Record r WHERE r.sid = :sid")
+    int findMaxSequenceBySid(@Param("sid") Integer sid);
+
     /**
      * 删除指定会话的所有记录
      */
@@ -1,13 +1,72 @@
 package org.example.aiedabackend.dao;
 
 import org.example.aiedabackend.po.Session;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface SessionRepository extends JpaRepository<Session, Integer> {
     // 根据用户ID查询会话列表
     List<Session> findByUid(Integer uid);
+
+    /**
+     * 按更新时间倒序查询用户的会话摘要（第一页或全部），走 (uid, update_time) 索引，不加载完整实体
+     */
+    @Query("SELECT s.sid AS sid, s.title AS title, s.createTime AS createTime, s.updateTime AS updateTime " +
+            "FROM Session s WHERE s.uid = :uid ORDER BY s.updateTime DESC, s.sid DESC")
+    List<SessionSummary> findSummariesByUid(@Param("uid") Integer uid, Pageable pageable);
+
+    /**
+     * 按 (updateTime, sid) 游标向后翻页，只返回排在游标之后的会话
+     */
+    @Query("SELECT s.sid AS sid, s.title AS title, s.createTime AS createTime, s.updateTime AS updateTime " +
+            "FROM Session s WHERE s.uid = :uid " +
+            "AND (s.updateTime < :beforeUpdateTime OR (s.updateTime = :beforeUpdateTime AND s.sid < :beforeSid)) " +
+            "ORDER BY s.updateTime DESC, s.sid DESC")
+    List<SessionSummary> findSummariesByUidBefore(@Param("uid") Integer uid,
+                                                  @Param("beforeUpdateTime") LocalDateTime beforeUpdateTime,
+                                                  @Param("beforeSid") Integer beforeSid,
+                                                  Pageable pageable);
+
+    /**
+     * 查询会话的归属用户和标题，不加载完整实体
+     */
+    @Query("SELECT s.uid AS uid, s.title AS title FROM Session s WHERE s.sid = :sid")
+    SessionOwner findOwnerBySid(@Param("sid") Integer sid);
+
+    /**
+     * 更新会话标题，只有会话属于该用户时才更新
+     * @return 更新的行数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Session s SET s.title = :title, s.updateTime = :updateTime WHERE s.sid = :sid AND s.uid = :uid")
+    int updateTitle(@Param("sid") Integer sid, @Param("uid") Integer uid,
+                    @Param("title") String title, @Param("updateTime") LocalDateTime updateTime);
+
+    /**
+     * 会话归属投影
+     */
+    interface SessionOwner {
+        Integer getUid();
+        String getTitle();
+    }
+
+    /**
+     * 会话列表投影
+     */
+    interface SessionSummary {
+        Integer getSid();
+        String getTitle();
+        LocalDateTime getCreateTime();
+        LocalDateTime getUpdateTime();
+    }
 }
@@ -30,11 +30,12 @@ public class JwtInterceptor implements HandlerInterceptor {
             return true;
         }
 
-        // 验证Token
+        // 验证Token（只解析一次，验证结果有缓存）
         String token = request.getHeader("token");
-        if (token != null && jwtUtil.validateToken(token)) {
-            String username = jwtUtil.extractUsername(token);
-            Integer userId = jwtUtil.getUserIdFromToken(token);
+        JwtUtil.TokenClaims claims = token != null ? jwtUtil.verify(token) : null;
+        if (claims != null) {
+            String username = claims.username();
+            Integer userId = claims.userId();
             request.setAttribute("username", username);
             request.setAttribute("userId", userId);
             //log.info("拦截器设置了用户ID: {} 用户名: {}", userId, username);
@@ -0,0 +1,23 @@
+package org.example.aiedabackend.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 一帧合并后的增量内容写给前端，持续时间为写出耗时
+ */
+@Name("aieda.DeltaFlush")
+@Label("Delta Flush")
+@Description("合并后的增量帧写给前端，gap为距上一帧写出的间隔，用于定位输出停顿")
+public class DeltaFlushEvent extends GenerationEvent {
+
+    @Label("Characters")
+    int chars;
+
+    @Label("Gap")
+    @Description("距本次生成上一帧写出的间隔，第一帧为0")
+    @Timespan(Timespan.NANOSECONDS)
+    long gap;
+}
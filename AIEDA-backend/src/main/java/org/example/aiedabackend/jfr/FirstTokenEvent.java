@@ -0,0 +1,18 @@
+package org.example.aiedabackend.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 首个增量内容交给前端，持续时间从收到用户消息开始计算，即首字延迟
+ */
+@Name("aieda.FirstToken")
+@Label("First Token")
+@Description("从收到用户消息到首个增量内容交给前端的耗时")
+public class FirstTokenEvent extends GenerationEvent {
+
+    @Label("Upstream Frames")
+    @Description("首个增量内容之前收到的上游帧数（含）")
+    int upstreamFrames;
+}
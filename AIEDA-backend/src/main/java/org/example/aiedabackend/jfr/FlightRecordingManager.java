@@ -0,0 +1,138 @@
+package org.example.aiedabackend.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按需开启的JFR录制
+ * <p>
+ * 同一时间只保留一个录制：开始时使用JDK自带的配置（default/profile）并开启本项目的生成事件，
+ * 按时长和大小滚动保留最近的数据；停止后录制保留，可以继续导出，直到下次开始时被替换。
+ */
+@Slf4j
+@Component
+public class FlightRecordingManager {
+
+    private static final String RECORDING_NAME = "aieda-on-demand";
+    private static final List<Class<? extends GenerationEvent>> GENERATION_EVENTS = List.of(
+            InputSubmitEvent.class, UpstreamConnectEvent.class, FirstTokenEvent.class,
+            DeltaFlushEvent.class, RecordPersistEvent.class, GenerationCompleteEvent.class);
+
+    // 默认使用的JDK录制配置：default（开销约1%）或 profile（更详细，开销约2%）
+    @Value("${jfr.recording.settings:default}")
+    private String defaultSettings;
+
+    // 录制保留的最长时间（秒）
+    @Value("${jfr.recording.max-age-seconds:1800}")
+    private long maxAgeSeconds;
+
+    // 录制保留的最大数据量（字节）
+    @Value("${jfr.recording.max-size-bytes:268435456}")
+    private long maxSizeBytes;
+
+    private Recording recording;
+
+    /**
+     * 开始录制；已有录制在运行时直接返回其状态
+     * @param settings JDK录制配置名，为空时使用默认配置
+     */
+    public synchronized Map<String, Object> start(String settings) throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            return status();
+        }
+        closeRecording();
+
+        String settingsName = settings != null && !settings.isBlank() ? settings : defaultSettings;
+        Recording next = new Recording(Configuration.getConfiguration(settingsName));
+        next.setName(RECORDING_NAME);
+        next.setMaxAge(Duration.ofSeconds(maxAgeSeconds));
+        next.setMaxSize(maxSizeBytes);
+        next.setToDisk(true);
+        for (Class<? extends GenerationEvent> eventClass : GENERATION_EVENTS) {
+            next.enable(eventClass).withoutStackTrace();
+        }
+        next.start();
+        recording = next;
+        log.info("JFR录制已开始 - 配置: {}, 保留时长: {}s, 保留大小: {}", settingsName, maxAgeSeconds, maxSizeBytes);
+        return status();
+    }
+
+    /**
+     * 停止录制，已录制的数据保留以便导出
+     */
+    public synchronized Map<String, Object> stop() {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+            log.info("JFR录制已停止 - 数据量: {}", recording.getSize());
+        }
+        return status();
+    }
+
+    /**
+     * 当前录制的状态，没有录制时只返回 state=NONE
+     */
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("state", recording.getState().name());
+        status.put("startTime", recording.getStartTime());
+        status.put("stopTime", recording.getStopTime());
+        status.put("size", recording.getSize());
+        status.put("maxAgeSeconds", maxAgeSeconds);
+        status.put("maxSizeBytes", maxSizeBytes);
+        return status;
+    }
+
+    /**
+     * 导出录制数据（运行中的录制导出当前快照）
+     * @return 没有可导出的录制时返回false
+     */
+    public boolean dump(OutputStream out) throws IOException {
+        Path file;
+        synchronized (this) {
+            if (recording == null || (recording.getState() != RecordingState.RUNNING
+                    && recording.getState() != RecordingState.STOPPED)) {
+                return false;
+            }
+            file = Files.createTempFile("aieda-", ".jfr");
+            try {
+                recording.dump(file);
+            } catch (IOException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+        }
+        try {
+            Files.copy(file, out);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public synchronized void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
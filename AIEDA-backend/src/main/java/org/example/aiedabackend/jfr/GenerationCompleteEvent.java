@@ -0,0 +1,21 @@
+package org.example.aiedabackend.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 一次生成结束，持续时间从收到用户消息开始计算
+ */
+@Name("aieda.GenerationComplete")
+@Label("Generation Complete")
+@Description("从收到用户消息到生成结束（完成、出错或被拒绝）的耗时")
+public class GenerationCompleteEvent extends GenerationEvent {
+
+    @Label("Outcome")
+    @Description("complete、error、input_rejected 或 executor_rejected")
+    String outcome;
+
+    @Label("Reply Characters")
+    int replyChars;
+}
@@ -0,0 +1,25 @@
+package org.example.aiedabackend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * AI生成过程JFR事件的公共字段：会话、用户和Agent类型
+ * <p>
+ * 事件由 {@link GenerationEvents} 创建并填好标签；不采集调用栈，未开启录制时提交几乎没有开销。
+ */
+@Category({"AIEDA", "Generation"})
+@StackTrace(false)
+abstract class GenerationEvent extends Event {
+
+    @Label("Session ID")
+    int sid;
+
+    @Label("User ID")
+    int uid;
+
+    @Label("Agent Type")
+    String agentType;
+}
@@ -0,0 +1,138 @@
+package org.example.aiedabackend.jfr;
+
+import jdk.jfr.EventType;
+import org.example.aiedabackend.po.Record;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一次AI生成的JFR事件上下文
+ * <p>
+ * 收到用户消息时创建，沿生成流程传递：提交输入、连接上游、首字、每帧增量写出、记录落库和生成结束各提交一个事件，
+ * 都带上会话ID、用户ID和Agent类型。首字和结束事件从创建时开始计时，持续时间即首字延迟和生成总耗时。
+ * 未开启录制时事件的 begin/commit 只是一次开关判断；每帧增量和每条记录的事件在未开启时不创建。
+ */
+public final class GenerationEvents {
+
+    private static final EventType DELTA_FLUSH = EventType.getEventType(DeltaFlushEvent.class);
+    private static final EventType RECORD_PERSIST = EventType.getEventType(RecordPersistEvent.class);
+
+    private final int sid;
+    private final int uid;
+    private final String agentType;
+    private final FirstTokenEvent firstToken = new FirstTokenEvent();
+    private final GenerationCompleteEvent completion = new GenerationCompleteEvent();
+    private final long startNanos = System.nanoTime();
+    private boolean firstTokenCommitted = false;
+    private boolean completed = false;
+
+    public GenerationEvents(Integer sid, Integer uid, String agentType) {
+        this.sid = sid != null ? sid : -1;
+        this.uid = uid != null ? uid : -1;
+        this.agentType = agentType;
+        tag(firstToken).begin();
+        tag(completion).begin();
+    }
+
+    public int getSid() {
+        return sid;
+    }
+
+    /**
+     * 从收到用户消息到现在经过的时间
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * 开始计时一次输入提交，调用方在拿到响应后调用 {@link InputSubmitEvent#finish(boolean)}
+     */
+    public InputSubmitEvent beginInputSubmit(String inputType) {
+        InputSubmitEvent event = tag(new InputSubmitEvent());
+        event.inputType = inputType;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 开始计时一次上游连接，调用方在收到响应头或连接失败时调用 {@link UpstreamConnectEvent#finish(int)}
+     */
+    public UpstreamConnectEvent beginUpstreamConnect(boolean reactive) {
+        UpstreamConnectEvent event = tag(new UpstreamConnectEvent());
+        event.reactive = reactive;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 首个增量内容交给前端，只记录一次
+     * @return 是否为首次调用
+     */
+    public boolean firstToken(int upstreamFrames) {
+        if (firstTokenCommitted) {
+            return false;
+        }
+        firstTokenCommitted = true;
+        firstToken.upstreamFrames = upstreamFrames;
+        firstToken.commit();
+        return true;
+    }
+
+    /**
+     * 开始计时一帧增量写出，调用方写出后调用 commit
+     * @param gapNanos 距本次生成上一帧写出的间隔，第一帧为0
+     * @return 未开启录制该事件时返回null
+     */
+    public DeltaFlushEvent beginDeltaFlush(int chars, long gapNanos) {
+        if (!DELTA_FLUSH.isEnabled()) {
+            return null;
+        }
+        DeltaFlushEvent event = tag(new DeltaFlushEvent());
+        event.chars = chars;
+        event.gap = gapNanos;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 记录一条对话记录从提交到落库的耗时，future完成时（在写入线程上）提交事件
+     */
+    public void persisting(Record record, CompletableFuture<Record> saved) {
+        if (!RECORD_PERSIST.isEnabled()) {
+            return;
+        }
+        RecordPersistEvent event = tag(new RecordPersistEvent());
+        event.rid = record.getRid() != null ? record.getRid() : -1;
+        event.direction = Boolean.TRUE.equals(record.getDirection());
+        event.chars = record.getContent() != null ? record.getContent().length() : 0;
+        event.begin();
+        saved.whenComplete((result, error) -> {
+            event.succeeded = error == null;
+            event.commit();
+        });
+    }
+
+    /**
+     * 生成结束，只记录第一次调用
+     * @param outcome complete、error、input_rejected 或 executor_rejected
+     * @return 是否为首次调用
+     */
+    public synchronized boolean complete(String outcome, int replyChars) {
+        if (completed) {
+            return false;
+        }
+        completed = true;
+        completion.outcome = outcome;
+        completion.replyChars = replyChars;
+        completion.commit();
+        return true;
+    }
+
+    private <T extends GenerationEvent> T tag(T event) {
+        event.sid = sid;
+        event.uid = uid;
+        event.agentType = agentType;
+        return event;
+    }
+}
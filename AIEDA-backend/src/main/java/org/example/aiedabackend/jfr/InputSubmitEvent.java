@@ -0,0 +1,29 @@
+package org.example.aiedabackend.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 向大模型服务提交用户输入（/api/v1/user/input）
+ */
+@Name("aieda.InputSubmit")
+@Label("Input Submit")
+@Description("向大模型服务提交用户输入的耗时")
+public class InputSubmitEvent extends GenerationEvent {
+
+    @Label("Input Type")
+    String inputType;
+
+    @Label("Accepted")
+    @Description("大模型服务是否返回success")
+    boolean accepted;
+
+    /**
+     * 结束计时并提交
+     */
+    public void finish(boolean accepted) {
+        this.accepted = accepted;
+        commit();
+    }
+}
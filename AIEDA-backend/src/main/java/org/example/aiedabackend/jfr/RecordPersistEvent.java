@@ -0,0 +1,26 @@
+package org.example.aiedabackend.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 对话记录从提交到落库，包含在写入队列中等待的时间
+ */
+@Name("aieda.RecordPersist")
+@Label("Record Persist")
+@Description("对话记录从提交写入队列到落库的耗时")
+public class RecordPersistEvent extends GenerationEvent {
+
+    @Label("Record ID")
+    int rid;
+
+    @Label("From User")
+    boolean direction;
+
+    @Label("Characters")
+    int chars;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
@@ -0,0 +1,36 @@
+package org.example.aiedabackend.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 连接大模型事件流（/api/v1/stream），到收到响应头为止
+ */
+@Name("aieda.UpstreamConnect")
+@Label("Upstream Connect")
+@Description("连接大模型事件流到收到响应头的耗时")
+public class UpstreamConnectEvent extends GenerationEvent {
+
+    @Label("Status Code")
+    @Description("响应状态码，连接失败时为-1")
+    int statusCode;
+
+    @Label("Reactive")
+    @Description("是否为响应式转发模式")
+    boolean reactive;
+
+    private transient boolean finished;
+
+    /**
+     * 结束计时并提交，只有第一次调用生效（响应式模式下响应头回调和失败回调都可能调用）
+     */
+    public synchronized void finish(int statusCode) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        this.statusCode = statusCode;
+        commit();
+    }
+}
@@ -0,0 +1,25 @@
+package org.example.aiedabackend.po;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 应用侧分段分配的ID水位，每次从数据库预留一段连续ID，在内存中逐个分配
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "id_blocks")
+public class IdBlock {
+
+    @Id
+    @Column(length = 32)
+    private String name;
+
+    // 已分配出去的最大ID
+    @Column(name = "max_id", nullable = false)
+    private Long maxId;
+}
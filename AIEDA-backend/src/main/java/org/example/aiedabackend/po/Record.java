@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.example.aiedabackend.util.ContentCodec;
 import org.example.aiedabackend.vo.RecordVO;
 
 import java.time.LocalDateTime;
@@ -12,11 +13,13 @@ import java.time.LocalDateTime;
 @Setter
 @NoArgsConstructor
 @Entity
-@Table(name = "records")
+@Table(name = "records", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_records_sid_sequence", columnNames = {"sid", "sequence"})
+})
 public class Record {
 
+    // 由 RecordIdAllocator 分段预分配，写入前即可确定，便于批量插入
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer rid;
 
     @Column(nullable = false)
@@ -28,9 +31,18 @@ public class Record {
     @Column(nullable = false)
     private Boolean direction;
 
+    // 消息内容；内容压缩存储时只是前缀，完整内容在contentData中
     @Column(columnDefinition = "TEXT", nullable = false)
     private String content;
 
+    // 压缩后的完整内容（首字节为格式标记），未压缩时为null，见 ContentCodec
+    @Column(name = "content_data", columnDefinition = "LONGBLOB")
+    private byte[] contentData;
+
+    // 压缩存储时完整内容的字符数，未压缩时为null
+    @Column(name = "content_length")
+    private Integer contentLength;
+
     @Column(nullable = false)
     private Integer sequence;
 
@@ -50,12 +62,19 @@ public class Record {
         this.createTime = createTime;
     }
 
+    /**
+     * 完整的消息内容，压缩存储时解压
+     */
+    public String getFullContent() {
+        return contentData != null ? ContentCodec.decode(contentData, contentLength) : content;
+    }
+
     public RecordVO toVO() {
         RecordVO recordVO = new RecordVO();
         recordVO.setRid(this.rid);
         recordVO.setSid(this.sid);
         recordVO.setDirection(this.direction);
-        recordVO.setContent(this.content);
+        recordVO.setContent(getFullContent());
         recordVO.setSequence(this.sequence);
         recordVO.setType(this.type);
         recordVO.setCreateTime(this.createTime);
@@ -0,0 +1,113 @@
+package org.example.aiedabackend.relay;
+
+import java.io.IOException;
+
+/**
+ * 增量内容合并器
+ * <p>
+ * 位于delta过滤和SSE写出之间，按字节数或时间窗口把多个delta合并为一个SSE帧：
+ * <ul>
+ *     <li>距上一次发送已超过时间窗口时，新到的delta直接发送，不增加延迟（低速输出时每个token一帧）；</li>
+ *     <li>窗口内到达的delta暂存，累计达到字节上限时立即发送，否则在窗口结束时由调用方安排发送；</li>
+ *     <li>complete、error等控制消息发送前必须先 {@link #flush}，保证顺序且不滞留内容。</li>
+ * </ul>
+ * 高速输出时每个窗口最多一帧，减少帧开销和系统调用。时间由调用方传入，便于测试。
+ * <p>
+ * 非线程安全，由 {@link SseFrameWriter} 在持锁状态下调用。
+ */
+public class DeltaCoalescer {
+
+    /**
+     * 合并后内容的发送目标
+     */
+    public interface Sink {
+        void send(CharSequence content) throws IOException;
+    }
+
+    private final int maxBytes;
+    private final long windowMs;
+    private final Sink sink;
+    private final StringBuilder pending = new StringBuilder(256);
+    private int pendingBytes = 0;
+    private long lastSentAt = Long.MIN_VALUE / 2;
+    private long framesSent = 0;
+    private long deltasReceived = 0;
+
+    /**
+     * @param maxBytes 单帧累计的UTF-8字节上限，达到后立即发送
+     * @param windowMs 合并时间窗口，小于等于0时不合并，每个delta单独发送
+     */
+    public DeltaCoalescer(int maxBytes, long windowMs, Sink sink) {
+        this.maxBytes = maxBytes;
+        this.windowMs = windowMs;
+        this.sink = sink;
+    }
+
+    /**
+     * 加入一个delta
+     * @return 暂存内容需要在多少毫秒后发送；-1表示没有暂存内容
+     */
+    public long append(CharSequence delta, long nowMs) throws IOException {
+        deltasReceived++;
+        if (pending.length() == 0 && nowMs - lastSentAt >= windowMs) {
+            // 距离上一帧已经超过窗口，直接发送
+            send(delta, nowMs);
+            return -1;
+        }
+        pending.append(delta);
+        pendingBytes += utf8Length(delta);
+        if (pendingBytes >= maxBytes) {
+            flush(nowMs);
+            return -1;
+        }
+        return Math.max(0, lastSentAt + windowMs - nowMs);
+    }
+
+    /**
+     * 立即发送暂存的内容
+     */
+    public void flush(long nowMs) throws IOException {
+        if (pending.length() == 0) {
+            return;
+        }
+        try {
+            send(pending, nowMs);
+        } finally {
+            pending.setLength(0);
+            pendingBytes = 0;
+        }
+    }
+
+    public boolean hasPending() {
+        return pending.length() > 0;
+    }
+
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    public long getDeltasReceived() {
+        return deltasReceived;
+    }
+
+    private void send(CharSequence content, long nowMs) throws IOException {
+        lastSentAt = nowMs;
+        framesSent++;
+        sink.send(content);
+    }
+
+    static int utf8Length(CharSequence text) {
+        int bytes = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800 || Character.isSurrogate(c)) {
+                bytes += 2; // 代理对两个char共4字节
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
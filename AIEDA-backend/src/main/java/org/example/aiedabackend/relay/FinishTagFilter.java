@@ -0,0 +1,96 @@
+package org.example.aiedabackend.relay;
+
+/**
+ * 流式 {@code <finish>} 标签过滤器
+ * <p>
+ * 从大模型输出中去掉 {@code <finish>} 和 {@code </finish>} 标签（不区分大小写），其余内容原样保留。
+ * 以字符为单位的单遍状态机：只有当前字符仍可能构成结束标签时才暂存（最多8个字符），
+ * 一旦不匹配立即输出，已输出的内容不会被重新扫描，因此标签被任意切分到多个片段中也能正确识别。
+ * 结果写入复用的内部缓冲区，过滤过程不产生对象分配。
+ * <p>
+ * 非线程安全，每个上游连接使用一个实例。
+ */
+public class FinishTagFilter {
+
+    // 标签名部分（不含 '<'、'/' 和 '>'），只包含小写ASCII字母
+    private static final String TAG_NAME = "finish";
+    // 暂存字符的最大数量："</finish" 共8个字符，读到 '>' 时整段丢弃
+    private static final int MAX_PENDING = TAG_NAME.length() + 2;
+
+    private final char[] pending = new char[MAX_PENDING];
+    private int pendingLength = 0;
+    // 是否已读到 '/'
+    private boolean closing = false;
+    private final StringBuilder output = new StringBuilder(64);
+
+    /**
+     * 过滤一个片段
+     * @return 可以立即发送的内容，仅在下一次调用前有效
+     */
+    public CharSequence filter(CharSequence chunk) {
+        output.setLength(0);
+        for (int i = 0, length = chunk.length(); i < length; i++) {
+            accept(chunk.charAt(i));
+        }
+        return output;
+    }
+
+    /**
+     * 流结束时输出暂存的内容（不完整的标签前缀按普通文本处理）
+     * @return 剩余内容，仅在下一次调用前有效
+     */
+    public CharSequence flush() {
+        output.setLength(0);
+        releasePending();
+        return output;
+    }
+
+    /**
+     * 当前暂存、尚未输出的字符数
+     */
+    public int pendingLength() {
+        return pendingLength;
+    }
+
+    private void accept(char c) {
+        if (pendingLength == 0) {
+            if (c == '<') {
+                hold(c);
+            } else {
+                output.append(c);
+            }
+            return;
+        }
+
+        // 已暂存 "<"、"</" 或 "<" + 标签名前缀
+        int nameMatched = pendingLength - 1 - (closing ? 1 : 0);
+        if (pendingLength == 1 && c == '/') {
+            closing = true;
+            hold(c);
+        } else if (nameMatched < TAG_NAME.length() && toLowerAscii(c) == TAG_NAME.charAt(nameMatched)) {
+            hold(c);
+        } else if (nameMatched == TAG_NAME.length() && c == '>') {
+            // 完整的结束标签，整段丢弃
+            pendingLength = 0;
+            closing = false;
+        } else {
+            // 不匹配：暂存内容原样输出，当前字符从初始状态重新处理（'<' 可能是新标签的开始）
+            releasePending();
+            accept(c);
+        }
+    }
+
+    private void hold(char c) {
+        pending[pendingLength++] = c;
+    }
+
+    private void releasePending() {
+        output.append(pending, 0, pendingLength);
+        pendingLength = 0;
+        closing = false;
+    }
+
+    private static char toLowerAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
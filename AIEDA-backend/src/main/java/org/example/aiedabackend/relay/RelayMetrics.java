@@ -0,0 +1,122 @@
+package org.example.aiedabackend.relay;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式转发的指标
+ * <p>
+ * 逐帧、逐个delta路径上用到的计时器和计数器在创建时一次注册好，记录时不再按名称查找；
+ * 直方图使用固定的桶边界（按预期范围裁剪桶数），记录一次只是几次原子累加，不分配对象。
+ */
+public class RelayMetrics {
+
+    // 生成结束的结果取值
+    private static final List<String> OUTCOMES = List.of("complete", "error", "input_rejected", "executor_rejected");
+
+    private final MeterRegistry registry;
+    private final Timer firstToken;
+    private final Timer deltaGap;
+    private final Counter deltaFrames;
+    private final Counter deltaBytes;
+    private final Counter upstreamFrames;
+    private final Counter upstreamBytes;
+    private final DistributionSummary framesPerSecond;
+    // 结果 -> 生成耗时计时器，构造后只读
+    private final Map<String, Timer> generationDurations = new HashMap<>();
+
+    public RelayMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.firstToken = Timer.builder("ai.generation.first.token")
+                .description("从收到用户消息到首个增量内容交给前端的耗时")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(10))
+                .maximumExpectedValue(Duration.ofMinutes(2))
+                .register(registry);
+        this.deltaGap = Timer.builder("ai.sse.delta.gap")
+                .description("同一次生成中相邻两帧增量内容写出的间隔")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(60))
+                .register(registry);
+        this.deltaFrames = Counter.builder("ai.sse.delta.frames")
+                .description("向前端发送的增量帧总数")
+                .register(registry);
+        this.deltaBytes = Counter.builder("ai.sse.delta.bytes")
+                .description("向前端发送的增量内容字节数（UTF-8，不含帧格式）")
+                .baseUnit("bytes")
+                .register(registry);
+        this.upstreamFrames = Counter.builder("ai.relay.upstream.frames")
+                .description("从大模型事件流收到的帧数")
+                .register(registry);
+        this.upstreamBytes = Counter.builder("ai.relay.upstream.bytes")
+                .description("从大模型事件流收到的帧数据字节数")
+                .baseUnit("bytes")
+                .register(registry);
+        this.framesPerSecond = DistributionSummary.builder("ai.sse.frames.per.second")
+                .description("单次生成向前端发送增量帧的速率（每个会话每次生成记录一次）")
+                .register(registry);
+        for (String outcome : OUTCOMES) {
+            generationDurations.put(outcome, generationDuration(outcome));
+        }
+    }
+
+    private Timer generationDuration(String outcome) {
+        return Timer.builder("ai.generation.duration")
+                .description("从收到用户消息到生成结束的耗时")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(10))
+                .maximumExpectedValue(Duration.ofMinutes(10))
+                .register(registry);
+    }
+
+    /**
+     * 写出一帧增量内容
+     * @param gapNanos 距同一次生成上一帧的间隔，第一帧传0（不计入间隔直方图）
+     */
+    public void deltaFlushed(int bytes, long gapNanos) {
+        deltaFrames.increment();
+        deltaBytes.increment(bytes);
+        if (gapNanos > 0) {
+            deltaGap.record(gapNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 收到一个上游事件帧
+     */
+    public void upstreamFrame(int bytes) {
+        upstreamFrames.increment();
+        upstreamBytes.increment(bytes);
+    }
+
+    public void firstToken(long elapsedNanos) {
+        firstToken.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void frameRate(double framesPerSecond) {
+        this.framesPerSecond.record(framesPerSecond);
+    }
+
+    /**
+     * 一次生成结束，每次生成只调用一次，按结果分别计时
+     * @param outcome complete、error、input_rejected 或 executor_rejected
+     */
+    public void generationCompleted(String outcome, long elapsedNanos) {
+        Timer timer = generationDurations.get(outcome);
+        if (timer == null) {
+            // 未预先注册的结果，由注册表按名称和标签查找或注册
+            timer = generationDuration(outcome);
+        }
+        timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,211 @@
+package org.example.aiedabackend.relay;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 转发热路径的内存追踪
+ * <p>
+ * 替代逐帧、逐个delta的日志：每个会话一个定长环形缓冲区，记录结构化的事件（类型、帧序号、两个数值），
+ * 写入时不格式化时间、不拼接字符串，只有导出时才转换为可读的形式。
+ * 每次生成开始时按采样率决定是否追踪，也可以对指定会话强制开启；未被追踪时 {@link #begin} 返回
+ * {@link Trace#OFF}，记录调用只有一次字段判断。追踪的会话数有上限，超出时淘汰最久未使用的会话。
+ */
+public class RelayTracer {
+
+    /**
+     * 事件类型，a、b两个数值的含义见各类型说明
+     */
+    public enum Kind {
+        // 开始一次生成
+        GENERATION_START,
+        // 收到上游帧：a=数据长度，b=帧中事件数
+        FRAME,
+        // 上游帧解析失败：a=数据长度
+        DECODE_ERROR,
+        // 事件的会话ID与当前连接不匹配
+        SESSION_MISMATCH,
+        // 收到空delta
+        EMPTY_DELTA,
+        // delta过滤后提交发送：a=原始长度，b=发送长度
+        DELTA,
+        // delta过滤后为空（暂存了可能的标签前缀）：a=原始长度
+        DELTA_HELD,
+        // 发送增量内容失败：a=内容长度
+        SEND_FAILED,
+        // 收到生成结束事件
+        LOOP_END,
+        // 上游事件流结束：a=本次生成发送的帧数，b=回复长度
+        STREAM_END
+    }
+
+    /**
+     * 导出的事件
+     * @param offsetMicros 距离该会话第一条保留事件的微秒数
+     */
+    public record Event(Instant time, long offsetMicros, Kind kind, int frame, long a, long b, String detail) {
+    }
+
+    /**
+     * 一个会话的事件环形缓冲区；未追踪时使用 {@link #OFF}，所有记录调用直接返回
+     */
+    public static final class Trace {
+        public static final Trace OFF = new Trace(0, 0, 0);
+
+        private final long[] nanos;
+        private final Kind[] kinds;
+        private final int[] frames;
+        private final long[] as;
+        private final long[] bs;
+        private final String[] details;
+        // 墙钟与单调时钟的对应关系，导出时换算事件时间
+        private final long baseEpochMillis;
+        private final long baseNanos;
+        private long written = 0;
+
+        private Trace(int capacity, long baseEpochMillis, long baseNanos) {
+            this.nanos = new long[capacity];
+            this.kinds = new Kind[capacity];
+            this.frames = new int[capacity];
+            this.as = new long[capacity];
+            this.bs = new long[capacity];
+            this.details = new String[capacity];
+            this.baseEpochMillis = baseEpochMillis;
+            this.baseNanos = baseNanos;
+        }
+
+        public boolean isOn() {
+            return this != OFF;
+        }
+
+        public void record(Kind kind, int frame, long a, long b) {
+            if (this != OFF) {
+                append(kind, frame, a, b, null);
+            }
+        }
+
+        /**
+         * 带说明文字的事件，只用于不频繁的事件（错误等），说明应是已有的字符串，不要在调用处拼接
+         */
+        public void record(Kind kind, int frame, long a, String detail) {
+            if (this != OFF) {
+                append(kind, frame, a, 0, detail);
+            }
+        }
+
+        private synchronized void append(Kind kind, int frame, long a, long b, String detail) {
+            int index = (int) (written % nanos.length);
+            nanos[index] = System.nanoTime();
+            kinds[index] = kind;
+            frames[index] = frame;
+            as[index] = a;
+            bs[index] = b;
+            details[index] = detail;
+            written++;
+        }
+
+        synchronized List<Event> snapshot() {
+            int size = (int) Math.min(written, nanos.length);
+            List<Event> events = new ArrayList<>(size);
+            long first = written - size;
+            long firstNanos = size > 0 ? nanos[(int) (first % nanos.length)] : 0;
+            for (long i = first; i < written; i++) {
+                int index = (int) (i % nanos.length);
+                long epochMicros = baseEpochMillis * 1000 + (nanos[index] - baseNanos) / 1000;
+                events.add(new Event(Instant.EPOCH.plus(epochMicros, ChronoUnit.MICROS),
+                        (nanos[index] - firstNanos) / 1000, kinds[index], frames[index], as[index], bs[index], details[index]));
+            }
+            return events;
+        }
+    }
+
+    private final int eventsPerSession;
+    private final double sampleRate;
+    private final Cache<String, Trace> traces;
+    // 强制追踪的会话，不受采样率限制
+    private final Set<String> forced = ConcurrentHashMap.newKeySet();
+    private final AtomicLong tracedGenerations = new AtomicLong();
+
+    /**
+     * @param eventsPerSession 每个会话保留的事件数
+     * @param maxSessions 同时保留追踪的会话数
+     * @param sampleRate 每次生成被追踪的概率（0~1）
+     * @param idleSeconds 会话追踪多久未访问后丢弃
+     */
+    public RelayTracer(int eventsPerSession, int maxSessions, double sampleRate, long idleSeconds) {
+        this.eventsPerSession = eventsPerSession;
+        this.sampleRate = sampleRate;
+        this.traces = Caffeine.newBuilder()
+                .maximumSize(maxSessions)
+                .expireAfterAccess(idleSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 一次生成开始时调用，决定是否追踪
+     */
+    public Trace begin(String sessionId) {
+        if (sessionId == null || eventsPerSession <= 0) {
+            return Trace.OFF;
+        }
+        if (!forced.contains(sessionId) && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return Trace.OFF;
+        }
+        Trace trace = traces.get(sessionId,
+                id -> new Trace(eventsPerSession, System.currentTimeMillis(), System.nanoTime()));
+        trace.record(Kind.GENERATION_START, 0, 0, 0);
+        tracedGenerations.incrementAndGet();
+        return trace;
+    }
+
+    /**
+     * 对会话强制开启追踪（从下一次生成开始）
+     */
+    public void enable(String sessionId) {
+        forced.add(sessionId);
+    }
+
+    /**
+     * 取消强制追踪，已记录的事件保留到被淘汰
+     */
+    public void disable(String sessionId) {
+        forced.remove(sessionId);
+    }
+
+    public Set<String> getForcedSessions() {
+        return Set.copyOf(forced);
+    }
+
+    /**
+     * 当前保留追踪的会话
+     */
+    public List<String> sessions() {
+        return new ArrayList<>(traces.asMap().keySet());
+    }
+
+    /**
+     * 导出会话的追踪事件，按时间顺序；没有追踪记录时返回空列表
+     */
+    public List<Event> dump(String sessionId) {
+        Trace trace = traces.getIfPresent(sessionId);
+        return trace != null ? trace.snapshot() : List.of();
+    }
+
+    public long getTracedGenerations() {
+        return tracedGenerations.get();
+    }
+
+    public long size() {
+        return traces.estimatedSize();
+    }
+}
@@ -0,0 +1,292 @@
+package org.example.aiedabackend.relay;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 前端SSE连接注册表
+ * <p>
+ * 维护会话ID与SSE连接的双向索引，按会话ID或按emitter查找、注销都是O(1)。
+ * 无活动超时由一个哈希时间轮统一检测：单个线程按固定间隔推进时间轮，每个连接在其预计到期的槽位上
+ * 只被检查一次；收到数据时只更新活跃时间，不操作时间轮，到期检查时发现期间有活动再按新的到期时间放回。
+ * 因此超时检测的开销与到期的连接数成正比，与打开的连接总数无关。
+ * <p>
+ * 时间轮的槽位只由推进线程访问，其他线程通过无锁队列提交待加入时间轮的连接。
+ */
+@Slf4j
+public class SseConnectionRegistry implements AutoCloseable {
+
+    /**
+     * 一个已注册的SSE连接
+     */
+    public static final class Connection {
+        private final Integer sid;
+        private final SseEmitter emitter;
+        private final SseFrameWriter writer;
+        private volatile long lastActivity;
+        // 超时监控是否开启（硬干预期间暂停）
+        private volatile boolean monitored = true;
+        private volatile boolean closed = false;
+        // 是否已在时间轮中（或等待加入），避免重复加入
+        private final AtomicBoolean inWheel = new AtomicBoolean(false);
+
+        private Connection(Integer sid, SseEmitter emitter, SseFrameWriter writer, long now) {
+            this.sid = sid;
+            this.emitter = emitter;
+            this.writer = writer;
+            this.lastActivity = now;
+        }
+
+        public Integer getSid() {
+            return sid;
+        }
+
+        public SseEmitter getEmitter() {
+            return emitter;
+        }
+
+        public SseFrameWriter getWriter() {
+            return writer;
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, Connection> bySid = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<SseEmitter, Connection> byEmitter = new ConcurrentHashMap<>();
+
+    private final long inactivityTimeoutMs;
+    private final long tickMs;
+    private final int mask;
+    private final LongSupplier clock;
+    // 以下字段只由时间轮推进线程访问
+    private final Queue<Connection>[] wheel;
+    private long processedTick;
+
+    private final Queue<Connection> pendingInserts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private ScheduledExecutorService ticker;
+
+    /**
+     * @param inactivityTimeoutMs 无活动超时时间
+     * @param tickMs              时间轮推进间隔，即超时检测的精度
+     * @param slots               时间轮槽位数，向上取整为2的幂
+     */
+    public SseConnectionRegistry(long inactivityTimeoutMs, long tickMs, int slots) {
+        this(inactivityTimeoutMs, tickMs, slots, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    @SuppressWarnings("unchecked")
+    SseConnectionRegistry(long inactivityTimeoutMs, long tickMs, int slots, LongSupplier clock) {
+        int size = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+        this.inactivityTimeoutMs = inactivityTimeoutMs;
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.clock = clock;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.processedTick = clock.getAsLong() / tickMs;
+    }
+
+    /**
+     * 启动时间轮推进线程
+     */
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-timeout-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (Exception e) {
+                log.error("SSE超时时间轮推进失败", e);
+            }
+        }, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        log.info("SSE连接超时时间轮已启动 - 超时: {}ms, 精度: {}ms, 槽位: {}", inactivityTimeoutMs, tickMs, wheel.length);
+    }
+
+    @Override
+    public void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * 注册会话的SSE连接并开始超时监控，若该会话已有连接则关闭旧连接
+     */
+    public Connection register(Integer sid, SseEmitter emitter, SseFrameWriter writer) {
+        Connection connection = new Connection(sid, emitter, writer, clock.getAsLong());
+        byEmitter.put(emitter, connection);
+        Connection previous = bySid.put(sid, connection);
+        if (previous != null && previous.emitter != emitter) {
+            log.warn("🔄 会话{}已存在SSE连接，关闭旧连接", sid);
+            close(previous, "新连接替换");
+        }
+        schedule(connection);
+        return connection;
+    }
+
+    /**
+     * 注销连接（连接已完成、超时或出错时调用），不影响该会话后来注册的新连接
+     */
+    public void unregister(SseEmitter emitter) {
+        Connection connection = byEmitter.remove(emitter);
+        if (connection != null) {
+            connection.closed = true;
+            bySid.remove(connection.sid, connection);
+        }
+    }
+
+    /**
+     * 注销并关闭连接
+     */
+    public void close(SseEmitter emitter, String reason) {
+        Connection connection = byEmitter.get(emitter);
+        if (connection != null) {
+            close(connection, reason);
+        } else {
+            completeQuietly(emitter, reason);
+        }
+    }
+
+    public SseEmitter getEmitter(Integer sid) {
+        Connection connection = bySid.get(sid);
+        return connection != null ? connection.emitter : null;
+    }
+
+    public SseFrameWriter getWriter(SseEmitter emitter) {
+        Connection connection = byEmitter.get(emitter);
+        return connection != null ? connection.writer : null;
+    }
+
+    /**
+     * 记录连接活动，只更新活跃时间
+     */
+    public void touch(SseEmitter emitter) {
+        Connection connection = byEmitter.get(emitter);
+        if (connection != null) {
+            connection.lastActivity = clock.getAsLong();
+        }
+    }
+
+    /**
+     * 暂停会话的超时监控（硬干预期间）
+     * @return 会话是否存在SSE连接
+     */
+    public boolean pauseTimeout(Integer sid) {
+        Connection connection = bySid.get(sid);
+        if (connection == null) {
+            return false;
+        }
+        connection.monitored = false;
+        return true;
+    }
+
+    /**
+     * 重置活跃时间并恢复会话的超时监控
+     * @return 会话是否存在SSE连接
+     */
+    public boolean resumeTimeout(Integer sid) {
+        Connection connection = bySid.get(sid);
+        if (connection == null) {
+            return false;
+        }
+        connection.lastActivity = clock.getAsLong();
+        connection.monitored = true;
+        schedule(connection);
+        return true;
+    }
+
+    /**
+     * 当前打开的连接数
+     */
+    public int size() {
+        return byEmitter.size();
+    }
+
+    /**
+     * 因无活动而关闭的连接总数
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * 推进时间轮：处理新加入的连接，并检查从上次推进到现在之间每个槽位上的连接
+     */
+    void tick() {
+        long now = clock.getAsLong();
+        Connection inserted;
+        while ((inserted = pendingInserts.poll()) != null) {
+            place(inserted);
+        }
+
+        long targetTick = now / tickMs;
+        while (processedTick < targetTick) {
+            processedTick++;
+            Queue<Connection> slot = wheel[(int) (processedTick & mask)];
+            // 只处理本轮开始时已在槽位中的连接，重新放回同一槽位的连接留到下一圈
+            for (int i = slot.size(); i > 0; i--) {
+                check(slot.poll(), now);
+            }
+        }
+    }
+
+    private void check(Connection connection, long now) {
+        if (connection.closed || !connection.monitored) {
+            connection.inWheel.set(false);
+            // 与resumeTimeout并发时重新检查，避免漏掉刚恢复监控的连接
+            if (!connection.closed && connection.monitored && connection.inWheel.compareAndSet(false, true)) {
+                place(connection);
+            }
+            return;
+        }
+        if (now - connection.lastActivity >= inactivityTimeoutMs) {
+            connection.inWheel.set(false);
+            timeoutCount.incrementAndGet();
+            log.warn("⏰ SSE连接因{}秒无活动而超时，准备关闭 - 会话ID: {}", inactivityTimeoutMs / 1000, connection.sid);
+            close(connection, "无活动超时");
+        } else {
+            place(connection);
+        }
+    }
+
+    private void place(Connection connection) {
+        long deadlineTick = Math.max((connection.lastActivity + inactivityTimeoutMs) / tickMs, processedTick + 1);
+        wheel[(int) (deadlineTick & mask)].add(connection);
+    }
+
+    private void schedule(Connection connection) {
+        if (connection.inWheel.compareAndSet(false, true)) {
+            pendingInserts.add(connection);
+        }
+    }
+
+    private void close(Connection connection, String reason) {
+        unregister(connection.emitter);
+        completeQuietly(connection.emitter, reason);
+    }
+
+    private void completeQuietly(SseEmitter emitter, String reason) {
+        try {
+            emitter.complete();
+            log.info("🔚 SSE连接已关闭 - 原因: {}", reason);
+        } catch (Exception e) {
+            log.error("❌ 关闭SSE连接失败 - 原因: {}", reason, e);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package org.example.aiedabackend.relay;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 增量式SSE帧解析器
+ * <p>
+ * 按照 HTML Living Standard 中 event-stream 的解析规则，逐字节处理任意切分的网络数据：
+ * 支持 CR / LF / CRLF 行结束符、注释行、{@code event:}、{@code id:}、{@code retry:} 字段，
+ * 以及多行 {@code data:} 字段的拼接。行缓冲和数据缓冲在整个连接期间复用，
+ * 解析 {@code data:} 帧本身不产生任何对象分配。
+ * <p>
+ * 非线程安全，每个上游连接使用一个实例。
+ */
+public class SseFrameParser {
+
+    /**
+     * 帧回调
+     */
+    public interface FrameHandler {
+        /**
+         * 收到一个完整的事件帧
+         * @param eventType   {@code event:} 字段，未指定时为null
+         * @param lastEventId 最近一次 {@code id:} 字段，未指定时为null
+         * @param data        数据缓冲区（多行data以\n连接），仅在回调期间有效
+         * @param length      数据长度
+         * @return true表示停止解析（例如检测到生成结束）
+         */
+        boolean onFrame(String eventType, String lastEventId, byte[] data, int length);
+    }
+
+    private static final int DEFAULT_MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    private static final byte[] FIELD_DATA = "data".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FIELD_EVENT = "event".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FIELD_ID = "id".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FIELD_RETRY = "retry".getBytes(StandardCharsets.US_ASCII);
+
+    private final FrameHandler handler;
+    private final int maxFrameBytes;
+
+    private byte[] line = new byte[1024];
+    private int lineLength = 0;
+    private byte[] data = new byte[4096];
+    private int dataLength = 0;
+    private String eventType;
+    private String lastEventId;
+    private long retryMs = -1;
+    private boolean pendingCarriageReturn = false;
+    private boolean firstLine = true;
+
+    public SseFrameParser(FrameHandler handler) {
+        this(handler, DEFAULT_MAX_FRAME_BYTES);
+    }
+
+    public SseFrameParser(FrameHandler handler, int maxFrameBytes) {
+        this.handler = handler;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    /**
+     * 输入一段网络数据
+     * @return true表示回调要求停止解析，剩余数据被忽略
+     */
+    public boolean feed(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = buffer[i];
+            if (pendingCarriageReturn) {
+                pendingCarriageReturn = false;
+                if (b == '\n') {
+                    continue; // CRLF 的后半部分
+                }
+            }
+            if (b == '\r') {
+                pendingCarriageReturn = true;
+                if (endLine()) {
+                    return true;
+                }
+            } else if (b == '\n') {
+                if (endLine()) {
+                    return true;
+                }
+            } else {
+                appendToLine(b);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 输入一个ByteBuffer，读取其全部剩余字节
+     */
+    public boolean feed(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int length = buffer.remaining();
+            boolean stop = feed(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            buffer.position(buffer.limit());
+            return stop;
+        }
+        byte[] chunk = new byte[Math.min(buffer.remaining(), 8192)];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            if (feed(chunk, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 最近一次 {@code retry:} 字段的值，未收到时为-1
+     */
+    public long getRetryMs() {
+        return retryMs;
+    }
+
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    private void appendToLine(byte b) {
+        if (lineLength == line.length) {
+            line = grow(line, lineLength + 1);
+        }
+        line[lineLength++] = b;
+    }
+
+    private boolean endLine() {
+        int start = 0;
+        if (firstLine) {
+            firstLine = false;
+            // 跳过流开头的UTF-8 BOM
+            if (lineLength >= 3 && (line[0] & 0xFF) == 0xEF && (line[1] & 0xFF) == 0xBB && (line[2] & 0xFF) == 0xBF) {
+                start = 3;
+            }
+        }
+        int length = lineLength;
+        lineLength = 0;
+
+        if (length - start == 0) {
+            return dispatch();
+        }
+        if (line[start] == ':') {
+            return false; // 注释行
+        }
+
+        int colon = -1;
+        for (int i = start; i < length; i++) {
+            if (line[i] == ':') {
+                colon = i;
+                break;
+            }
+        }
+        int fieldEnd = colon == -1 ? length : colon;
+        int valueStart = colon == -1 ? length : colon + 1;
+        if (valueStart < length && line[valueStart] == ' ') {
+            valueStart++;
+        }
+
+        if (fieldEquals(start, fieldEnd, FIELD_DATA)) {
+            appendToData(valueStart, length);
+        } else if (fieldEquals(start, fieldEnd, FIELD_EVENT)) {
+            eventType = new String(line, valueStart, length - valueStart, StandardCharsets.UTF_8);
+        } else if (fieldEquals(start, fieldEnd, FIELD_ID)) {
+            if (!containsNull(valueStart, length)) {
+                lastEventId = new String(line, valueStart, length - valueStart, StandardCharsets.UTF_8);
+            }
+        } else if (fieldEquals(start, fieldEnd, FIELD_RETRY)) {
+            parseRetry(valueStart, length);
+        }
+        // 其他字段按规范忽略
+        return false;
+    }
+
+    private boolean dispatch() {
+        if (dataLength == 0) {
+            eventType = null;
+            return false;
+        }
+        // 去掉最后一个data行追加的换行符
+        int length = dataLength - 1;
+        String type = eventType;
+        dataLength = 0;
+        eventType = null;
+        if (length == 0) {
+            return false; // 空数据帧
+        }
+        return handler.onFrame(type, lastEventId, data, length);
+    }
+
+    private void appendToData(int from, int to) {
+        int length = to - from;
+        int required = dataLength + length + 1;
+        if (required > maxFrameBytes) {
+            throw new IllegalStateException("SSE帧超过最大长度限制: " + maxFrameBytes);
+        }
+        if (required > data.length) {
+            data = grow(data, required);
+        }
+        System.arraycopy(line, from, data, dataLength, length);
+        dataLength += length;
+        data[dataLength++] = '\n';
+    }
+
+    private void parseRetry(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = line[i];
+            if (b < '0' || b > '9') {
+                return; // 非纯数字按规范忽略
+            }
+            value = value * 10 + (b - '0');
+        }
+        retryMs = value;
+    }
+
+    private boolean containsNull(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean fieldEquals(int from, int to, byte[] field) {
+        if (to - from != field.length) {
+            return false;
+        }
+        for (int i = 0; i < field.length; i++) {
+            if (line[from + i] != field[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] grow(byte[] buffer, int required) {
+        if (required > maxFrameBytes) {
+            throw new IllegalStateException("SSE帧超过最大长度限制: " + maxFrameBytes);
+        }
+        int size = Math.max(required, Math.min(buffer.length * 2, maxFrameBytes));
+        byte[] grown = new byte[size];
+        System.arraycopy(buffer, 0, grown, 0, buffer.length);
+        return grown;
+    }
+}
@@ -0,0 +1,301 @@
+package org.example.aiedabackend.relay;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.aiedabackend.jfr.DeltaFlushEvent;
+import org.example.aiedabackend.jfr.GenerationEvents;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 面向前端的SSE帧写入器
+ * <p>
+ * 每个SSE连接一个实例。事件的JSON直接转义写入复用的缓冲区，拼成完整的SSE帧后一次性交给
+ * {@link SseEmitter#send(Set)} 写出；Spring在每次send后会通过响应对象刷新输出流，
+ * 不再需要按事件拆分写入、String.format 以及反射调用flush。
+ * <p>
+ * 帧格式与 {@code SseEmitter.event().name(...).data(json).reconnectTime(3000)} 完全一致，前端无需改动。
+ * <p>
+ * 增量内容经过 {@link DeltaCoalescer} 按字节数/时间窗口合并后再写出；其他消息发送前先写出暂存的增量内容，
+ * 保证complete、error等控制消息不会越过尚未发送的内容。
+ * <p>
+ * 每次写出增量帧记录 {@link RelayMetrics} 中的帧数、字节数和帧间隔；设置了生成事件上下文时，
+ * 同时提交一个 {@link DeltaFlushEvent}。
+ */
+@Slf4j
+public class SseFrameWriter {
+
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType("text", "plain", StandardCharsets.UTF_8);
+    private static final long RECONNECT_TIME_MS = 3000;
+    private static final String FRAME_SUFFIX = "\nretry:" + RECONNECT_TIME_MS + "\n\n";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SseEmitter emitter;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final StringBuilder frame = new StringBuilder(256);
+    private final DeltaCoalescer coalescer;
+    private final ScheduledExecutorService flushScheduler;
+    // 窗口到期后实际执行写出的线程池，为null时在调度线程上写出
+    private final Executor flushExecutor;
+    private final RelayMetrics metrics;
+    private boolean flushScheduled = false;
+    // 当前生成的JFR事件上下文，同一连接上的后一次生成会替换前一次
+    private volatile GenerationEvents generationEvents;
+    // 当前生成上一帧增量写出的时间，0表示本次生成还未写出
+    private long lastDeltaNanos = 0;
+
+    /**
+     * 不合并增量内容，每个delta单独成帧
+     */
+    public SseFrameWriter(SseEmitter emitter) {
+        this(emitter, 0, 0, null, null);
+    }
+
+    /**
+     * @param coalesceMaxBytes 合并帧的UTF-8字节上限
+     * @param coalesceWindowMs 合并时间窗口，小于等于0时不合并
+     * @param flushScheduler   窗口到期时写出暂存内容的调度器，开启合并时必须提供
+     */
+    public SseFrameWriter(SseEmitter emitter, int coalesceMaxBytes, long coalesceWindowMs,
+                          ScheduledExecutorService flushScheduler) {
+        this(emitter, coalesceMaxBytes, coalesceWindowMs, flushScheduler, null);
+    }
+
+    /**
+     * @param metrics 转发指标，为null时不记录
+     */
+    public SseFrameWriter(SseEmitter emitter, int coalesceMaxBytes, long coalesceWindowMs,
+                          ScheduledExecutorService flushScheduler, RelayMetrics metrics) {
+        this(emitter, coalesceMaxBytes, coalesceWindowMs, flushScheduler, null, metrics);
+    }
+
+    /**
+     * @param flushExecutor 窗口到期后执行写出的线程池。写出是阻塞IO，交给它执行可避免个别写出缓慢的连接占住共用的调度线程
+     */
+    public SseFrameWriter(SseEmitter emitter, int coalesceMaxBytes, long coalesceWindowMs,
+                          ScheduledExecutorService flushScheduler, Executor flushExecutor, RelayMetrics metrics) {
+        if (coalesceWindowMs > 0 && flushScheduler == null) {
+            throw new IllegalArgumentException("开启增量合并时必须提供调度器");
+        }
+        this.emitter = emitter;
+        this.flushScheduler = flushScheduler;
+        this.flushExecutor = flushExecutor;
+        this.metrics = metrics;
+        this.coalescer = new DeltaCoalescer(coalesceMaxBytes, coalesceWindowMs,
+                this::writeDelta);
+    }
+
+    public SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    /**
+     * 开始一次新的生成：设置JFR事件上下文，之后写出的增量帧带上该次生成的标签，帧间隔从头计算
+     */
+    public void beginGeneration(GenerationEvents generationEvents) {
+        lock.lock();
+        try {
+            this.generationEvents = generationEvents;
+            lastDeltaNanos = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 发送增量内容：{@code {"type":"delta","content":"..."}}
+     * 开启合并时可能暂存，稍后与后续内容合并为一帧写出
+     */
+    public void sendDelta(CharSequence content) throws IOException {
+        lock.lock();
+        try {
+            long delayMs = coalescer.append(content, now());
+            if (delayMs >= 0 && !flushScheduled) {
+                flushScheduled = true;
+                Runnable flush = flushExecutor != null ? () -> flushExecutor.execute(this::flushOnSchedule) : this::flushOnSchedule;
+                flushScheduler.schedule(flush, delayMs, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 立即写出暂存的增量内容
+     */
+    public void flushDeltas() throws IOException {
+        lock.lock();
+        try {
+            coalescer.flush(now());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 已写出的增量帧数
+     */
+    public long getDeltaFramesSent() {
+        lock.lock();
+        try {
+            return coalescer.getFramesSent();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 发送普通消息：{@code {"type":"...","message":"...","data":...}}
+     * @param rawJsonData 原样写入data字段的JSON，为null时不写data字段
+     */
+    public void sendMessage(String type, String message, String rawJsonData) throws IOException {
+        lock.lock();
+        try {
+            coalescer.flush(now());
+            begin("message");
+            frame.append("{\"type\":");
+            appendJsonString(frame, type);
+            frame.append(",\"message\":");
+            appendJsonString(frame, message);
+            if (rawJsonData != null) {
+                frame.append(",\"data\":").append(rawJsonData);
+            }
+            frame.append('}');
+            emitter.send(end());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 发送错误消息：{@code {"type":"error","message":"..."}}
+     */
+    public void sendError(String message) throws IOException {
+        sendMessage("error", message, null);
+    }
+
+    /**
+     * 发送完成信号：{@code {"type":"complete","message":"...","recordId":N}}
+     */
+    public void sendComplete(String message, int recordId) throws IOException {
+        lock.lock();
+        try {
+            coalescer.flush(now());
+            begin("message");
+            frame.append("{\"type\":\"complete\",\"message\":");
+            appendJsonString(frame, message);
+            frame.append(",\"recordId\":").append(recordId).append('}');
+            emitter.send(end());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 发送任意事件名、已经序列化好的JSON数据
+     */
+    public void sendRaw(String eventName, String json) throws IOException {
+        lock.lock();
+        try {
+            coalescer.flush(now());
+            begin(eventName);
+            frame.append(json);
+            emitter.send(end());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 构建增量内容帧，调用方需持有锁或独占该实例
+     */
+    Set<ResponseBodyEmitter.DataWithMediaType> deltaFrame(CharSequence content) {
+        begin("message");
+        frame.append("{\"type\":\"delta\",\"content\":");
+        appendJsonString(frame, content);
+        frame.append('}');
+        return end();
+    }
+
+    /**
+     * 写出一帧增量内容，由合并器在持有锁时调用
+     */
+    private void writeDelta(CharSequence content) throws IOException {
+        long now = System.nanoTime();
+        long gapNanos = lastDeltaNanos != 0 ? now - lastDeltaNanos : 0;
+        lastDeltaNanos = now;
+        if (metrics != null) {
+            metrics.deltaFlushed(DeltaCoalescer.utf8Length(content), gapNanos);
+        }
+        GenerationEvents events = generationEvents;
+        DeltaFlushEvent event = events != null ? events.beginDeltaFlush(content.length(), gapNanos) : null;
+        emitter.send(deltaFrame(content));
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+    private void flushOnSchedule() {
+        lock.lock();
+        try {
+            flushScheduled = false;
+            coalescer.flush(now());
+        } catch (IOException | IllegalStateException e) {
+            // 连接已关闭，暂存内容无法再送达
+            log.debug("定时写出合并的增量内容失败: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private void begin(String eventName) {
+        frame.setLength(0);
+        frame.append("event:").append(eventName).append("\ndata:");
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> end() {
+        frame.append(FRAME_SUFFIX);
+        return Set.of(new ResponseBodyEmitter.DataWithMediaType(frame.toString(), TEXT_PLAIN_UTF8));
+    }
+
+    /**
+     * 按JSON规范转义字符串并加上引号，null写为空字符串
+     */
+    static void appendJsonString(StringBuilder out, CharSequence value) {
+        out.append('"');
+        if (value != null) {
+            for (int i = 0, length = value.length(); i < length; i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    case '\b' -> out.append("\\b");
+                    case '\f' -> out.append("\\f");
+                    default -> {
+                        if (c < 0x20) {
+                            out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                        } else {
+                            out.append(c);
+                        }
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
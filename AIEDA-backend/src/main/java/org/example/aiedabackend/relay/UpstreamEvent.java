@@ -0,0 +1,48 @@
+package org.example.aiedabackend.relay;
+
+/**
+ * 归一化后的上游事件
+ * <p>
+ * 上游事件的字段可能位于事件顶层，也可能位于 data 子对象中，新格式（events数组）和
+ * 旧格式（type=event 批量事件）的事件结构也不同，解码时统一归一化为该记录，
+ * 处理逻辑不再关心原始结构。
+ *
+ * @param kind      事件分类
+ * @param name      原始事件名，例如 {@code llm_tool.chunk}
+ * @param sessionId 事件所属会话ID，可能为null
+ * @param userId    事件所属用户ID，可能为null
+ * @param tool      产生事件的工具名，可能为null
+ * @param text      流式输出事件为 {@code payload.delta}，连接确认消息为 {@code message}，其余为null
+ */
+public record UpstreamEvent(Kind kind, String name, String sessionId, String userId, String tool, String text) {
+
+    public static final String EVENT_CHUNK = "llm_tool.chunk";
+    public static final String EVENT_LOOP_END = "agent.loop_end";
+
+    public enum Kind {
+        /** 连接确认消息 */
+        CONNECTION,
+        /** 流式输出片段 */
+        CHUNK,
+        /** 生成结束 */
+        LOOP_END,
+        /** 其他事件，转发逻辑不关心 */
+        OTHER
+    }
+
+    public static UpstreamEvent of(String name, String sessionId, String userId, String tool, String delta) {
+        Kind kind;
+        if (EVENT_CHUNK.equals(name)) {
+            kind = Kind.CHUNK;
+        } else if (EVENT_LOOP_END.equals(name)) {
+            kind = Kind.LOOP_END;
+        } else {
+            kind = Kind.OTHER;
+        }
+        return new UpstreamEvent(kind, name, sessionId, userId, tool, kind == Kind.CHUNK ? delta : null);
+    }
+
+    public static UpstreamEvent connection(String message) {
+        return new UpstreamEvent(Kind.CONNECTION, null, null, null, null, message);
+    }
+}
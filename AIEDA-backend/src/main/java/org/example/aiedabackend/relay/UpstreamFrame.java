@@ -0,0 +1,98 @@
+package org.example.aiedabackend.relay;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 大模型事件流中一个 data 帧的类型化结构
+ * <p>
+ * 兼容两种格式：
+ * <ul>
+ *     <li>新格式：{@code {"events": [...]}}</li>
+ *     <li>旧格式：{@code {"type": "event", "data": {"data": {"batch": true, "events": [...]}}}}</li>
+ * </ul>
+ * 以及连接确认消息 {@code {"type": "connection", "message": "..."}}。
+ * 仅用于非高频帧的完整绑定，流式输出帧由 {@link UpstreamFrameDecoder} 直接流式解析
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record UpstreamFrame(String type, String message, List<Event> events, LegacyEnvelope data) {
+
+    /**
+     * 展开为归一化事件列表
+     * 连接确认消息返回单个 {@link UpstreamEvent.Kind#CONNECTION} 事件，无法识别的帧返回空列表
+     */
+    public List<UpstreamEvent> toEvents() {
+        if ("connection".equals(type)) {
+            return List.of(UpstreamEvent.connection(message));
+        }
+        List<Event> source = events;
+        if (source == null && "event".equals(type) && data != null && data.data() != null
+                && Boolean.TRUE.equals(data.data().batch())) {
+            source = data.data().events();
+        }
+        if (source == null) {
+            return List.of();
+        }
+        List<UpstreamEvent> result = new ArrayList<>(source.size());
+        for (Event event : source) {
+            if (event != null) {
+                result.add(event.toUpstreamEvent());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 单个事件，字段可能位于顶层，也可能位于 data 子对象中
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Event(@JsonProperty("session_id") String sessionId,
+                        @JsonProperty("user_id") String userId,
+                        String event,
+                        String tool,
+                        Payload payload,
+                        EventData data) {
+
+        /**
+         * 归一化为 {@link UpstreamEvent}：字段优先取顶层，顶层没有时取data子对象
+         */
+        public UpstreamEvent toUpstreamEvent() {
+            EventData nested = data != null ? data : EventData.EMPTY;
+            Payload resolvedPayload = payload != null ? payload : nested.payload();
+            return UpstreamEvent.of(
+                    event != null ? event : nested.event(),
+                    sessionId != null ? sessionId : nested.sessionId(),
+                    userId != null ? userId : nested.userId(),
+                    tool != null ? tool : nested.tool(),
+                    resolvedPayload != null ? resolvedPayload.delta() : null);
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record EventData(@JsonProperty("session_id") String sessionId,
+                            @JsonProperty("user_id") String userId,
+                            String event,
+                            String tool,
+                            Payload payload) {
+
+        static final EventData EMPTY = new EventData(null, null, null, null, null);
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Payload(String delta) {
+    }
+
+    /**
+     * 旧格式外层的 data 对象
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record LegacyEnvelope(LegacyBatch data) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record LegacyBatch(Boolean batch, List<Event> events) {
+    }
+}
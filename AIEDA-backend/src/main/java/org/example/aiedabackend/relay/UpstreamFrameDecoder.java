@@ -0,0 +1,165 @@
+package org.example.aiedabackend.relay;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上游事件帧解码器
+ * <p>
+ * 绝大多数帧是新格式的 {@code {"events":[{"event":"llm_tool.chunk","payload":{"delta":"..."}}]}}，
+ * 这类帧直接用Jackson流式API在字节缓冲区上解析：只取出会话ID、事件名、工具名和 {@code payload.delta}，
+ * 其余字段通过 {@link JsonParser#skipChildren()} 跳过，不构建树结构也不绑定中间对象。
+ * 连接确认消息和旧格式批量事件出现频率很低，使用共享的ObjectReader完整绑定为 {@link UpstreamFrame}。
+ */
+public final class UpstreamFrameDecoder {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final ObjectReader FRAME_READER = MAPPER.readerFor(UpstreamFrame.class);
+    private static final JsonFactory JSON_FACTORY = MAPPER.getFactory();
+
+    private UpstreamFrameDecoder() {
+    }
+
+    /**
+     * 解码一个data帧为归一化事件列表
+     */
+    public static List<UpstreamEvent> decode(byte[] data, int length) throws IOException {
+        List<UpstreamEvent> events = decodeEventsFrame(data, length);
+        if (events != null) {
+            return events;
+        }
+        return decodeFrame(data, length).toEvents();
+    }
+
+    /**
+     * 完整绑定为 {@link UpstreamFrame}
+     */
+    public static UpstreamFrame decodeFrame(byte[] data, int length) throws IOException {
+        return FRAME_READER.readValue(data, 0, length);
+    }
+
+    /**
+     * 流式解析新格式帧，顶层没有events数组或是连接确认消息时返回null，交给完整绑定处理
+     */
+    static List<UpstreamEvent> decodeEventsFrame(byte[] data, int length) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(data, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            List<UpstreamEvent> events = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("events".equals(field) && value == JsonToken.START_ARRAY) {
+                    events = readEvents(parser);
+                } else if ("type".equals(field) && value == JsonToken.VALUE_STRING
+                        && "connection".equals(parser.getText())) {
+                    return null;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return events;
+        }
+    }
+
+    private static List<UpstreamEvent> readEvents(JsonParser parser) throws IOException {
+        List<UpstreamEvent> events = new ArrayList<>(1);
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                EventFields top = new EventFields();
+                top.read(parser, true);
+                events.add(top.toEvent());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return events;
+    }
+
+    /**
+     * 单个事件中转发逻辑关心的字段，顶层缺失的字段从data子对象中补齐
+     */
+    private static final class EventFields {
+        private String sessionId;
+        private String userId;
+        private String event;
+        private String tool;
+        private String delta;
+        private EventFields nested;
+
+        void read(JsonParser parser, boolean allowNested) throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "session_id" -> sessionId = stringValue(parser, value);
+                    case "user_id" -> userId = stringValue(parser, value);
+                    case "event" -> event = stringValue(parser, value);
+                    case "tool" -> tool = stringValue(parser, value);
+                    case "payload" -> delta = readDelta(parser, value);
+                    case "data" -> {
+                        if (allowNested && value == JsonToken.START_OBJECT) {
+                            nested = new EventFields();
+                            nested.read(parser, false);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        UpstreamEvent toEvent() {
+            if (nested == null) {
+                return UpstreamEvent.of(event, sessionId, userId, tool, delta);
+            }
+            return UpstreamEvent.of(
+                    event != null ? event : nested.event,
+                    sessionId != null ? sessionId : nested.sessionId,
+                    userId != null ? userId : nested.userId,
+                    tool != null ? tool : nested.tool,
+                    delta != null ? delta : nested.delta);
+        }
+
+        private static String stringValue(JsonParser parser, JsonToken value) throws IOException {
+            if (value == JsonToken.VALUE_STRING) {
+                return parser.getText();
+            }
+            parser.skipChildren();
+            return null;
+        }
+
+        /**
+         * 从payload对象中只取出delta，其余字段跳过
+         */
+        private static String readDelta(JsonParser parser, JsonToken value) throws IOException {
+            if (value != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return null;
+            }
+            String delta = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("delta".equals(field) && token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                    delta = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return delta;
+        }
+    }
+}
@@ -10,4 +10,5 @@ public interface AccountService {
     String updateUser(Account account);
     Map<String,Object> login(Account account);
     String deleteUser(String phone);
+    boolean isAdmin(Integer uid);
 }
\ No newline at end of file
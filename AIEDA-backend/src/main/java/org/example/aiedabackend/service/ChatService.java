@@ -17,6 +17,12 @@ public interface ChatService {
      */
     List<SessionVO> getSessions(Integer uid);
 
+    /**
+     * 按更新时间倒序分页获取用户会话列表
+     * beforeUpdateTime和beforeSid为上一页最后一个会话的值，都为空时返回第一页
+     */
+    List<SessionVO> getSessions(Integer uid, java.time.LocalDateTime beforeUpdateTime, Integer beforeSid, int limit);
+
     /**
      * 创建新的会话
      */
@@ -27,6 +33,18 @@ public interface ChatService {
      */
     List<RecordVO> getRecords(Integer sid);
 
+    /**
+     * 按顺序号游标分页获取对话记录，结果按顺序号正序排列
+     * beforeSequence和afterSequence都为空时返回最新的一页
+     * @param previewLength 大于0时只返回内容的前previewLength个字符
+     */
+    List<RecordVO> getRecords(Integer sid, Integer beforeSequence, Integer afterSequence, int limit, Integer previewLength);
+
+    /**
+     * 获取单条对话记录的完整内容，记录不属于该会话时返回null
+     */
+    RecordVO getRecord(Integer sid, Integer rid);
+
     /**
      * 发送消息，并通过SSE流式返回AI回复
      */
@@ -3,6 +3,8 @@ package org.example.aiedabackend.service;
 import org.example.aiedabackend.vo.FileListResponseVO;
 import org.example.aiedabackend.vo.FilePreviewVO;
 import org.example.aiedabackend.vo.FileVO;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -19,6 +21,13 @@ public interface FileService {
      * 下载文件
      */
     Resource downloadFile(String fid);
+
+    /**
+     * 以流的方式把文件内容转发到响应，不在内存中缓存整个文件
+     * 转发Content-Length、ETag等响应头，支持单个区间的Range请求和条件请求；
+     * 调用前由调用方设置Content-Type和Content-Disposition
+     */
+    void streamFile(String fid, HttpServletRequest request, HttpServletResponse response);
     
     /**
      * 预览文件
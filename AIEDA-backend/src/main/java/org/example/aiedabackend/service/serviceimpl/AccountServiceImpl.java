@@ -104,4 +104,13 @@ public class AccountServiceImpl implements AccountService {
         accountRepository.delete(account);
         return "删除成功";
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isAdmin(Integer uid) {
+        if (uid == null) {
+            return false;
+        }
+        Account account = accountRepository.findByUid(uid);
+        return account != null && account.getRole() != null && account.getRole() == RoleConstant.ADMIN;
+    }
+}
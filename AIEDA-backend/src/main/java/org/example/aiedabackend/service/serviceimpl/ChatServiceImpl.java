@@ -4,38 +4,72 @@ import org.example.aiedabackend.constant.MessageTypeConstant;
 import org.example.aiedabackend.dao.RecordRepository;
 import org.example.aiedabackend.dao.SessionRepository;
 import org.example.aiedabackend.dao.FileRepository;
+import org.example.aiedabackend.jfr.GenerationEvents;
+import org.example.aiedabackend.jfr.InputSubmitEvent;
+import org.example.aiedabackend.jfr.UpstreamConnectEvent;
 import org.example.aiedabackend.po.Record;
 import org.example.aiedabackend.po.Session;
-import org.example.aiedabackend.po.File;
+import org.example.aiedabackend.relay.FinishTagFilter;
+import org.example.aiedabackend.relay.RelayMetrics;
+import org.example.aiedabackend.relay.RelayTracer;
+import org.example.aiedabackend.relay.SseConnectionRegistry;
+import org.example.aiedabackend.relay.SseFrameParser;
+import org.example.aiedabackend.relay.SseFrameWriter;
+import org.example.aiedabackend.relay.UpstreamEvent;
+import org.example.aiedabackend.relay.UpstreamFrameDecoder;
 import org.example.aiedabackend.service.ChatService;
+import org.example.aiedabackend.util.ContentCodec;
 import org.example.aiedabackend.vo.RecordVO;
 import org.example.aiedabackend.vo.SessionVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -48,9 +82,30 @@ public class ChatServiceImpl implements ChatService {
     @Autowired
     private RecordRepository recordRepository;
 
+    @Autowired
+    private RecordSequenceAllocator recordSequenceAllocator;
+
+    @Autowired
+    private SessionActivityTracker sessionActivityTracker;
+
+    @Autowired
+    private RecordPersistencePipeline recordPersistencePipeline;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OwnershipCache ownershipCache;
+
+    @Autowired
+    private RecordTailCache recordTailCache;
+
     @Autowired
     private FileRepository fileRepository;
 
+    @Autowired
+    private RelayMetrics relayMetrics;
+
     // LLM配置参数
     @Value("${llm.openai.api-key}")
     private String openaiApiKey;
@@ -70,213 +125,120 @@ public class ChatServiceImpl implements ChatService {
     @Value("${llm.max-tokens}")
     private String maxTokens;
 
-    private RestTemplate restTemplate = new RestTemplate();
+    // 大模型服务地址
+    @Value("${llm.service.base-url:http://localhost:8000}")
+    private String llmServiceBaseUrl;
 
-    // 时间格式化器，用于显示毫秒级时间
-    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    // 共享的连接池RestTemplate
+    @Autowired
+    @Qualifier("llmRestTemplate")
+    private RestTemplate restTemplate;
 
-    // SSE连接超时管理
-    private final ConcurrentHashMap<SseEmitter, AtomicLong> sseLastActivityMap = new ConcurrentHashMap<>();
-    // 会话级别的SSE连接管理：每个会话ID对应一个SSE连接
-    private final ConcurrentHashMap<Integer, SseEmitter> sessionSseMap = new ConcurrentHashMap<>();
-    // 会话ID到超时检查任务的映射，用于停止和重启超时计时
-    private final ConcurrentHashMap<Integer, java.util.concurrent.ScheduledFuture<?>> sessionTimeoutTasks = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService timeoutScheduler = Executors.newScheduledThreadPool(2);
-    private static final long INACTIVITY_TIMEOUT = 120000L; // 120秒无活动则超时
+    // AI生成任务专用的有界执行器（平台线程池或虚拟线程）
+    @Autowired
+    @Qualifier("generationExecutor")
+    private Executor generationExecutor;
 
-    /**
-     * 获取当前时间戳字符串
-     */
-    private String getCurrentTimestamp() {
-        return LocalDateTime.now().format(TIME_FORMATTER);
-    }
+    // 共享HTTP客户端，用于阻塞读取或响应式转发大模型事件流
+    @Autowired
+    private HttpClient llmStreamHttpClient;
 
-    /**
-     * 获取当前HTTP响应对象，用于设置SSE相关头信息
-     */
-    private HttpServletResponse getCurrentHttpResponse() {
-        try {
-            ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
-            return attributes.getResponse();
-        } catch (Exception e) {
-            return null;
-        }
-    }
+    // 响应式转发中处理事件流和写前端SSE的线程池，不占用HttpClient的IO线程
+    @Autowired
+    @Qualifier("llmRelayWriteExecutor")
+    private Executor relayWriteExecutor;
 
-    /**
-     * 注册SSE连接并开始超时监控
-     */
-    private void registerSseConnection(SseEmitter emitter, Integer sid) {
-        long currentTime = System.currentTimeMillis();
-        sseLastActivityMap.put(emitter, new AtomicLong(currentTime));
-
-        // 检查是否已有该会话的SSE连接，如果有则关闭旧连接
-        SseEmitter oldEmitter = sessionSseMap.get(sid);
-        if (oldEmitter != null) {
-            log.warn("[{}] 🔄 会话{}已存在SSE连接，关闭旧连接", getCurrentTimestamp(), sid);
-            closeSseConnection(oldEmitter, "新连接替换");
-        }
+    // 流式转发模式：blocking（阻塞读取，每个会话占用一个线程）或 reactive（非阻塞订阅）
+    @Value("${llm.relay.mode:blocking}")
+    private String relayMode;
 
-        // 注册新连接
-        sessionSseMap.put(sid, emitter);
-        log.info("[{}] 🔗 注册SSE连接超时监控 - 会话ID: {}", getCurrentTimestamp(), sid);
+    // 大模型事件流的读取超时时间（毫秒）
+    @Value("${llm.relay.read-timeout-ms:60000}")
+    private long relayReadTimeoutMs;
 
-        // 停止旧的超时检查任务（如果存在）
-        stopSessionTimeoutMonitoring(sid);
+    // 增量内容合并：单帧累计的字节上限
+    @Value("${llm.relay.coalesce.max-bytes:1024}")
+    private int coalesceMaxBytes;
 
-        // 启动新的超时检查任务
-        java.util.concurrent.ScheduledFuture<?> timeoutTask = timeoutScheduler.scheduleAtFixedRate(() -> {
-            checkSseTimeout(emitter);
-        }, INACTIVITY_TIMEOUT, 5000L, TimeUnit.MILLISECONDS); // 每5秒检查一次
+    // 增量内容合并：时间窗口（毫秒），0表示不合并
+    @Value("${llm.relay.coalesce.window-ms:20}")
+    private long coalesceWindowMs;
 
-        // 保存任务引用，用于后续的停止和重启操作
-        sessionTimeoutTasks.put(sid, timeoutTask);
-    }
+    // 前端SSE连接注册表：会话与连接的双向索引及无活动超时检测
+    @Autowired
+    private SseConnectionRegistry sseConnectionRegistry;
 
-    /**
-     * 取消注册SSE连接
-     */
-    private void unregisterSseConnection(SseEmitter emitter) {
-        sseLastActivityMap.remove(emitter);
-        log.info("[{}] 🚫 取消注册SSE连接", getCurrentTimestamp());
-    }
+    // 转发热路径的追踪，替代逐帧的日志
+    @Autowired
+    private RelayTracer relayTracer;
 
-    /**
-     * 更新SSE连接的最后活跃时间
-     */
-    private void updateSseActivity(SseEmitter emitter) {
-        AtomicLong lastActivity = sseLastActivityMap.get(emitter);
-        if (lastActivity != null) {
-            lastActivity.set(System.currentTimeMillis());
-        }
-    }
+    // 时间格式化器，用于显示毫秒级时间
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
-    /**
-     * 停止指定会话的超时监控
-     * 用于硬干预时暂停超时计时
-     */
-    private void stopSessionTimeoutMonitoring(Integer sid) {
-        java.util.concurrent.ScheduledFuture<?> timeoutTask = sessionTimeoutTasks.get(sid);
-        if (timeoutTask != null) {
-            timeoutTask.cancel(false); // false表示不中断正在执行的任务
-            sessionTimeoutTasks.remove(sid);
-            log.info("[{}] ⏸️  停止会话{}的超时监控", getCurrentTimestamp(), sid);
-        } else {
-            log.debug("[{}] 会话{}无超时监控任务需要停止", getCurrentTimestamp(), sid);
-        }
-    }
+    // 上游事件流的读取空闲检查
+    private final ScheduledExecutorService timeoutScheduler = newScheduler("relay-idle-check");
+    // 合并窗口到期时写出暂存的增量内容
+    private final ScheduledExecutorService deltaFlushScheduler = newScheduler("delta-flush");
+    // 阻塞转发时读取上游事件流的缓冲区大小
+    private static final int RELAY_READ_BUFFER_SIZE = 8192;
 
     /**
-     * 重启指定会话的超时监控
-     * 用于软干预后恢复超时计时
+     * 创建守护线程的调度器，线程按名称前缀编号
      */
-    private void restartSessionTimeoutMonitoring(Integer sid) {
-        // 首先停止现有的监控任务（如果存在）
-        stopSessionTimeoutMonitoring(sid);
-
-        // 获取该会话对应的SSE连接
-        SseEmitter emitter = sessionSseMap.get(sid);
-        if (emitter != null) {
-            // 重置活跃时间
-            AtomicLong lastActivity = sseLastActivityMap.get(emitter);
-            if (lastActivity != null) {
-                lastActivity.set(System.currentTimeMillis());
-            }
-
-            // 启动新的超时检查任务
-            java.util.concurrent.ScheduledFuture<?> timeoutTask = timeoutScheduler.scheduleAtFixedRate(() -> {
-                checkSseTimeout(emitter);
-            }, INACTIVITY_TIMEOUT, 5000L, TimeUnit.MILLISECONDS);
+    private static ScheduledExecutorService newScheduler(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
-            sessionTimeoutTasks.put(sid, timeoutTask);
-            log.info("[{}] 🔄 重启会话{}的超时监控", getCurrentTimestamp(), sid);
-        } else {
-            log.warn("[{}] 无法重启会话{}的超时监控，SSE连接不存在", getCurrentTimestamp(), sid);
-        }
+    @PreDestroy
+    public void shutdownSchedulers() {
+        timeoutScheduler.shutdownNow();
+        deltaFlushScheduler.shutdownNow();
     }
 
     /**
-     * 检查SSE连接是否超时
+     * 获取当前时间戳字符串
      */
-    private void checkSseTimeout(SseEmitter emitter) {
-        AtomicLong lastActivity = sseLastActivityMap.get(emitter);
-        if (lastActivity == null) {
-            return; // 连接已被移除
-        }
-
-        long currentTime = System.currentTimeMillis();
-        long lastActivityTime = lastActivity.get();
-
-        if (currentTime - lastActivityTime > INACTIVITY_TIMEOUT) {
-            log.warn("[{}] ⏰ SSE连接因120秒无活动而超时，准备关闭", getCurrentTimestamp());
-            closeSseConnection(emitter, "无活动超时");
-        }
+    private String getCurrentTimestamp() {
+        return LocalDateTime.now().format(TIME_FORMATTER);
     }
 
     /**
-     * 关闭SSE连接并清理资源
+     * 获取当前HTTP响应对象，用于设置SSE相关头信息
      */
-    private void closeSseConnection(SseEmitter emitter, String reason) {
+    private HttpServletResponse getCurrentHttpResponse() {
         try {
-            // 找到对应的会话ID并清理超时任务
-            Integer sidToRemove = null;
-            for (java.util.Map.Entry<Integer, SseEmitter> entry : sessionSseMap.entrySet()) {
-                if (entry.getValue().equals(emitter)) {
-                    sidToRemove = entry.getKey();
-                    break;
-                }
-            }
-
-            if (sidToRemove != null) {
-                // 停止超时监控任务
-                stopSessionTimeoutMonitoring(sidToRemove);
-                // 从会话映射中移除
-                sessionSseMap.remove(sidToRemove);
-            }
-
-            // 清理超时监控
-            sseLastActivityMap.remove(emitter);
-
-            emitter.complete();
-            log.info("[{}] � SSE连接已关闭 - 原因: {}", getCurrentTimestamp(), reason);
+            ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+            return attributes.getResponse();
         } catch (Exception e) {
-            log.error("[{}] ❌ 关闭SSE连接失败 - 原因: {}", getCurrentTimestamp(), reason, e);
+            return null;
         }
     }
 
     /**
-     * 检查SSE连接是否仍然有效
-     * 注意：这个方法现在主要用于日志记录，不影响实际的数据发送
-     * @param emitter SSE发射器
-     * @return 连接是否有效（总是返回true，让实际发送时处理异常）
+     * 获取SSE连接的帧写入器
+     * 连接已注销时返回一个临时写入器，不再放回注册表，避免泄漏
      */
-    private boolean isEmitterActive(SseEmitter emitter) {
-        if (emitter == null) {
-            log.warn("[{}] ❌ SSE发射器为null", getCurrentTimestamp());
-            return false;
-        }
+    private SseFrameWriter writerFor(SseEmitter emitter) {
+        SseFrameWriter writer = sseConnectionRegistry.getWriter(emitter);
+        return writer != null ? writer : new SseFrameWriter(emitter);
+    }
 
-        // 简单检查：如果emitter不为null，就认为可能有效
-        // 实际的连接状态将在发送数据时检查
-        log.debug("[{}] ✅ SSE发射器存在，假定连接有效", getCurrentTimestamp());
-        return true;
+    /**
+     * 更新SSE连接的最后活跃时间
+     */
+    private void updateSseActivity(SseEmitter emitter) {
+        sseConnectionRegistry.touch(emitter);
     }
 
     @Override
     public SseEmitter createSessionSSE(Integer uid, Integer sid) {
         log.info("[{}] 🔗 为会话创建独立SSE连接 - uid: {}, sid: {}", getCurrentTimestamp(), uid, sid);
 
-        // 检查是否已有该会话的SSE连接，如果有则关闭旧连接
-        if (sessionSseMap.containsKey(sid)) {
-            log.info("[{}] ⚠️  会话 {} 已存在SSE连接，关闭旧连接", getCurrentTimestamp(), sid);
-            SseEmitter oldEmitter = sessionSseMap.remove(sid);
-            try {
-                oldEmitter.complete();
-            } catch (Exception e) {
-                log.warn("[{}] 关闭旧SSE连接时出现异常: {}", getCurrentTimestamp(), e.getMessage());
-            }
-        }
-
         // 创建新的SSE连接，设置较长但有限的超时时间
         SseEmitter emitter = new SseEmitter(300000L); // 5分钟超时，避免无限连接
 
@@ -298,49 +260,32 @@ public class ChatServiceImpl implements ChatService {
             log.debug("[{}] 📝 无法设置SSE响应头: {}", getCurrentTimestamp(), e.getMessage());
         }
 
-        // 注册SSE连接，实现会话级管理
-        registerSseConnection(emitter, sid);
-        sessionSseMap.put(sid, emitter);
+        // 注册SSE连接并开始超时监控，该会话已有的连接会被关闭
+        SseFrameWriter writer = new SseFrameWriter(emitter, coalesceMaxBytes, coalesceWindowMs, deltaFlushScheduler,
+                relayWriteExecutor, relayMetrics);
+        sseConnectionRegistry.register(sid, emitter, writer);
+        log.info("[{}] 🔗 注册SSE连接超时监控 - 会话ID: {}, 当前连接数: {}", getCurrentTimestamp(), sid, sseConnectionRegistry.size());
 
         // 设置连接完成和异常处理
         emitter.onCompletion(() -> {
             log.info("[{}] 🔚 会话 {} 的SSE连接正常完成", getCurrentTimestamp(), sid);
-            sessionSseMap.remove(sid);
-            unregisterSseConnection(emitter);
+            sseConnectionRegistry.unregister(emitter);
         });
 
         emitter.onTimeout(() -> {
             log.warn("[{}] ⏰ 会话 {} 的SSE连接超时", getCurrentTimestamp(), sid);
-            sessionSseMap.remove(sid);
-            unregisterSseConnection(emitter);
+            sseConnectionRegistry.unregister(emitter);
         });
 
         emitter.onError((ex) -> {
             log.error("[{}] ❌ 会话 {} 的SSE连接出现异常: {}", getCurrentTimestamp(), sid, ex.getMessage());
-            sessionSseMap.remove(sid);
-            unregisterSseConnection(emitter);
+            sseConnectionRegistry.unregister(emitter);
         });
 
         // 发送连接确认消息
         try {
             String confirmMessage = "{\"type\":\"connection\",\"message\":\"会话SSE连接已建立\",\"sessionId\":" + sid + ",\"userId\":" + uid + "}";
-            emitter.send(SseEmitter.event()
-                    .name("connection")
-                    .data(confirmMessage)
-                    .reconnectTime(3000));
-
-            // 强制刷新确认消息
-            try {
-                java.lang.reflect.Field field = emitter.getClass().getDeclaredField("handler");
-                field.setAccessible(true);
-                Object handler = field.get(emitter);
-                if (handler != null) {
-                    java.lang.reflect.Method flushMethod = handler.getClass().getMethod("flush");
-                    flushMethod.invoke(handler);
-                }
-            } catch (Exception flushEx) {
-                log.debug("[{}] 无法强制刷新连接确认消息: {}", getCurrentTimestamp(), flushEx.getMessage());
-            }
+            writer.sendRaw("connection", confirmMessage);
 
             log.info("[{}] 📤 会话 {} SSE连接确认消息已发送", getCurrentTimestamp(), sid);
         } catch (IOException e) {
@@ -352,37 +297,41 @@ public class ChatServiceImpl implements ChatService {
 
     @Override
     public List<SessionVO> getSessions(Integer uid) {
-        List<Session> sessions = sessionRepository.findByUid(uid);
         // 按updateTime倒序排列，确保最新活跃的会话显示在最上面
-        return sessions.stream()
-                .sorted((s1, s2) -> s2.getUpdateTime().compareTo(s1.getUpdateTime()))
-                .map(Session::toVO)
-                .collect(Collectors.toList());
+        sessionActivityTracker.flushUser(uid);
+        return toSessionVOs(sessionRepository.findSummariesByUid(uid, Pageable.unpaged()));
+    }
+
+    @Override
+    public List<SessionVO> getSessions(Integer uid, LocalDateTime beforeUpdateTime, Integer beforeSid, int limit) {
+        sessionActivityTracker.flushUser(uid);
+        Pageable page = PageRequest.of(0, limit);
+        if (beforeUpdateTime == null) {
+            return toSessionVOs(sessionRepository.findSummariesByUid(uid, page));
+        }
+        int sidCursor = beforeSid != null ? beforeSid : Integer.MAX_VALUE;
+        return toSessionVOs(sessionRepository.findSummariesByUidBefore(uid, beforeUpdateTime, sidCursor, page));
+    }
+
+    private List<SessionVO> toSessionVOs(List<SessionRepository.SessionSummary> summaries) {
+        List<SessionVO> result = new ArrayList<>(summaries.size());
+        for (SessionRepository.SessionSummary summary : summaries) {
+            SessionVO sessionVO = new SessionVO();
+            sessionVO.setSid(summary.getSid());
+            sessionVO.setTitle(summary.getTitle());
+            sessionVO.setCreateTime(summary.getCreateTime());
+            sessionVO.setUpdateTime(summary.getUpdateTime());
+            result.add(sessionVO);
+        }
+        return result;
     }
 
     /**
      * 更新会话的最后活跃时间
-     * 在发送消息时调用，确保最新发送消息的会话显示在列表最上面
+     * 在发送消息时调用，确保最新发送消息的会话显示在列表最上面；只记录在内存中，由活跃时间跟踪器批量写回
      */
     private void updateSessionTime(Integer uid, Integer sid) {
-        try {
-            var optional = sessionRepository.findById(sid);
-            if (optional.isPresent()) {
-                Session session = optional.get();
-                // 验证会话属于该用户
-                if (session.getUid().equals(uid)) {
-                    session.setUpdateTime(LocalDateTime.now());
-                    sessionRepository.save(session);
-                    log.info("更新会话{}的活跃时间", sid);
-                } else {
-                    log.warn("用户{}尝试更新不属于自己的会话{}", uid, sid);
-                }
-            } else {
-                log.warn("尝试更新不存在的会话{}", sid);
-            }
-        } catch (Exception e) {
-            log.error("更新会话时间失败，sid: {}, uid: {}", sid, uid, e);
-        }
+        sessionActivityTracker.touch(uid, sid);
     }
 
     @Override
@@ -395,32 +344,207 @@ public class ChatServiceImpl implements ChatService {
 
     @Override
     public List<RecordVO> getRecords(Integer sid) {
+        List<RecordVO> cached = recordTailCache.fullHistory(sid);
+        if (cached != null) {
+            return cached;
+        }
         List<Record> records = recordRepository.findBySidOrderBySequenceAsc(sid);
-        return records.stream().map(Record::toVO).collect(Collectors.toList());
+        List<RecordVO> result = records.stream().map(Record::toVO).collect(Collectors.toList());
+        result = withUnsavedRecords(sid, result, null, null, Integer.MAX_VALUE, null);
+        recordTailCache.loadFromHistory(sid, result);
+        return result;
+    }
+
+    @Override
+    public List<RecordVO> getRecords(Integer sid, Integer beforeSequence, Integer afterSequence, int limit, Integer previewLength) {
+        boolean preview = previewLength != null && previewLength > 0;
+        // 最近的记录从缓存读取
+        if (limit <= recordTailCache.getTailSize()) {
+            recordTailCache.load(sid, () -> loadRecords(sid, null, null, recordTailCache.getTailSize(), null));
+            List<RecordVO> cached = recordTailCache.page(sid, beforeSequence, afterSequence, limit);
+            if (cached != null) {
+                if (!preview) {
+                    return cached;
+                }
+                List<RecordVO> previews = new ArrayList<>(cached.size());
+                for (RecordVO recordVO : cached) {
+                    previews.add(toPreviewVO(recordVO, previewLength));
+                }
+                return previews;
+            }
+        }
+        return loadRecords(sid, beforeSequence, afterSequence, limit, previewLength);
+    }
+
+    /**
+     * 从数据库分页读取记录，并合并尚未落库的记录
+     */
+    private List<RecordVO> loadRecords(Integer sid, Integer beforeSequence, Integer afterSequence, int limit, Integer previewLength) {
+        Pageable page = PageRequest.of(0, limit);
+        boolean preview = previewLength != null && previewLength > 0;
+        List<RecordVO> result;
+        if (afterSequence != null) {
+            result = preview
+                    ? toPreviewVOs(recordRepository.findPreviewsAfter(sid, afterSequence, previewLength, page), previewLength)
+                    : toVOs(recordRepository.findBySidAndSequenceGreaterThanOrderBySequenceAsc(sid, afterSequence, page));
+        } else {
+            int before = beforeSequence != null ? beforeSequence : Integer.MAX_VALUE;
+            result = preview
+                    ? toPreviewVOs(recordRepository.findPreviewsBefore(sid, before, previewLength, page), previewLength)
+                    : toVOs(recordRepository.findBySidAndSequenceLessThanOrderBySequenceDesc(sid, before, page));
+            // 倒序取出的一页翻转为正序
+            Collections.reverse(result);
+        }
+        return withUnsavedRecords(sid, result, beforeSequence, afterSequence, limit, preview ? previewLength : null);
+    }
+
+    /**
+     * 合并已提交但尚未落库的记录，保证刚发送的消息和刚完成的回复立即可见
+     * 结果按顺序号正序；超过limit时，向后翻页保留最早的limit条，其余情况保留最新的limit条
+     */
+    private List<RecordVO> withUnsavedRecords(Integer sid, List<RecordVO> saved, Integer beforeSequence,
+                                              Integer afterSequence, int limit, Integer previewLength) {
+        List<Record> unsaved = recordPersistencePipeline.unsaved(sid);
+        if (unsaved.isEmpty()) {
+            return saved;
+        }
+        Set<Integer> savedRids = new HashSet<>();
+        for (RecordVO recordVO : saved) {
+            savedRids.add(recordVO.getRid());
+        }
+        List<RecordVO> merged = new ArrayList<>(saved);
+        for (Record record : unsaved) {
+            int sequence = record.getSequence();
+            if (savedRids.contains(record.getRid())
+                    || (beforeSequence != null && sequence >= beforeSequence)
+                    || (afterSequence != null && sequence <= afterSequence)) {
+                continue;
+            }
+            merged.add(previewLength != null ? toPreviewVO(record.toVO(), previewLength) : record.toVO());
+        }
+        merged.sort(Comparator.comparing(RecordVO::getSequence));
+        if (merged.size() <= limit) {
+            return merged;
+        }
+        return afterSequence != null
+                ? new ArrayList<>(merged.subList(0, limit))
+                : new ArrayList<>(merged.subList(merged.size() - limit, merged.size()));
+    }
+
+    /**
+     * 生成记录的预览副本，不修改传入的对象
+     */
+    private RecordVO toPreviewVO(RecordVO source, int previewLength) {
+        RecordVO recordVO = new RecordVO();
+        recordVO.setRid(source.getRid());
+        recordVO.setSid(source.getSid());
+        recordVO.setDirection(source.getDirection());
+        recordVO.setSequence(source.getSequence());
+        recordVO.setType(source.getType());
+        recordVO.setCreateTime(source.getCreateTime());
+        String content = source.getContent();
+        recordVO.setContentLength(content.length());
+        recordVO.setTruncated(content.length() > previewLength);
+        recordVO.setContent(ContentCodec.prefix(content, previewLength));
+        return recordVO;
+    }
+
+    /**
+     * 提交记录写入，同时追加到最近记录缓存；写入失败时使缓存失效，避免缓存中残留未落库的记录
+     */
+    private CompletableFuture<Record> saveRecord(Record record) {
+        CompletableFuture<Record> saved = recordPersistencePipeline.submit(record);
+        recordTailCache.append(record.getSid(), record.toVO());
+        saved.whenComplete((result, error) -> {
+            if (error != null) {
+                recordTailCache.invalidate(record.getSid());
+            }
+        });
+        return saved;
+    }
+
+    @Override
+    public RecordVO getRecord(Integer sid, Integer rid) {
+        Record unsaved = recordPersistencePipeline.unsavedRecord(rid);
+        if (unsaved != null) {
+            return unsaved.getSid().equals(sid) ? unsaved.toVO() : null;
+        }
+        return recordRepository.findById(rid)
+                .filter(record -> record.getSid().equals(sid))
+                .map(Record::toVO)
+                .orElse(null);
+    }
+
+    private List<RecordVO> toVOs(List<Record> records) {
+        List<RecordVO> result = new ArrayList<>(records.size());
+        for (Record record : records) {
+            result.add(record.toVO());
+        }
+        return result;
+    }
+
+    private List<RecordVO> toPreviewVOs(List<RecordRepository.RecordPreview> previews, int previewLength) {
+        List<RecordVO> result = new ArrayList<>(previews.size());
+        // 压缩存储的记录content列只保留了前缀，前缀短于预览长度时读取完整内容
+        List<Integer> shortPrefixRids = new ArrayList<>();
+        for (RecordRepository.RecordPreview preview : previews) {
+            RecordVO recordVO = new RecordVO();
+            recordVO.setRid(preview.getRid());
+            recordVO.setSid(preview.getSid());
+            recordVO.setDirection(preview.getDirection());
+            recordVO.setContent(preview.getContent());
+            recordVO.setSequence(preview.getSequence());
+            recordVO.setType(preview.getType());
+            recordVO.setCreateTime(preview.getCreateTime());
+            recordVO.setContentLength(preview.getContentLength());
+            recordVO.setTruncated(preview.getContentLength() != null
+                    && preview.getContent() != null
+                    && preview.getContentLength() > preview.getContent().length());
+            if (recordVO.getTruncated() && preview.getContent().length() < previewLength) {
+                shortPrefixRids.add(preview.getRid());
+            }
+            result.add(recordVO);
+        }
+        if (!shortPrefixRids.isEmpty()) {
+            Map<Integer, String> contents = new HashMap<>();
+            for (Record record : recordRepository.findAllById(shortPrefixRids)) {
+                contents.put(record.getRid(), record.getFullContent());
+            }
+            for (RecordVO recordVO : result) {
+                String content = contents.get(recordVO.getRid());
+                if (content != null) {
+                    recordVO.setContent(ContentCodec.prefix(content, previewLength));
+                }
+            }
+        }
+        return result;
     }
 
     @Override
     public boolean updateSessionTitle(Integer uid, Integer sid, String title) {
-        var optional = sessionRepository.findById(sid);
-        if (optional.isPresent() && optional.get().getUid().equals(uid)) {
-            Session session = optional.get();
-            session.setTitle(title);
-            session.setUpdateTime(LocalDateTime.now());
-            sessionRepository.save(session);
-            return true;
+        if (!ownershipCache.ownsSession(uid, sid)) {
+            return false;
         }
-        return false;
+        int updated = sessionRepository.updateTitle(sid, uid, title, LocalDateTime.now());
+        ownershipCache.invalidateSession(sid, false);
+        return updated > 0;
     }
 
-    @Transactional
     @Override
     public boolean deleteSession(Integer uid, Integer sid) {
-        var optional = sessionRepository.findById(sid);
-        if (optional.isPresent() && optional.get().getUid().equals(uid)) {
-            // 删除所有关联的记录
-            recordRepository.deleteBySid(sid);
-            // 删除会话
-            sessionRepository.deleteById(sid);
+        if (ownershipCache.ownsSession(uid, sid)) {
+            // 先丢弃写入队列中该会话的记录并等待正在写入的一批完成，不在事务中等待、不占用数据库连接
+            recordPersistencePipeline.cancelSession(sid, 10000L);
+            transactionTemplate.executeWithoutResult(status -> {
+                // 删除所有关联的记录
+                recordRepository.deleteBySid(sid);
+                // 删除会话
+                sessionRepository.deleteById(sid);
+            });
+            recordSequenceAllocator.evict(sid);
+            sessionActivityTracker.forget(sid);
+            ownershipCache.invalidateSession(sid, true);
+            recordTailCache.invalidate(sid);
             return true;
         }
         return false;
@@ -482,6 +606,8 @@ public class ChatServiceImpl implements ChatService {
         // 从metadata中提取agent_type和input_type，如果没有则使用默认值
         String agentType = getStringFromMetadata(metadata, "agent_type", "orchestrator");
         String inputType = getStringFromMetadata(metadata, "input_type", "question");
+        // 本次生成的JFR事件，首字和生成结束事件从这里开始计时
+        GenerationEvents generationEvents = new GenerationEvents(sid, uid, agentType);
 
         // 🔗 获取或创建会话级SSE连接
         SseEmitter emitter = getOrCreateSessionSSE(uid, sid);
@@ -489,35 +615,52 @@ public class ChatServiceImpl implements ChatService {
         // 更新会话时间，确保最新发送消息的会话显示在最上面
         updateSessionTime(uid, sid);
 
-        // 保存用户消息
-        List<Record> existing = recordRepository.findBySidOrderBySequenceAsc(sid);
-        int nextSeq = existing.isEmpty() ? 1 : existing.size() + 1;
+        // 保存用户消息，同时为AI回复预留紧随其后的顺序号（nextSeq + 1）
+        int nextSeq = recordSequenceAllocator.allocate(sid, 2);
         LocalDateTime now = LocalDateTime.now();
         Record userRecord = new Record(sid, uid, true, content, nextSeq, MessageTypeConstant.USER, now);
-        Record savedRecord = recordRepository.save(userRecord);
+        CompletableFuture<Record> userRecordSaved = saveRecord(userRecord);
+        generationEvents.persisting(userRecord, userRecordSaved);
+        if (rejectIfNotQueued(emitter, userRecordSaved, generationEvents)) {
+            return emitter;
+        }
 
-        // 🔗 如果有文件引用，则关联文件与当前记录
+        // 🔗 如果有文件引用，则在用户消息落库后关联文件与当前记录（files.rid 外键引用 records）
         if (fileReferences != null && !fileReferences.isEmpty()) {
-            try {
-                fileRepository.updateRidByFileIds(fileReferences, savedRecord.getRid());
-                log.info("[{}] ✅ 成功关联 {} 个文件到记录 {} - fileIds: {}",
-                        getCurrentTimestamp(), fileReferences.size(), savedRecord.getRid(), fileReferences);
-            } catch (Exception e) {
-                log.error("[{}] ❌ 关联文件到记录失败 - recordId: {}, fileIds: {}, error: {}",
-                        getCurrentTimestamp(), savedRecord.getRid(), fileReferences, e.getMessage());
-            }
+            userRecordSaved.whenComplete((savedRecord, saveError) -> {
+                if (saveError != null) {
+                    log.error("[{}] ❌ 用户消息写入失败，无法关联文件 - recordId: {}, fileIds: {}",
+                            getCurrentTimestamp(), userRecord.getRid(), fileReferences);
+                    return;
+                }
+                try {
+                    fileRepository.updateRidByFileIds(fileReferences, savedRecord.getRid());
+                    log.info("[{}] ✅ 成功关联 {} 个文件到记录 {} - fileIds: {}",
+                            getCurrentTimestamp(), fileReferences.size(), userRecord.getRid(), fileReferences);
+                } catch (Exception e) {
+                    log.error("[{}] ❌ 关联文件到记录失败 - recordId: {}, fileIds: {}, error: {}",
+                            getCurrentTimestamp(), userRecord.getRid(), fileReferences, e.getMessage());
+                }
+            });
         }
 
         // 异步处理AI流式响应，使用会话级SSE连接，传递文件引用和metadata
         final SseEmitter finalEmitter = emitter;
-        CompletableFuture.runAsync(() -> {
-            // 根据是否有文件引用来选择不同的处理方法
-            if (fileReferences != null && !fileReferences.isEmpty()) {
-                processAIStreamResponseWithFiles(finalEmitter, uid, sid, content, fileReferences, nextSeq, agentType, inputType, metadata);
-            } else {
-                processAIStreamResponse(finalEmitter, uid, sid, content, nextSeq, agentType, inputType, metadata);
-            }
-        });
+        try {
+            generationExecutor.execute(() -> {
+                // 根据是否有文件引用来选择不同的处理方法
+                if (fileReferences != null && !fileReferences.isEmpty()) {
+                    processAIStreamResponseWithFiles(finalEmitter, uid, sid, content, fileReferences, nextSeq, agentType, inputType, metadata, generationEvents);
+                } else {
+                    processAIStreamResponse(finalEmitter, uid, sid, content, nextSeq, agentType, inputType, metadata, generationEvents);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池和队列已满，直接向前端返回错误事件
+            log.warn("[{}] 🚦 AI生成任务被拒绝 - sid: {}, 原因: {}", getCurrentTimestamp(), sid, e.getMessage());
+            handleProcessError(finalEmitter, e, uid, sid, nextSeq, generationEvents);
+            completeGeneration(generationEvents, "executor_rejected", 0);
+        }
 
         return emitter;
     }
@@ -528,7 +671,7 @@ public class ChatServiceImpl implements ChatService {
      */
     private SseEmitter getOrCreateSessionSSE(Integer uid, Integer sid) {
         // 检查是否已有该会话的SSE连接
-        SseEmitter existingEmitter = sessionSseMap.get(sid);
+        SseEmitter existingEmitter = sseConnectionRegistry.getEmitter(sid);
         if (existingEmitter != null) {
             log.info("[{}] ♻️  复用会话 {} 的现有SSE连接", getCurrentTimestamp(), sid);
             return existingEmitter;
@@ -542,9 +685,10 @@ public class ChatServiceImpl implements ChatService {
     /**
      * 处理AI流式回复的完整流程（支持Agent类型、输入类型和metadata）
      */
-    private void processAIStreamResponse(SseEmitter emitter, Integer uid, Integer sid, String content, int nextSeq, String agentType, String inputType, java.util.Map<String, Object> requestMetadata) {
+    private void processAIStreamResponse(SseEmitter emitter, Integer uid, Integer sid, String content, int nextSeq, String agentType, String inputType, java.util.Map<String, Object> requestMetadata, GenerationEvents generationEvents) {
         StringBuilder aiReply = new StringBuilder();
-        String userInputUrl = "http://localhost:8000/api/v1/user/input";
+        String userInputUrl = llmServiceBaseUrl + "/api/v1/user/input";
+        boolean relayHandedOff = false;
 
         try {
             // 1. 提交用户输入
@@ -566,9 +710,10 @@ public class ChatServiceImpl implements ChatService {
 
             inputRequest.put("metadata", metadata);
 
-            var inputResponse = restTemplate.postForObject(userInputUrl, inputRequest, java.util.Map.class);
+            var inputResponse = submitUserInput(userInputUrl, inputRequest, generationEvents.beginInputSubmit(inputType));
             if (inputResponse == null || !"success".equals(inputResponse.get("status"))) {
                 sendErrorToFrontend(emitter, "提交用户输入失败");
+                completeGeneration(generationEvents, "input_rejected", 0);
                 return;
             }
 
@@ -577,442 +722,537 @@ public class ChatServiceImpl implements ChatService {
 
             // 2. 立即开始获取AI流式回复，实时转发
             String sessionId = sid.toString();
-            String finalReply = getAIStreamResponse(emitter, sessionId, aiReply);
-
-            // 保存完整的AI回复
-            Record aiRecord = null;
-            if (finalReply != null && !finalReply.trim().isEmpty()) {
-                LocalDateTime now = LocalDateTime.now();
-                aiRecord = new Record(sid, uid, false, finalReply, nextSeq + 1, MessageTypeConstant.LLM_GENERATION, now);
-                recordRepository.save(aiRecord);
+            if (isReactiveRelay()) {
+                // 响应式模式：订阅事件流后立即释放当前线程，由回调完成保存和收尾
+                CompletableFuture<String> relay = getAIStreamResponseAsync(emitter, sessionId, aiReply, generationEvents);
+                relayHandedOff = true;
+                relay.whenComplete((finalReply, error) -> {
+                    try {
+                        if (error != null) {
+                            log.error("SSE流式处理失败", error);
+                            handleProcessError(emitter, unwrapRelayError(error), uid, sid, nextSeq, generationEvents);
+                        } else {
+                            finishAIStreamResponse(emitter, uid, sid, nextSeq, finalReply, generationEvents);
+                        }
+                    } finally {
+                        completeEmitterQuietly(emitter);
+                    }
+                });
+                return;
             }
 
-            // 发送完成信号
-            sendCompleteToFrontend(emitter, "回复完成", aiRecord != null ? aiRecord.getRid() : -1);
-
-            System.out.println("流式处理完成，已发送complete事件");
+            String finalReply = getAIStreamResponse(emitter, sessionId, aiReply, generationEvents);
+            finishAIStreamResponse(emitter, uid, sid, nextSeq, finalReply, generationEvents);
 
         } catch (Exception e) {
             log.error("SSE流式处理失败", e);
-            handleProcessError(emitter, e, uid, sid, nextSeq);
+            handleProcessError(emitter, e, uid, sid, nextSeq, generationEvents);
         } finally {
-            // 确保连接被正确关闭
-            try {
-                emitter.complete();
-            } catch (Exception e) {
-                log.error("关闭SSE连接失败", e);
+            // 确保连接被正确关闭（响应式模式由回调负责关闭）
+            if (!relayHandedOff) {
+                completeEmitterQuietly(emitter);
             }
         }
     }
 
     /**
-     * 获取AI流式回复
+     * 记录一次生成结束：提交JFR事件并按结果记录生成耗时，重复调用时只有第一次生效
      */
-    private String getAIStreamResponse(SseEmitter emitter, String sessionId, StringBuilder aiReply) throws Exception {
-        // 使用会话ID参数化的流式端点
-        String sseStreamUrl = "http://localhost:8000/api/v1/stream?session_id=" + sessionId;
-        boolean generationFinished = false;
-        boolean[] foundFinishStart = {false}; // 使用数组来保持状态
-        StringBuilder fullDelta = new StringBuilder(); // 用于累积不完整的标签
-
-        // 建立SSE连接
-        URI uri = URI.create(sseStreamUrl);
-        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
-        connection.setRequestMethod("GET");
-        connection.setRequestProperty("Accept", "text/event-stream");
-        connection.setRequestProperty("Cache-Control", "no-cache");
-        connection.setConnectTimeout(10000); // 10秒连接超时
-        connection.setReadTimeout(60000); // 60秒读取超时
-
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(connection.getInputStream(), "UTF-8"))) {
+    private void completeGeneration(GenerationEvents generationEvents, String outcome, int replyChars) {
+        if (generationEvents.complete(outcome, replyChars)) {
+            relayMetrics.generationCompleted(outcome, generationEvents.elapsedNanos());
+        }
+    }
 
-            log.info("[{}] 🔗 SSE连接已建立，开始读取大模型流式数据 - sessionId: {}, URL: {}",
-                    getCurrentTimestamp(), sessionId, sseStreamUrl);
+    /**
+     * 提交用户输入到大模型服务，无论成功与否都结束输入提交事件的计时
+     */
+    private java.util.Map<?, ?> submitUserInput(String userInputUrl, java.util.Map<String, Object> inputRequest,
+                                                 InputSubmitEvent submitEvent) {
+        java.util.Map<?, ?> inputResponse = null;
+        try {
+            inputResponse = restTemplate.postForObject(userInputUrl, inputRequest, java.util.Map.class);
+            return inputResponse;
+        } finally {
+            submitEvent.finish(inputResponse != null && "success".equals(inputResponse.get("status")));
+        }
+    }
 
-            String line;
-            // StringBuilder currentEvent = new StringBuilder(); // 不再需要该变量
-            int lineCount = 0;
+    /**
+     * 保存完整的AI回复并发送完成信号
+     */
+    private void finishAIStreamResponse(SseEmitter emitter, Integer uid, Integer sid, int nextSeq, String finalReply,
+                                        GenerationEvents generationEvents) {
+        Record aiRecord = null;
+        if (finalReply != null && !finalReply.trim().isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            aiRecord = new Record(sid, uid, false, finalReply, nextSeq + 1, MessageTypeConstant.LLM_GENERATION, now);
+            CompletableFuture<Record> saved = saveRecord(aiRecord);
+            generationEvents.persisting(aiRecord, saved);
+            if (rejectIfNotQueued(emitter, saved, generationEvents)) {
+                return;
+            }
+        }
 
-            while ((line = reader.readLine()) != null && !generationFinished) {
-                lineCount++;
+        // 发送完成信号
+        sendCompleteToFrontend(emitter, "回复完成", aiRecord != null ? aiRecord.getRid() : -1);
+        completeGeneration(generationEvents, "complete", finalReply != null ? finalReply.length() : 0);
 
-                // 每100行检查一次连接状态
-                if (lineCount % 100 == 0) {
-                    if (!isEmitterActive(emitter)) {
-                        log.warn("[{}] ⚠️  SSE连接已关闭，停止处理流式数据 - sessionId: {}, 行号: {}",
-                                getCurrentTimestamp(), sessionId, lineCount);
-                        break;
-                    }
-                }
+        log.info("[{}] 流式处理完成，已发送complete事件 - sid: {}", getCurrentTimestamp(), sid);
+    }
 
-                // 处理SSE数据行
-                if (line.startsWith("data: ")) {
-                    String jsonData = line.substring(6); // 移除"data: "前缀
+    /**
+     * 记录未能进入写入队列（队列已满）时向前端发送错误并结束本次生成；会话已删除而被取消的记录不算失败
+     * @return 是否已按失败处理
+     */
+    private boolean rejectIfNotQueued(SseEmitter emitter, CompletableFuture<Record> saved,
+                                      GenerationEvents generationEvents) {
+        if (!saved.isCompletedExceptionally() || saved.isCancelled()) {
+            return false;
+        }
+        sendErrorToFrontend(emitter, "回复保存失败，请稍后重试");
+        completeGeneration(generationEvents, "persist_rejected", 0);
+        return true;
+    }
 
-                    if (jsonData.trim().isEmpty()) {
-                        log.debug("[{}] 📄 收到空数据行 - sessionId: {}, 行号: {}", getCurrentTimestamp(), sessionId, lineCount);
-                        continue;
-                    }
+    /**
+     * 关闭SSE连接，忽略已关闭等异常
+     */
+    private void completeEmitterQuietly(SseEmitter emitter) {
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            log.error("关闭SSE连接失败", e);
+        }
+    }
+
+    /**
+     * 是否启用响应式转发模式
+     */
+    private boolean isReactiveRelay() {
+        return "reactive".equalsIgnoreCase(relayMode);
+    }
 
-                    log.info("[{}] 📨 从大模型收到SSE数据 - sessionId: {}, 行号: {}, 数据长度: {}",
-                            getCurrentTimestamp(), sessionId, lineCount, jsonData.length());
+    /**
+     * 展开异步回调中包装的异常
+     */
+    private Exception unwrapRelayError(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+    }
 
-                    try {
-                        // 解析并处理事件数据，立即转发到前端
-                        log.info("[{}] 🔄 开始处理SSE事件数据... - sessionId: {}", getCurrentTimestamp(), sessionId);
-                        generationFinished = processSSEEventData(emitter, jsonData, sessionId,
-                                aiReply, fullDelta, foundFinishStart);
-
-                        if (generationFinished) {
-                            log.info("[{}] 🏁 检测到生成结束信号 - sessionId: {}, 总处理行数: {}",
-                                    getCurrentTimestamp(), sessionId, lineCount);
-                            break;
-                        }
+    /**
+     * 获取AI流式回复
+     */
+    private String getAIStreamResponse(SseEmitter emitter, String sessionId, StringBuilder aiReply,
+                                       GenerationEvents generationEvents) throws Exception {
+        // 使用会话ID参数化的流式端点
+        String sseStreamUrl = llmServiceBaseUrl + "/api/v1/stream?session_id=" + sessionId;
+
+        // 建立SSE连接（使用共享HttpClient，不依赖synchronized实现，在虚拟线程上阻塞时不会固定载体线程）
+        HttpRequest request = HttpRequest.newBuilder(URI.create(sseStreamUrl))
+                .header("Accept", "text/event-stream")
+                .header("Cache-Control", "no-cache")
+                .timeout(Duration.ofMillis(relayReadTimeoutMs))
+                .GET()
+                .build();
+        UpstreamConnectEvent connectEvent = generationEvents.beginUpstreamConnect(false);
+        HttpResponse<InputStream> response = null;
+        try {
+            response = llmStreamHttpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } finally {
+            connectEvent.finish(response != null ? response.statusCode() : -1);
+        }
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("大模型事件流响应异常，状态码: " + response.statusCode());
+        }
 
-                    } catch (Exception parseError) {
-                        log.error("[{}] ❌ 解析SSE事件数据失败 - sessionId: {}, 行号: {}, 数据: {}",
-                                getCurrentTimestamp(), sessionId, lineCount,
-                                jsonData.length() > 200 ? jsonData.substring(0, 200) + "..." : jsonData,
-                                parseError);
-                        // 即使解析失败，也尝试继续处理其他事件
-                    }
-                } else if (line.trim().isEmpty()) {
-                    // 空行表示事件结束，可以在这里做一些清理工作
-                    log.debug("[{}] 📄 收到空行 - 事件分隔符 - sessionId: {}", getCurrentTimestamp(), sessionId);
-                    continue;
-                } else {
-                    // 处理其他SSE头部信息（如event:, id:等）
-                    log.info("[{}] 📋 SSE头部信息 - sessionId: {}: {}", getCurrentTimestamp(), sessionId, line);
+        // 读取超时检查：超过读取超时时间未收到数据则中断读取线程
+        // 判断是否读完和发出中断在同一把锁内完成，读取结束后不会再有中断落到线程池的后续任务上
+        Thread readerThread = Thread.currentThread();
+        AtomicLong lastReceived = new AtomicLong(System.currentTimeMillis());
+        AtomicBoolean readFinished = new AtomicBoolean(false);
+        ReentrantLock interruptLock = new ReentrantLock();
+        scheduleIdleCheck(lastReceived, readFinished::get, () -> {
+            interruptLock.lock();
+            try {
+                if (!readFinished.get()) {
+                    log.warn("[{}] ⏰ 大模型事件流读取超时 - sessionId: {}", getCurrentTimestamp(), sessionId);
+                    readerThread.interrupt();
                 }
+            } finally {
+                interruptLock.unlock();
+            }
+        }, relayReadTimeoutMs);
 
-                // 确保及时响应前端，避免缓冲延迟
-                if (aiReply.length() > 0) {
-                    // 每隔一定数量的字符就主动flush一次
-                    if (aiReply.length() % 50 == 0) {
-                        try {
-                            // 发送心跳或者刷新连接
-                            Thread.sleep(10); // 短暂延迟确保数据传输
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            break;
-                        }
-                    }
+        RelayFrameHandler frameHandler = new RelayFrameHandler(emitter, sessionId, aiReply, generationEvents);
+        SseFrameParser parser = new SseFrameParser(frameHandler);
+        byte[] buffer = new byte[RELAY_READ_BUFFER_SIZE];
+
+        try (InputStream body = response.body()) {
+            log.info("[{}] 🔗 SSE连接已建立，开始读取大模型流式数据 - sessionId: {}, URL: {}",
+                    getCurrentTimestamp(), sessionId, sseStreamUrl);
+
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                lastReceived.set(System.currentTimeMillis());
+
+                if (parser.feed(buffer, 0, read)) {
+                    break;
                 }
             }
+            frameHandler.finishStream();
+        } finally {
+            interruptLock.lock();
+            try {
+                readFinished.set(true);
+                // 清除可能由超时检查设置的中断标记，避免影响线程池中的后续任务
+                Thread.interrupted();
+            } finally {
+                interruptLock.unlock();
+            }
         }
 
         return aiReply.length() > 0 ? aiReply.toString() : "AI回复为空";
     }
 
     /**
-     * 处理SSE事件数据
+     * 以非阻塞方式获取AI流式回复
+     * 通过共享的HttpClient订阅大模型事件流，数据到达后交给写出线程池处理，不为每个会话占用线程；
+     * 返回的future在写出线程池上完成，保存记录等收尾工作也不在HttpClient的IO线程上执行
      */
-    private boolean processSSEEventData(SseEmitter emitter, String jsonData, String sessionId,
-                                        StringBuilder aiReply, StringBuilder fullDelta, boolean[] foundFinishStart) throws Exception {
+    private CompletableFuture<String> getAIStreamResponseAsync(SseEmitter emitter, String sessionId, StringBuilder aiReply,
+                                                               GenerationEvents generationEvents) {
+        String sseStreamUrl = llmServiceBaseUrl + "/api/v1/stream?session_id=" + sessionId;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(sseStreamUrl))
+                .header("Accept", "text/event-stream")
+                .header("Cache-Control", "no-cache")
+                .GET()
+                .build();
+
+        RelayBodySubscriber subscriber = new RelayBodySubscriber(emitter, sessionId, aiReply, generationEvents);
+        UpstreamConnectEvent connectEvent = generationEvents.beginUpstreamConnect(true);
+        llmStreamHttpClient.sendAsync(request, responseInfo -> {
+                    connectEvent.finish(responseInfo.statusCode());
+                    return responseInfo.statusCode() == 200
+                            ? HttpResponse.BodySubscribers.fromSubscriber(subscriber)
+                            : HttpResponse.BodySubscribers.replacing(null);
+                })
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        connectEvent.finish(-1);
+                        subscriber.abort(error);
+                    } else if (response.statusCode() != 200) {
+                        subscriber.abort(new IOException("大模型事件流响应异常，状态码: " + response.statusCode()));
+                    }
+                });
 
-        log.info("[{}] 🔍 开始解析SSE事件数据 - 数据长度: {}", getCurrentTimestamp(), jsonData.length());
+        log.info("[{}] 🔗 已订阅大模型流式数据（响应式） - sessionId: {}, URL: {}",
+                getCurrentTimestamp(), sessionId, sseStreamUrl);
+        return subscriber.result;
+    }
 
-        com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-        @SuppressWarnings("unchecked")
-        java.util.Map<String, Object> eventData = mapper.readValue(jsonData, java.util.Map.class);
+    /**
+     * 响应式转发的字节流订阅者
+     * <p>
+     * HttpClient的IO线程只负责交出数据：解析事件、写前端SSE和收尾都作为任务按到达顺序在写出线程池上串行执行，
+     * 一批数据处理完（包括写出）后才请求下一批，写出缓慢的前端不会占住所有会话共用的IO线程。
+     * 上游结束、出错和读取超时也作为任务排在后面，不会与正在进行的写出交错。
+     */
+    private class RelayBodySubscriber implements Flow.Subscriber<List<ByteBuffer>> {
+        private final String sessionId;
+        private final StringBuilder aiReply;
+        private final RelayFrameHandler frameHandler;
+        private final SseFrameParser parser;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+        private final AtomicLong lastReceived = new AtomicLong(System.currentTimeMillis());
+        // 待串行执行的任务，pendingTasks为已提交但尚未执行完的任务数
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingTasks = new AtomicInteger();
+
+        RelayBodySubscriber(SseEmitter emitter, String sessionId, StringBuilder aiReply, GenerationEvents generationEvents) {
+            this.sessionId = sessionId;
+            this.aiReply = aiReply;
+            this.frameHandler = new RelayFrameHandler(emitter, sessionId, aiReply, generationEvents);
+            this.parser = new SseFrameParser(frameHandler);
+        }
 
-        // 打印接收到的事件数据用于调试
-        String eventType = (String) eventData.get("type");
-        log.info("[{}] 📊 解析SSE事件成功 - 事件类型: {}, 会话ID: {}", getCurrentTimestamp(), eventType, sessionId);
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            log.info("[{}] 🔗 SSE连接已建立，开始读取大模型流式数据 - sessionId: {}", getCurrentTimestamp(), sessionId);
+            scheduleIdleCheck(lastReceived, result::isDone, () -> {
+                log.warn("[{}] ⏰ 大模型事件流读取超时 - sessionId: {}", getCurrentTimestamp(), sessionId);
+                // 立即停止读取上游，失败处理排在正在进行的写出之后
+                subscription.cancel();
+                abort(new SocketTimeoutException("读取大模型事件流超时"));
+            }, relayReadTimeoutMs);
+            subscription.request(1);
+        }
 
-        if (log.isTraceEnabled()) {
-            log.trace("[{}] SSE事件详细内容: {}", getCurrentTimestamp(), jsonData);
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            lastReceived.set(System.currentTimeMillis());
+            enqueue(() -> process(buffers));
         }
 
-        // 检查是否是连接确认消息
-        if ("connection".equals(eventData.get("type"))) {
-            log.info("[{}] 🔗 SSE连接已建立: {}", getCurrentTimestamp(), eventData.get("message"));
-            return false;
+        @Override
+        public void onError(Throwable throwable) {
+            abort(throwable);
         }
 
-        // 检查是否是新格式的事件数据（包含events数组）
-        if (eventData.containsKey("events")) {
-            @SuppressWarnings("unchecked")
-            var events = (java.util.List<java.util.Map<String, Object>>) eventData.get("events");
-            if (events != null) {
-                log.info("[{}] 📦 处理批量事件 - 事件数量: {}", getCurrentTimestamp(), events.size());
-                for (int i = 0; i < events.size(); i++) {
-                    var event = events.get(i);
-                    log.info("[{}] 🔄 处理批量事件 {}/{}", getCurrentTimestamp(), i + 1, events.size());
-                    if (processSingleEvent(emitter, event, sessionId, aiReply, fullDelta, foundFinishStart)) {
-                        log.info("[{}] 🏁 在批量事件中检测到生成结束", getCurrentTimestamp());
-                        return true; // 生成完成
-                    }
-                }
-            }
-            return false;
+        @Override
+        public void onComplete() {
+            enqueue(this::finish);
         }
 
-        // 处理旧格式的事件类型数据
-        if ("event".equals(eventData.get("type"))) {
-            log.info("[{}] 📨 处理旧格式事件数据", getCurrentTimestamp());
-            @SuppressWarnings("unchecked")
-            var data = (java.util.Map<String, Object>) eventData.get("data");
-            if (data != null) {
-                @SuppressWarnings("unchecked")
-                var innerData = (java.util.Map<String, Object>) data.get("data");
-                if (innerData != null && Boolean.TRUE.equals(innerData.get("batch"))) {
-                    // 处理批量事件
-                    @SuppressWarnings("unchecked")
-                    var events = (java.util.List<java.util.Map<String, Object>>) innerData.get("events");
-                    if (events != null) {
-                        log.info("[{}] 📦 处理旧格式批量事件 - 事件数量: {}", getCurrentTimestamp(), events.size());
-                        for (int i = 0; i < events.size(); i++) {
-                            var event = events.get(i);
-                            log.info("[{}] 🔄 处理旧格式事件 {}/{}", getCurrentTimestamp(), i + 1, events.size());
-                            if (processSingleEvent(emitter, event, sessionId, aiReply, fullDelta, foundFinishStart)) {
-                                log.info("[{}] 🏁 在旧格式批量事件中检测到生成结束", getCurrentTimestamp());
-                                return true; // 生成完成
-                            }
-                        }
+        /**
+         * 以失败结束本次转发，排在已提交的处理之后执行
+         */
+        void abort(Throwable throwable) {
+            enqueue(() -> result.completeExceptionally(throwable));
+        }
+
+        private void process(List<ByteBuffer> buffers) {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    if (parser.feed(buffer)) {
+                        // 生成结束，取消订阅以释放上游连接
+                        subscription.cancel();
+                        finish();
+                        return;
                     }
                 }
+            } catch (RuntimeException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+                return;
             }
+            subscription.request(1);
         }
 
-        return false;
-    }
-
-    /**
-     * 处理单个事件
-     */
-    private boolean processSingleEvent(SseEmitter emitter, java.util.Map<String, Object> event, String sessionId,
-                                       StringBuilder aiReply, StringBuilder fullDelta, boolean[] foundFinishStart) throws Exception {
-
-        // 尝试从顶层和data字段获取session_id和user_id
-        String eventSessionId = (String) event.get("session_id");
-        String userId = (String) event.get("user_id");
-        String eventType = (String) event.get("event");
-        String tool = (String) event.get("tool");
-
-        // 如果顶层没有，尝试从data字段获取
-        if (eventSessionId == null || userId == null || eventType == null) {
-            @SuppressWarnings("unchecked")
-            var data = (java.util.Map<String, Object>) event.get("data");
-            if (data != null) {
-                if (eventSessionId == null) eventSessionId = (String) data.get("session_id");
-                if (userId == null) userId = (String) data.get("user_id");
-                if (eventType == null) eventType = (String) data.get("event");
-                if (tool == null) tool = (String) data.get("tool");
+        private void finish() {
+            if (result.isDone()) {
+                return;
             }
+            frameHandler.finishStream();
+            result.complete(aiReply.length() > 0 ? aiReply.toString() : "AI回复为空");
         }
 
-        // 打印事件详情到控制台
-        log.info("[{}] 🔍 处理单个事件 - session_id: {}, user_id: {}, event: {}, tool: {}",
-                getCurrentTimestamp(), eventSessionId, userId, eventType, tool);
-
-        // 🔒 关键修复：验证事件的会话ID是否与当前SSE连接的会话ID匹配
-        if (eventSessionId != null && !eventSessionId.equals(sessionId)) {
-            log.warn("[{}] ⚠️  事件会话ID({})与当前SSE连接会话ID({})不匹配，跳过处理",
-                    getCurrentTimestamp(), eventSessionId, sessionId);
-            return false; // 跳过不属于当前会话的事件
+        private void enqueue(Runnable task) {
+            tasks.add(task);
+            if (pendingTasks.getAndIncrement() == 0) {
+                try {
+                    relayWriteExecutor.execute(this::runTasks);
+                } catch (RejectedExecutionException e) {
+                    // 线程池已关闭（应用关闭中）
+                    Flow.Subscription current = subscription;
+                    if (current != null) {
+                        current.cancel();
+                    }
+                    result.completeExceptionally(e);
+                }
+            }
         }
 
-        // 检查是否是结束事件（agent.loop_end）
-        if ("agent.loop_end".equals(eventType)) {
-            log.info("[{}] 🏁 检测到agent.loop_end事件，AI回复生成完成 - sessionId: {}", getCurrentTimestamp(), eventSessionId);
-            return true; // 生成完成
+        private void runTasks() {
+            do {
+                Runnable task = tasks.poll();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("[{}] ❌ 处理大模型事件流失败 - sessionId: {}", getCurrentTimestamp(), sessionId, e);
+                    result.completeExceptionally(e);
+                }
+            } while (pendingTasks.decrementAndGet() > 0);
         }
+    }
 
-        // 处理流式输出事件（llm_tool.chunk）
-        if ("llm_tool.chunk".equals(eventType)) {
-            log.info("[{}] 📝 处理流式输出事件 - sessionId: {}, tool: {}", getCurrentTimestamp(), eventSessionId, tool);
-            // 首先尝试从顶层获取payload
-            @SuppressWarnings("unchecked")
-            var payload = (java.util.Map<String, Object>) event.get("payload");
-
-            // 如果顶层没有，尝试从data字段获取
-            if (payload == null) {
-                @SuppressWarnings("unchecked")
-                var data = (java.util.Map<String, Object>) event.get("data");
-                if (data != null) {
-                    @SuppressWarnings("unchecked")
-                    var dataPayload = (java.util.Map<String, Object>) data.get("payload");
-                    payload = dataPayload; // 赋值给外层变量
-                }
+    /**
+     * 读取超时检查：超过读取超时时间未收到数据时执行超时处理
+     * 每次只挂一个一次性检查任务，到期时若期间收到过数据则按剩余时间重新挂起
+     */
+    private void scheduleIdleCheck(AtomicLong lastReceived, BooleanSupplier finished, Runnable onTimeout, long delayMs) {
+        timeoutScheduler.schedule(() -> {
+            if (finished.getAsBoolean()) {
+                return;
             }
-
-            if (payload != null && payload.get("delta") != null) {
-                String delta = payload.get("delta").toString();
-
-                // 添加详细的接收日志
-                log.info("[{}] 🔵 从大模型接收Delta内容 - 长度: {}, 内容: {}",
-                        getCurrentTimestamp(),
-                        delta.length(),
-                        delta.length() > 100 ? delta.substring(0, 100) + "..." : delta);
-
-                if (!delta.isEmpty()) {
-                    // 记录处理前的状态
-                    log.info("[{}] 🔄 开始处理Delta内容 - 原始长度: {}", getCurrentTimestamp(), delta.length());
-
-                    // 处理delta内容，过滤finish标签但保留其他标签
-                    String processedDelta = processAndFilterDelta(delta, fullDelta);
-
-                    if (!processedDelta.isEmpty()) {
-                        // 记录处理后的状态
-                        log.info("[{}] ✅ Delta处理完成 - 处理后长度: {}, 将发送到前端: {}",
-                                getCurrentTimestamp(),
-                                processedDelta.length(),
-                                processedDelta.length() > 50 ? processedDelta.substring(0, 50) + "..." : processedDelta);
-
-                        // 发送处理后的内容到前端
-                        long startTime = System.currentTimeMillis();
-                        sendDeltaToFrontend(emitter, processedDelta);
-                        long endTime = System.currentTimeMillis();
-
-                        aiReply.append(processedDelta);
-                        log.info("[{}] 📤 Delta发送完成 - 耗时: {}ms, 累计回复长度: {}",
-                                getCurrentTimestamp(),
-                                (endTime - startTime),
-                                aiReply.length());
-                    } else {
-                        log.info("[{}] ⚠️  Delta处理后为空，跳过发送 - 原始内容: {}",
-                                getCurrentTimestamp(),
-                                delta.length() > 30 ? delta.substring(0, 30) + "..." : delta);
-                    }
-                } else {
-                    log.info("[{}] ⚠️  接收到空的Delta内容，跳过处理", getCurrentTimestamp());
-                }
+            long idle = System.currentTimeMillis() - lastReceived.get();
+            if (idle >= relayReadTimeoutMs) {
+                onTimeout.run();
             } else {
-                log.debug("[{}] ⚠️  payload为空或无delta字段", getCurrentTimestamp());
+                scheduleIdleCheck(lastReceived, finished, onTimeout, relayReadTimeoutMs - idle);
             }
-        }
-
-        return false;
+        }, delayMs, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * 处理并过滤delta内容
-     * 等待完整标签出现，过滤finish标签，保留其他标签
+     * 大模型事件帧处理器
+     * 每个上游连接一个实例，保存该连接的delta过滤状态，阻塞和响应式两种转发方式共用
      */
-    private String processAndFilterDelta(String delta, StringBuilder fullDelta) {
-        log.info("[{}] 🔧 开始过滤Delta内容 - 输入长度: {}, 累积缓冲区长度: {}",
-                getCurrentTimestamp(), delta.length(), fullDelta.length());
-
-        fullDelta.append(delta);
-        String accumulated = fullDelta.toString();
-        StringBuilder result = new StringBuilder();
-        StringBuilder remaining = new StringBuilder();
-
-        int tagCount = 0;
-        int filteredTagCount = 0;
-        int i = 0;
-
-        // 如果缓冲区过大（超过50B），强制清空并输出内容，避免无限积累
-        if (accumulated.length() > 50) {
-            log.warn("[{}] ⚠️  缓冲区过大({} 字符)，强制清空并输出内容",
-                    getCurrentTimestamp(), accumulated.length());
-            fullDelta.setLength(0);
-            // 简单过滤finish标签后直接返回
-            String filteredContent = accumulated.replaceAll("(?i)</?finish>", "");
-            log.info("[{}] 🔄 强制输出内容 - 长度: {}", getCurrentTimestamp(), filteredContent.length());
-            return filteredContent;
+    private class RelayFrameHandler implements SseFrameParser.FrameHandler {
+        private final SseEmitter emitter;
+        private final String sessionId;
+        private final StringBuilder aiReply;
+        private final FinishTagFilter finishTagFilter = new FinishTagFilter();
+        private final SseFrameWriter writer;
+        private final long framesAtStart;
+        // 逐帧、逐个delta的事件只记录到追踪缓冲区，不写日志
+        private final RelayTracer.Trace trace;
+        private final GenerationEvents generationEvents;
+        private long firstDeltaNanos = 0;
+        private int frameCount = 0;
+
+        RelayFrameHandler(SseEmitter emitter, String sessionId, StringBuilder aiReply, GenerationEvents generationEvents) {
+            this.emitter = emitter;
+            this.sessionId = sessionId;
+            this.aiReply = aiReply;
+            this.writer = writerFor(emitter);
+            this.framesAtStart = writer.getDeltaFramesSent();
+            this.trace = relayTracer.begin(sessionId);
+            this.generationEvents = generationEvents;
+            writer.beginGeneration(generationEvents);
         }
 
-        while (i < accumulated.length()) {
-            char c = accumulated.charAt(i);
-
-            if (c == '<') {
-                // 寻找完整的标签
-                int tagStart = i;
-                int tagEnd = findCompleteTag(accumulated, i);
-
-                if (tagEnd == -1) {
-                    // 检查是否真的是HTML标签开始，还是只是数学比较符号
-                    String potentialTag = accumulated.substring(i, Math.min(i + 50, accumulated.length()));
-
-                    // 如果看起来不像HTML标签（没有字母跟在<后面，或者包含数学运算符），当作普通内容处理
-                    if (!potentialTag.matches("<\\s*[a-zA-Z/].*") || potentialTag.matches(".*[<>=+\\-*/].*")) {
-                        log.info("[{}] 🔍 检测到非HTML标签的<符号，当作普通内容处理: {}",
-                                getCurrentTimestamp(), potentialTag);
-                        result.append(c);
-                        i++;
-                        continue;
-                    }
+        @Override
+        public boolean onFrame(String eventType, String lastEventId, byte[] data, int length) {
+            frameCount++;
+            relayMetrics.upstreamFrame(length);
 
-                    // 如果缓冲区中的不完整内容超过100个字符，可能不是真正的标签
-                    if (accumulated.substring(i).length() > 100) {
-                        log.warn("[{}] ⚠️  疑似非标签内容过长，强制输出: {}",
-                                getCurrentTimestamp(), accumulated.substring(i, Math.min(i + 30, accumulated.length())) + "...");
-                        result.append(accumulated.substring(i));
-                        break;
-                    }
+            List<UpstreamEvent> events;
+            try {
+                events = UpstreamFrameDecoder.decode(data, length);
+            } catch (IOException parseError) {
+                trace.record(RelayTracer.Kind.DECODE_ERROR, frameCount, length, parseError.getMessage());
+                // 仅在解析失败时才把数据转成字符串用于排查
+                int previewLength = Math.min(length, 200);
+                log.error("[{}] ❌ 解析SSE事件数据失败 - sessionId: {}, 帧序号: {}, 数据: {}",
+                        getCurrentTimestamp(), sessionId, frameCount,
+                        new String(data, 0, previewLength, StandardCharsets.UTF_8) + (length > previewLength ? "..." : ""),
+                        parseError);
+                // 即使解析失败，也尝试继续处理其他事件
+                return false;
+            }
+            trace.record(RelayTracer.Kind.FRAME, frameCount, length, events.size());
 
-                    // 标签不完整，保留到remaining中等待更多内容
-                    remaining.append(accumulated.substring(i));
-                    log.info("[{}] 📦 发现不完整标签，保留到缓冲区: {}",
-                            getCurrentTimestamp(), accumulated.substring(i, Math.min(i + 20, accumulated.length())) + "...");
-                    break;
-                } else {
-                    // 找到完整标签
-                    String tag = accumulated.substring(tagStart, tagEnd + 1);
-                    tagCount++;
-
-                    // 检查是否是finish标签
-                    if (tag.matches("(?i)</?finish>")) {
-                        // 是finish标签，跳过不添加到结果中
-                        filteredTagCount++;
-                        log.info("[{}] 🚫 过滤finish标签: {}", getCurrentTimestamp(), tag);
-                    } else {
-                        // 不是finish标签，添加到结果中
-                        result.append(tag);
-                        log.info("[{}] ✅ 保留标签: {}", getCurrentTimestamp(), tag);
+            try {
+                for (int i = 0; i < events.size(); i++) {
+                    if (processSingleEvent(this, events.get(i))) {
+                        log.info("[{}] 🏁 检测到生成结束信号 - sessionId: {}, 总处理帧数: {}",
+                                getCurrentTimestamp(), sessionId, frameCount);
+                        return true;
                     }
-                    i = tagEnd + 1;
                 }
-            } else {
-                // 普通字符，直接添加
-                result.append(c);
-                i++;
+            } catch (Exception e) {
+                log.error("[{}] ❌ 处理SSE事件数据失败 - sessionId: {}, 帧序号: {}",
+                        getCurrentTimestamp(), sessionId, frameCount, e);
             }
+            return false;
         }
 
-        // 更新fullDelta为剩余未处理的内容
-        fullDelta.setLength(0);
-        fullDelta.append(remaining);
+        /**
+         * 把过滤后的内容交给合并写出
+         */
+        void deliverDelta(CharSequence content) {
+            if (firstDeltaNanos == 0) {
+                firstDeltaNanos = System.nanoTime();
+                if (generationEvents.firstToken(frameCount)) {
+                    relayMetrics.firstToken(generationEvents.elapsedNanos());
+                }
+            }
+            if (!sendDeltaToFrontend(emitter, content)) {
+                trace.record(RelayTracer.Kind.SEND_FAILED, frameCount, content.length(), 0);
+            }
+            aiReply.append(content);
+        }
 
-        String resultStr = result.toString();
-        log.info("[{}] 🏁 Delta过滤完成 - 处理标签: {}, 过滤标签: {}, 输出长度: {}, 剩余缓冲: {}",
-                getCurrentTimestamp(), tagCount, filteredTagCount, resultStr.length(), remaining.length());
+        /**
+         * 上游事件流结束：把过滤器中暂存的不完整标签前缀作为普通内容发送，写出合并中的内容，并记录本次生成的帧率
+         */
+        void finishStream() {
+            CharSequence rest = finishTagFilter.flush();
+            if (rest.length() > 0) {
+                deliverDelta(rest);
+            }
+            try {
+                writer.flushDeltas();
+            } catch (Exception e) {
+                log.warn("[{}] ❌ 写出合并的增量内容失败 - sessionId: {}, 错误: {}", getCurrentTimestamp(), sessionId, e.getMessage());
+            }
+            recordFrameRate();
+        }
 
-        return resultStr;
+        private void recordFrameRate() {
+            long frames = writer.getDeltaFramesSent() - framesAtStart;
+            trace.record(RelayTracer.Kind.STREAM_END, frameCount, frames, aiReply.length());
+            if (frames <= 0 || firstDeltaNanos == 0) {
+                return;
+            }
+            double seconds = Math.max(System.nanoTime() - firstDeltaNanos, 1_000_000L) / 1e9;
+            double framesPerSecond = frames / seconds;
+            relayMetrics.frameRate(framesPerSecond);
+            log.info("[{}] 📊 增量帧统计 - sessionId: {}, 帧数: {}, 帧率: {}/s, 回复长度: {}",
+                    getCurrentTimestamp(), sessionId, frames, Math.round(framesPerSecond), aiReply.length());
+        }
     }
 
     /**
-     * 寻找完整标签的结束位置
+     * 处理单个事件
      */
-    private int findCompleteTag(String text, int startPos) {
-        if (startPos >= text.length() || text.charAt(startPos) != '<') {
-            return -1;
+    private boolean processSingleEvent(RelayFrameHandler relay, UpstreamEvent event) {
+        String sessionId = relay.sessionId;
+
+        // 检查是否是连接确认消息
+        if (event.kind() == UpstreamEvent.Kind.CONNECTION) {
+            log.info("[{}] 🔗 SSE连接已建立: {}", getCurrentTimestamp(), event.text());
+            return false;
+        }
+
+        String eventSessionId = event.sessionId();
+
+        // 🔒 关键修复：验证事件的会话ID是否与当前SSE连接的会话ID匹配
+        if (eventSessionId != null && !eventSessionId.equals(sessionId)) {
+            relay.trace.record(RelayTracer.Kind.SESSION_MISMATCH, relay.frameCount, 0, eventSessionId);
+            log.warn("[{}] ⚠️  事件会话ID({})与当前SSE连接会话ID({})不匹配，跳过处理",
+                    getCurrentTimestamp(), eventSessionId, sessionId);
+            return false; // 跳过不属于当前会话的事件
+        }
+
+        // 检查是否是结束事件（agent.loop_end）
+        if (event.kind() == UpstreamEvent.Kind.LOOP_END) {
+            relay.trace.record(RelayTracer.Kind.LOOP_END, relay.frameCount, 0, 0);
+            log.info("[{}] 🏁 检测到agent.loop_end事件，AI回复生成完成 - sessionId: {}", getCurrentTimestamp(), eventSessionId);
+            return true; // 生成完成
         }
 
-        // 寻找对应的'>'
-        int pos = startPos + 1;
-        boolean inQuotes = false;
-        char quoteChar = 0;
-
-        while (pos < text.length()) {
-            char c = text.charAt(pos);
-
-            if (!inQuotes && (c == '"' || c == '\'')) {
-                inQuotes = true;
-                quoteChar = c;
-            } else if (inQuotes && c == quoteChar) {
-                inQuotes = false;
-            } else if (!inQuotes && c == '>') {
-                return pos; // 找到标签结束
+        // 处理流式输出事件（llm_tool.chunk）
+        if (event.kind() == UpstreamEvent.Kind.CHUNK) {
+            String delta = event.text();
+            if (delta == null || delta.isEmpty()) {
+                // payload为空、无delta字段或delta为空，跳过处理
+                relay.trace.record(RelayTracer.Kind.EMPTY_DELTA, relay.frameCount, 0, 0);
+                return false;
             }
 
-            pos++;
+            // 过滤finish标签，保留其他内容；可能构成标签的结尾字符暂存到下一个片段
+            CharSequence processedDelta = relay.finishTagFilter.filter(delta);
+
+            if (processedDelta.length() > 0) {
+                // 发送处理后的内容到前端（经过合并）
+                relay.trace.record(RelayTracer.Kind.DELTA, relay.frameCount, delta.length(), processedDelta.length());
+                relay.deliverDelta(processedDelta);
+            } else {
+                // 可能构成标签的字符暂存在过滤器中，跳过发送
+                relay.trace.record(RelayTracer.Kind.DELTA_HELD, relay.frameCount, delta.length(), 0);
+            }
         }
 
-        return -1; // 标签不完整
+        return false;
     }
 
     /**
@@ -1020,27 +1260,7 @@ public class ChatServiceImpl implements ChatService {
      */
     private void sendErrorToFrontend(SseEmitter emitter, String errorMessage) {
         try {
-            String errorJson = String.format(
-                    "{\"type\":\"error\",\"message\":\"%s\"}",
-                    errorMessage.replace("\"", "\\\""));
-            emitter.send(SseEmitter.event()
-                    .name("message")
-                    .data(errorJson)
-                    .reconnectTime(3000));
-
-            // 强制刷新，确保数据立即发送
-            try {
-                java.lang.reflect.Field field = emitter.getClass().getDeclaredField("handler");
-                field.setAccessible(true);
-                Object handler = field.get(emitter);
-                if (handler != null) {
-                    java.lang.reflect.Method flushMethod = handler.getClass().getMethod("flush");
-                    flushMethod.invoke(handler);
-                }
-            } catch (Exception flushEx) {
-                log.debug("[{}] 无法强制刷新SSE缓冲区: {}", getCurrentTimestamp(), flushEx.getMessage());
-            }
-
+            writerFor(emitter).sendError(errorMessage);
         } catch (Exception e) {
             log.error("发送错误消息失败", e);
         }
@@ -1051,36 +1271,7 @@ public class ChatServiceImpl implements ChatService {
      */
     private void sendMessageToFrontend(SseEmitter emitter, String type, String message, Object extraData) {
         try {
-            String messageJson;
-            if (extraData != null) {
-                messageJson = String.format(
-                        "{\"type\":\"%s\",\"message\":\"%s\",\"data\":%s}",
-                        type, message.replace("\"", "\\\""), extraData.toString());
-            } else {
-                messageJson = String.format(
-                        "{\"type\":\"%s\",\"message\":\"%s\"}",
-                        type, message.replace("\"", "\\\""));
-            }
-
-            // 使用统一的事件名和添加重连时间
-            emitter.send(SseEmitter.event()
-                    .name("message")
-                    .data(messageJson)
-                    .reconnectTime(3000));
-
-            // 强制刷新，确保数据立即发送
-            try {
-                java.lang.reflect.Field field = emitter.getClass().getDeclaredField("handler");
-                field.setAccessible(true);
-                Object handler = field.get(emitter);
-                if (handler != null) {
-                    java.lang.reflect.Method flushMethod = handler.getClass().getMethod("flush");
-                    flushMethod.invoke(handler);
-                }
-            } catch (Exception flushEx) {
-                log.debug("[{}] 无法强制刷新SSE缓冲区: {}", getCurrentTimestamp(), flushEx.getMessage());
-            }
-
+            writerFor(emitter).sendMessage(type, message, extraData != null ? extraData.toString() : null);
         } catch (Exception e) {
             log.error("发送消息失败", e);
         }
@@ -1088,69 +1279,28 @@ public class ChatServiceImpl implements ChatService {
 
     /**
      * 发送增量内容到前端
+     * 每个delta调用一次，成功时不写日志；连接已完成时后续每个delta都会失败，只记debug
+     * @return 是否发送成功
      */
-    private void sendDeltaToFrontend(SseEmitter emitter, String deltaContent) {
-        log.info("[{}] 📤 准备向前端发送增量内容 - 长度: {}, 内容: {}",
-                getCurrentTimestamp(),
-                deltaContent.length(),
-                deltaContent.length() > 50 ? deltaContent.substring(0, 50) + "..." : deltaContent);
-
+    private boolean sendDeltaToFrontend(SseEmitter emitter, CharSequence deltaContent) {
         try {
-            // 清理和转义内容
-            String cleanContent = deltaContent
-                    .replace("\\", "\\\\")   // 转义反斜杠
-                    .replace("\"", "\\\"")   // 转义双引号
-                    .replace("\n", "\\n")    // 转义换行符
-                    .replace("\r", "\\r")    // 转义回车符
-                    .replace("\t", "\\t");   // 转义制表符
-
-            String deltaJson = String.format(
-                    "{\"type\":\"delta\",\"content\":\"%s\"}",
-                    cleanContent);
-
-            log.debug("[{}] 🔄 准备发送SSE事件 - JSON长度: {}", getCurrentTimestamp(), deltaJson.length());
-
-            // 发送SSE事件，使用delta事件名以提高兼容性
-            emitter.send(SseEmitter.event()
-                    .name("message")
-                    .data(deltaJson)
-                    .reconnectTime(3000));  // 添加重连时间，提高稳定性
-
-            // 强制刷新，确保数据立即发送（重要：解决服务器环境缓冲问题）
-            try {
-                // 通过反射访问响应对象进行强制刷新
-                java.lang.reflect.Field field = emitter.getClass().getDeclaredField("handler");
-                field.setAccessible(true);
-                Object handler = field.get(emitter);
-                if (handler != null) {
-                    java.lang.reflect.Method flushMethod = handler.getClass().getMethod("flush");
-                    flushMethod.invoke(handler);
-                    log.debug("[{}] 🔄 强制刷新SSE缓冲区成功", getCurrentTimestamp());
-                }
-            } catch (Exception flushEx) {
-                // 刷新失败不影响主流程，只记录debug日志
-                log.debug("[{}] 📝 无法强制刷新SSE缓冲区: {}", getCurrentTimestamp(), flushEx.getMessage());
-            }
+            writerFor(emitter).sendDelta(deltaContent);
 
             // 更新SSE活跃时间
             updateSseActivity(emitter);
-
-            // 添加成功日志
-            log.info("[{}] ✅ SSE增量数据发送成功 - 内容长度: {}, JSON长度: {}",
-                    getCurrentTimestamp(), deltaContent.length(), deltaJson.length());
+            return true;
 
         } catch (IllegalStateException e) {
             if (e.getMessage() != null && e.getMessage().contains("ResponseBodyEmitter has already completed")) {
-                log.warn("[{}] ❌ SSE连接已完成，跳过发送增量内容 - 内容长度: {}",
-                        getCurrentTimestamp(), deltaContent.length());
+                log.debug("❌ SSE连接已完成，跳过发送增量内容 - 内容长度: {}", deltaContent.length());
             } else {
-                log.warn("[{}] ❌ SSE连接状态异常，跳过发送增量内容 - 错误: {}, 内容长度: {}",
-                        getCurrentTimestamp(), e.getMessage(), deltaContent.length());
+                log.warn("❌ SSE连接状态异常，跳过发送增量内容 - 错误: {}, 内容长度: {}",
+                        e.getMessage(), deltaContent.length());
             }
         } catch (Exception e) {
-            log.error("[{}] ❌ 发送增量内容失败 - 内容长度: {}, 错误: {}",
-                    getCurrentTimestamp(), deltaContent.length(), e.getMessage(), e);
+            log.error("❌ 发送增量内容失败 - 内容长度: {}, 错误: {}", deltaContent.length(), e.getMessage(), e);
         }
+        return false;
     }
 
     /**
@@ -1160,28 +1310,7 @@ public class ChatServiceImpl implements ChatService {
         log.debug("[{}] 准备发送完成信号: recordId={}", getCurrentTimestamp(), recordId);
 
         try {
-            String completeJson = String.format(
-                    "{\"type\":\"complete\",\"message\":\"%s\",\"recordId\":%d}",
-                    message, recordId);
-
-            log.debug("[{}] 准备发送complete事件: {}", getCurrentTimestamp(), completeJson);
-            emitter.send(SseEmitter.event()
-                    .name("message")
-                    .data(completeJson)
-                    .reconnectTime(3000));
-
-            // 强制刷新，确保数据立即发送
-            try {
-                java.lang.reflect.Field field = emitter.getClass().getDeclaredField("handler");
-                field.setAccessible(true);
-                Object handler = field.get(emitter);
-                if (handler != null) {
-                    java.lang.reflect.Method flushMethod = handler.getClass().getMethod("flush");
-                    flushMethod.invoke(handler);
-                }
-            } catch (Exception flushEx) {
-                log.debug("[{}] 无法强制刷新SSE缓冲区: {}", getCurrentTimestamp(), flushEx.getMessage());
-            }
+            writerFor(emitter).sendComplete(message, recordId);
 
             // 更新SSE活跃时间
             updateSseActivity(emitter);
@@ -1203,13 +1332,15 @@ public class ChatServiceImpl implements ChatService {
     /**
      * 处理流程错误
      */
-    private void handleProcessError(SseEmitter emitter, Exception e, Integer uid, Integer sid, int nextSeq) {
+    private void handleProcessError(SseEmitter emitter, Exception e, Integer uid, Integer sid, int nextSeq,
+                                    GenerationEvents generationEvents) {
+        completeGeneration(generationEvents, "error", 0);
         try {
             // 保存错误消息
             String errMsg = "AI回复失败: " + e.getMessage();
             Record errRecord = new Record(sid, uid, false, errMsg, nextSeq + 1,
                     MessageTypeConstant.LLM_GENERATION, LocalDateTime.now());
-            recordRepository.save(errRecord);
+            generationEvents.persisting(errRecord, saveRecord(errRecord));
 
             // 发送错误信息到前端
             sendErrorToFrontend(emitter, e.getMessage());
@@ -1223,17 +1354,17 @@ public class ChatServiceImpl implements ChatService {
     /**
      * 处理带文件引用的AI流式回复（支持Agent类型和输入类型选择及metadata）
      */
-    private void processAIStreamResponseWithFiles(SseEmitter emitter, Integer uid, Integer sid, String content, List<String> fileReferences, int nextSeq, String agentType, String inputType, java.util.Map<String, Object> metadata) {
+    private void processAIStreamResponseWithFiles(SseEmitter emitter, Integer uid, Integer sid, String content, List<String> fileReferences, int nextSeq, String agentType, String inputType, java.util.Map<String, Object> metadata, GenerationEvents generationEvents) {
         // 委托给已有的带参数的方法实现
-        processAIStreamResponseWithFiles(emitter, uid, sid, content, fileReferences, nextSeq, agentType, inputType);
+        processAIStreamResponseWithFiles(emitter, uid, sid, content, fileReferences, nextSeq, agentType, inputType, generationEvents);
     }
 
     /**
      * 处理带文件引用的AI流式回复（支持Agent类型和输入类型选择）
      */
-    private void processAIStreamResponseWithFiles(SseEmitter emitter, Integer uid, Integer sid, String content, List<String> fileReferences, int nextSeq, String agentType, String inputType) {
+    private void processAIStreamResponseWithFiles(SseEmitter emitter, Integer uid, Integer sid, String content, List<String> fileReferences, int nextSeq, String agentType, String inputType, GenerationEvents generationEvents) {
         StringBuilder aiReply = new StringBuilder();
-        String userInputUrl = "http://localhost:8000/api/v1/user/input";
+        String userInputUrl = llmServiceBaseUrl + "/api/v1/user/input";
 
         log.info("[{}] 📁 开始处理带文件的AI流式回复 - sid: {}, agentType: {}, inputType: {}, fileCount: {}",
                 getCurrentTimestamp(), sid, agentType, inputType, fileReferences != null ? fileReferences.size() : 0);
@@ -1243,11 +1374,11 @@ public class ChatServiceImpl implements ChatService {
             List<String> validFileIds = new ArrayList<>();
             if (fileReferences != null && !fileReferences.isEmpty()) {
                 for (String fileId : fileReferences) {
-                    File file = fileRepository.findByFileId(fileId);
-                    if (file != null && file.getUid().equals(uid) && file.getSid().equals(sid)) {
+                    OwnershipCache.FileMeta file = ownershipCache.file(fileId);
+                    if (file != null && file.uid().equals(uid) && file.sid().equals(sid)) {
                         validFileIds.add(fileId);
                         log.info("[{}] ✅ 验证文件引用成功 - fileId: {}, fileName: {}",
-                                getCurrentTimestamp(), fileId, file.getOriginalName());
+                                getCurrentTimestamp(), fileId, file.originalName());
                     } else {
                         log.warn("[{}] ❌ 文件引用验证失败 - fileId: {}", getCurrentTimestamp(), fileId);
                     }
@@ -1271,7 +1402,7 @@ public class ChatServiceImpl implements ChatService {
             meta.put("agent_type", agentType != null ? agentType : "orchestrator");
             inputRequest.put("metadata", meta);
 
-            var inputResponse = restTemplate.postForObject(userInputUrl, inputRequest, java.util.Map.class);
+            var inputResponse = submitUserInput(userInputUrl, inputRequest, generationEvents.beginInputSubmit(inputType));
             log.info("[{}] 📥 带文件的用户输入提交完成 - sid: {}, response: {}",
                     getCurrentTimestamp(), sid, inputResponse);
 
@@ -1279,6 +1410,7 @@ public class ChatServiceImpl implements ChatService {
                 log.error("[{}] ❌ 提交带文件的用户输入失败 - sid: {}, response: {}",
                         getCurrentTimestamp(), sid, inputResponse);
                 sendErrorToFrontend(emitter, "提交用户输入失败");
+                completeGeneration(generationEvents, "input_rejected", 0);
                 return;
             }
 
@@ -1289,47 +1421,77 @@ public class ChatServiceImpl implements ChatService {
             // 3. 获取AI流式回复
             log.info("[{}] 🌐 开始建立SSE连接获取AI回复 - sid: {}", getCurrentTimestamp(), sid);
             String sessionId = sid.toString();
-            String finalReply = getAIStreamResponse(emitter, sessionId, aiReply);
-            log.info("[{}] 📥 带文件的AI流式回复获取完成 - sid: {}, 回复长度: {}",
-                    getCurrentTimestamp(), sid, finalReply != null ? finalReply.length() : 0);
-
-            // 保存完整的AI回复
-            Record aiRecord = null;
-            if (finalReply != null && !finalReply.trim().isEmpty() && !finalReply.equals("AI回复为空")) {
-                aiRecord = new Record(sid, uid, false, finalReply, nextSeq + 1,
-                        MessageTypeConstant.LLM_GENERATION, LocalDateTime.now());
-                aiRecord = recordRepository.save(aiRecord);
-                log.info("[{}] 💾 带文件的AI回复已保存 - recordId: {}, 内容长度: {}",
-                        getCurrentTimestamp(), aiRecord.getRid(), finalReply.length());
-            } else {
-                log.warn("[{}] ⚠️ 带文件的AI回复为空或无效，将使用默认回复 - sid: {}", getCurrentTimestamp(), sid);
-                String defaultReply = aiReply.length() > 0 ? aiReply.toString() : "AI回复为空";
-                aiRecord = new Record(sid, uid, false, defaultReply, nextSeq + 1,
-                        MessageTypeConstant.LLM_GENERATION, LocalDateTime.now());
-                aiRecord = recordRepository.save(aiRecord);
+            if (isReactiveRelay()) {
+                // 响应式模式：订阅事件流后立即释放当前线程，由回调完成保存和收尾
+                getAIStreamResponseAsync(emitter, sessionId, aiReply, generationEvents).whenComplete((finalReply, error) -> {
+                    if (error != null) {
+                        log.error("[{}] ❌ 带文件的SSE流式处理失败 - sid: {}, error: {}", getCurrentTimestamp(), sid, error.getMessage(), error);
+                        handleProcessError(emitter, unwrapRelayError(error), uid, sid, nextSeq, generationEvents);
+                    } else {
+                        finishAIStreamResponseWithFiles(emitter, uid, sid, nextSeq, finalReply, aiReply, generationEvents);
+                    }
+                });
+                return;
             }
 
-            // 发送完成信号
-            int recordId = aiRecord != null ? aiRecord.getRid() : -1;
-            log.info("[{}] 🏁 发送完成信号到会话 - sid: {}, recordId: {}", getCurrentTimestamp(), sid, recordId);
-            sendCompleteToFrontend(emitter, "回复完成", recordId);
-            log.info("[{}] ✅ 带文件的流式处理完成，已发送complete事件 - sid: {}", getCurrentTimestamp(), sid);
+            String finalReply = getAIStreamResponse(emitter, sessionId, aiReply, generationEvents);
+            finishAIStreamResponseWithFiles(emitter, uid, sid, nextSeq, finalReply, aiReply, generationEvents);
 
         } catch (Exception e) {
             log.error("[{}] ❌ 带文件的SSE流式处理失败 - sid: {}, error: {}", getCurrentTimestamp(), sid, e.getMessage(), e);
-            handleProcessError(emitter, e, uid, sid, nextSeq);
+            handleProcessError(emitter, e, uid, sid, nextSeq, generationEvents);
         } finally {
             // 对于会话级连接，不需要在这里关闭连接，由管理器统一管理
             log.info("[{}] 🔄 带文件的流式处理完成 - sid: {} (连接由会话管理器管理)", getCurrentTimestamp(), sid);
         }
     }
 
+    /**
+     * 保存带文件的AI回复并发送完成信号
+     */
+    private void finishAIStreamResponseWithFiles(SseEmitter emitter, Integer uid, Integer sid, int nextSeq, String finalReply, StringBuilder aiReply,
+                                                 GenerationEvents generationEvents) {
+        log.info("[{}] 📥 带文件的AI流式回复获取完成 - sid: {}, 回复长度: {}",
+                getCurrentTimestamp(), sid, finalReply != null ? finalReply.length() : 0);
+
+        // 保存完整的AI回复
+        Record aiRecord = null;
+        if (finalReply != null && !finalReply.trim().isEmpty() && !finalReply.equals("AI回复为空")) {
+            aiRecord = new Record(sid, uid, false, finalReply, nextSeq + 1,
+                    MessageTypeConstant.LLM_GENERATION, LocalDateTime.now());
+            CompletableFuture<Record> saved = saveRecord(aiRecord);
+            generationEvents.persisting(aiRecord, saved);
+            if (rejectIfNotQueued(emitter, saved, generationEvents)) {
+                return;
+            }
+            log.info("[{}] 💾 带文件的AI回复已保存 - recordId: {}, 内容长度: {}",
+                    getCurrentTimestamp(), aiRecord.getRid(), finalReply.length());
+        } else {
+            log.warn("[{}] ⚠️ 带文件的AI回复为空或无效，将使用默认回复 - sid: {}", getCurrentTimestamp(), sid);
+            String defaultReply = aiReply.length() > 0 ? aiReply.toString() : "AI回复为空";
+            aiRecord = new Record(sid, uid, false, defaultReply, nextSeq + 1,
+                    MessageTypeConstant.LLM_GENERATION, LocalDateTime.now());
+            CompletableFuture<Record> saved = saveRecord(aiRecord);
+            generationEvents.persisting(aiRecord, saved);
+            if (rejectIfNotQueued(emitter, saved, generationEvents)) {
+                return;
+            }
+        }
+
+        // 发送完成信号
+        int recordId = aiRecord != null ? aiRecord.getRid() : -1;
+        log.info("[{}] 🏁 发送完成信号到会话 - sid: {}, recordId: {}", getCurrentTimestamp(), sid, recordId);
+        sendCompleteToFrontend(emitter, "回复完成", recordId);
+        completeGeneration(generationEvents, "complete", aiRecord.getContent().length());
+        log.info("[{}] ✅ 带文件的流式处理完成，已发送complete事件 - sid: {}", getCurrentTimestamp(), sid);
+    }
+
     @Override
     public boolean sendMessageInput(Integer uid, Integer sid, String content, java.util.Map<String, Object> metadata, String inputType) {
         log.info("[{}] 📨 发送非流式消息 - uid: {}, sid: {}, inputType: {}, metadata: {}",
                 getCurrentTimestamp(), uid, sid, inputType, metadata);
 
-        String userInputUrl = "http://localhost:8000/api/v1/user/input";
+        String userInputUrl = llmServiceBaseUrl + "/api/v1/user/input";
 
         try {
             // 更新会话时间，确保最新发送消息的会话显示在最上面
@@ -1373,7 +1535,9 @@ public class ChatServiceImpl implements ChatService {
                     getCurrentTimestamp(), userInputUrl, inputRequest);
 
             // 发送请求到大模型
-            var inputResponse = restTemplate.postForObject(userInputUrl, inputRequest, java.util.Map.class);
+            GenerationEvents generationEvents = new GenerationEvents(sid, uid,
+                    getStringFromMetadata(metadata, "agent_type", null));
+            var inputResponse = submitUserInput(userInputUrl, inputRequest, generationEvents.beginInputSubmit(inputType));
 
             if (inputResponse == null) {
                 log.error("[{}] ❌ 大模型响应为空", getCurrentTimestamp());
@@ -1401,7 +1565,9 @@ public class ChatServiceImpl implements ChatService {
     @Override
     public boolean stopSessionTimeout(Integer sid) {
         try {
-            stopSessionTimeoutMonitoring(sid);
+            if (!sseConnectionRegistry.pauseTimeout(sid)) {
+                log.debug("[{}] 会话{}无SSE连接，无需停止超时监控", getCurrentTimestamp(), sid);
+            }
             log.info("[{}] 🛑 成功停止会话{}的超时监控", getCurrentTimestamp(), sid);
             return true;
         } catch (Exception e) {
@@ -1413,7 +1579,9 @@ public class ChatServiceImpl implements ChatService {
     @Override
     public boolean restartSessionTimeout(Integer sid) {
         try {
-            restartSessionTimeoutMonitoring(sid);
+            if (!sseConnectionRegistry.resumeTimeout(sid)) {
+                log.warn("[{}] 无法重启会话{}的超时监控，SSE连接不存在", getCurrentTimestamp(), sid);
+            }
             log.info("[{}] 🔄 成功重启会话{}的超时监控", getCurrentTimestamp(), sid);
             return true;
         } catch (Exception e) {
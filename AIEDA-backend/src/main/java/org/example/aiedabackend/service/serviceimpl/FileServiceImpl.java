@@ -1,21 +1,33 @@
 package org.example.aiedabackend.service.serviceimpl;
 
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.http.io.EofSensorInputStream;
 import org.example.aiedabackend.dao.FileRepository;
 import org.example.aiedabackend.po.File;
 import org.example.aiedabackend.service.FileService;
+import org.example.aiedabackend.util.ByteRange;
 import org.example.aiedabackend.vo.FileListResponseVO;
 import org.example.aiedabackend.vo.FilePreviewVO;
 import org.example.aiedabackend.vo.FileVO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
@@ -25,14 +37,41 @@ import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class FileServiceImpl implements FileService {
 
     @Autowired
     private FileRepository fileRepository;
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private static final String LLM_SERVICE_BASE_URL = "http://localhost:8000/api/v1/user";
+    @Autowired
+    private OwnershipCache ownershipCache;
+
+    // 共享的连接池RestTemplate：普通请求（预览、列表）
+    @Autowired
+    @Qualifier("llmRestTemplate")
+    private RestTemplate restTemplate;
+
+    // 共享的连接池RestTemplate：文件上传下载，读取超时更长
+    @Autowired
+    @Qualifier("llmFileRestTemplate")
+    private RestTemplate fileRestTemplate;
+
+    // 请求上游时路径中的ID以URI模板变量传入，http.client.requests 指标按模板（如 /download/{fid}）聚合
+    @Value("${llm.service.base-url:http://localhost:8000}/api/v1/user")
+    private String llmServiceUserUrl;
+
+    // 转发文件内容时的缓冲区大小（字节）
+    @Value("${file.stream.buffer-size:65536}")
+    private int streamBufferSize;
+
+    // 转发给大模型服务的请求头（区间与条件请求）
+    private static final List<String> FORWARDED_REQUEST_HEADERS = List.of(
+            HttpHeaders.RANGE, HttpHeaders.IF_RANGE, HttpHeaders.IF_NONE_MATCH, HttpHeaders.IF_MODIFIED_SINCE);
+
+    // 转发给客户端的响应头
+    private static final List<String> FORWARDED_RESPONSE_HEADERS = List.of(
+            HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.CACHE_CONTROL);
 
     @Override
     public FileVO uploadFile(MultipartFile file, String uid, String sid, String metadata) {
@@ -54,9 +93,9 @@ public class FileServiceImpl implements FileService {
             HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
 
             // 2. 上传到大模型服务
-            String uploadUrl = LLM_SERVICE_BASE_URL + "/upload";
+            String uploadUrl = llmServiceUserUrl + "/upload";
             System.out.println("准备上传到大模型服务，URL: " + uploadUrl);
-            ResponseEntity<Map> response = restTemplate.postForEntity(uploadUrl, requestEntity, Map.class);
+            ResponseEntity<Map> response = fileRestTemplate.postForEntity(uploadUrl, requestEntity, Map.class);
 
             if (response.getStatusCode() != HttpStatus.OK || !"success".equals(response.getBody().get("status"))) {
                 System.out.println("上传到大模型服务失败，响应: " + response.getBody());
@@ -109,10 +148,10 @@ public class FileServiceImpl implements FileService {
         
         try {
             // 2. 从大模型服务下载文件
-            String downloadUrl = LLM_SERVICE_BASE_URL + "/download/" + fid;
+            String downloadUrl = llmServiceUserUrl + "/download/" + fid;
             System.out.println("准备请求大模型服务，URL: " + downloadUrl);
             
-            ResponseEntity<Resource> response = restTemplate.getForEntity(downloadUrl, Resource.class);
+            ResponseEntity<Resource> response = fileRestTemplate.getForEntity(llmServiceUserUrl + "/download/{fid}", Resource.class, fid);
             System.out.println("大模型服务响应状态码: " + response.getStatusCode());
             
             if (response.getStatusCode() != HttpStatus.OK) {
@@ -130,6 +169,143 @@ public class FileServiceImpl implements FileService {
         }
     }
 
+    @Override
+    public void streamFile(String fid, HttpServletRequest request, HttpServletResponse response) {
+        try {
+            fileRestTemplate.execute(llmServiceUserUrl + "/download/{fid}", HttpMethod.GET, upstreamRequest -> {
+                for (String name : FORWARDED_REQUEST_HEADERS) {
+                    String value = request.getHeader(name);
+                    if (value != null) {
+                        upstreamRequest.getHeaders().set(name, value);
+                    }
+                }
+            }, upstreamResponse -> {
+                relayFile(upstreamResponse, request, response);
+                return null;
+            }, fid);
+        } catch (HttpStatusCodeException e) {
+            if (e.getStatusCode().value() != HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+                throw new RuntimeException("下载文件失败，状态码: " + e.getStatusCode());
+            }
+            // 上游判定区间不可满足，原样返回416
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            String contentRange = e.getResponseHeaders() != null
+                    ? e.getResponseHeaders().getFirst(HttpHeaders.CONTENT_RANGE) : null;
+            if (contentRange != null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange);
+            }
+        }
+    }
+
+    /**
+     * 把上游响应复制到客户端，响应体未读完时断开上游连接
+     * <p>
+     * 本地截取区间、区间不可满足或客户端中途断开时，上游响应体还有剩余内容；
+     * RestTemplate 关闭响应时会把剩余内容读完以复用连接，大文件会白白传输整个文件，
+     * 因此这些情况下直接断开该连接，不归还连接池。
+     */
+    private void relayFile(ClientHttpResponse upstreamResponse, HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        InputStream body = upstreamResponse.getBody();
+        boolean fullyRead = false;
+        try {
+            copyResponse(upstreamResponse, body, request, response);
+            fullyRead = body.read() == -1;
+        } finally {
+            if (!fullyRead) {
+                abortUpstream(body);
+            }
+        }
+    }
+
+    private static void abortUpstream(InputStream body) {
+        if (body instanceof EofSensorInputStream upstream) {
+            try {
+                upstream.abort();
+            } catch (IOException e) {
+                log.debug("断开上游连接失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 上游已处理Range（206）时原样转发；
+     * 上游忽略Range返回完整内容时，跳过区间之前的字节，只转发请求的区间
+     */
+    private void copyResponse(ClientHttpResponse upstreamResponse, InputStream body, HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
+        HttpHeaders upstreamHeaders = upstreamResponse.getHeaders();
+        for (String name : FORWARDED_RESPONSE_HEADERS) {
+            String value = upstreamHeaders.getFirst(name);
+            if (value != null) {
+                response.setHeader(name, value);
+            }
+        }
+        int status = upstreamResponse.getStatusCode().value();
+        if (status == HttpStatus.NOT_MODIFIED.value()) {
+            response.setStatus(status);
+            return;
+        }
+
+        long length = upstreamHeaders.getContentLength();
+        if (status == HttpStatus.PARTIAL_CONTENT.value()) {
+            response.setStatus(status);
+            String contentRange = upstreamHeaders.getFirst(HttpHeaders.CONTENT_RANGE);
+            if (contentRange != null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange);
+            }
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            copy(body, response, length);
+            return;
+        }
+
+        ByteRange range = null;
+        if (status == HttpStatus.OK.value() && length >= 0) {
+            // 内容长度已知时可以在本地截取区间
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+            if (ifRange == null || ifRange.equals(upstreamHeaders.getETag())) {
+                range = ByteRange.parse(request.getHeader(HttpHeaders.RANGE), length);
+            }
+        }
+        if (range == ByteRange.UNSATISFIABLE) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+        if (range != null) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, range.contentRange(length));
+            body.skipNBytes(range.start());
+            copy(body, response, range.length());
+        } else {
+            response.setStatus(status);
+            copy(body, response, length);
+        }
+    }
+
+    /**
+     * 用固定大小的缓冲区复制
+     * @param length 要复制的字节数，未知时为-1（复制到流结束）
+     */
+    private void copy(InputStream in, HttpServletResponse response, long length) throws IOException {
+        if (length >= 0) {
+            response.setContentLengthLong(length);
+        }
+        OutputStream out = response.getOutputStream();
+        byte[] buffer = new byte[streamBufferSize];
+        long remaining = length >= 0 ? length : Long.MAX_VALUE;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                break;
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+        out.flush();
+    }
+
     @Override
     public FilePreviewVO previewFile(String fid) {
 //        // 1. 从数据库获取文件信息
@@ -142,10 +318,10 @@ public class FileServiceImpl implements FileService {
             System.out.println("FileServiceImpl.previewFile 被调用，fid: " + fid);
             
             // 2. 从大模型服务获取预览
-            String previewUrl = LLM_SERVICE_BASE_URL + "/preview/" + fid;
+            String previewUrl = llmServiceUserUrl + "/preview/" + fid;
             System.out.println("请求大模型服务预览URL: " + previewUrl);
             
-            ResponseEntity<Map> response = restTemplate.getForEntity(previewUrl, Map.class);
+            ResponseEntity<Map> response = restTemplate.getForEntity(llmServiceUserUrl + "/preview/{fid}", Map.class, fid);
             System.out.println("大模型服务响应状态: " + response.getStatusCode());
             System.out.println("大模型服务响应内容: " + response.getBody());
             
@@ -291,7 +467,7 @@ public class FileServiceImpl implements FileService {
         fileVO.setFileSize(0L);
         fileVO.setFileType("application/octet-stream");
         fileVO.setUploadTime(LocalDateTime.now()); // 使用当前时间作为默认值
-        fileVO.setDownloadUrl(LLM_SERVICE_BASE_URL + "/download/" + fid);
+        fileVO.setDownloadUrl(llmServiceUserUrl + "/download/" + fid);
         
         return fileVO;
     }
@@ -305,7 +481,7 @@ public class FileServiceImpl implements FileService {
         }
         
         // 2. 返回大模型服务的下载URL
-        return LLM_SERVICE_BASE_URL + "/download/" + fid;
+        return llmServiceUserUrl + "/download/" + fid;
     }
 
     @Override
@@ -317,7 +493,7 @@ public class FileServiceImpl implements FileService {
         }
         
         // 2. 返回大模型服务的预览URL
-        return LLM_SERVICE_BASE_URL + "/preview/" + fid;
+        return llmServiceUserUrl + "/preview/" + fid;
     }
 
     @Override
@@ -332,10 +508,9 @@ public class FileServiceImpl implements FileService {
             // 2. 从大模型服务删除文件（如果大模型服务支持删除接口）
             // 注意：这里假设大模型服务提供了删除接口，如果没有可以省略这一步
             try {
-                String deleteUrl = LLM_SERVICE_BASE_URL + "/files/" + fid;
                 HttpHeaders headers = new HttpHeaders();
                 HttpEntity<String> entity = new HttpEntity<>(headers);
-                restTemplate.exchange(deleteUrl, HttpMethod.DELETE, entity, Map.class);
+                restTemplate.exchange(llmServiceUserUrl + "/files/{fid}", HttpMethod.DELETE, entity, Map.class, fid);
             } catch (Exception e) {
                 // 如果大模型服务不支持删除或删除失败，记录日志但不影响数据库操作
                 System.out.println("从大模型服务删除文件失败: " + e.getMessage());
@@ -343,6 +518,7 @@ public class FileServiceImpl implements FileService {
             
             // 3. 从数据库删除记录
             fileRepository.delete(file);
+            ownershipCache.invalidateFile(fid);
             
             return true;
         } catch (Exception e) {
@@ -356,10 +532,10 @@ public class FileServiceImpl implements FileService {
             System.out.println("FileServiceImpl.getFileStructureFromLLM 被调用，uid: " + uid + ", sid: " + sid);
             
             // 调用大模型的文件列表接口
-            String listUrl = LLM_SERVICE_BASE_URL + "/list/" + uid + "/" + sid;
+            String listUrl = llmServiceUserUrl + "/list/" + uid + "/" + sid;
             System.out.println("请求大模型文件列表URL: " + listUrl);
             
-            ResponseEntity<Map> response = restTemplate.getForEntity(listUrl, Map.class);
+            ResponseEntity<Map> response = restTemplate.getForEntity(llmServiceUserUrl + "/list/{uid}/{sid}", Map.class, uid, sid);
             System.out.println("大模型服务响应状态: " + response.getStatusCode());
             System.out.println("大模型服务响应内容: " + response.getBody());
             
@@ -469,10 +645,10 @@ public class FileServiceImpl implements FileService {
             System.out.println("FileServiceImpl.getHierarchicalFileStructure 被调用，uid: " + uid + ", sid: " + sid);
             
             // 调用大模型的文件列表接口
-            String listUrl = LLM_SERVICE_BASE_URL + "/list/" + uid + "/" + sid;
+            String listUrl = llmServiceUserUrl + "/list/" + uid + "/" + sid;
             System.out.println("请求大模型文件列表URL: " + listUrl);
             
-            ResponseEntity<Map> response = restTemplate.getForEntity(listUrl, Map.class);
+            ResponseEntity<Map> response = restTemplate.getForEntity(llmServiceUserUrl + "/list/{uid}/{sid}", Map.class, uid, sid);
             System.out.println("大模型服务响应状态: " + response.getStatusCode());
             System.out.println("大模型服务响应内容: " + response.getBody());
             
@@ -0,0 +1,118 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.example.aiedabackend.dao.FileRepository;
+import org.example.aiedabackend.dao.SessionRepository;
+import org.example.aiedabackend.po.File;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * 会话与文件归属信息的进程内缓存
+ * <p>
+ * 校验会话、文件是否属于当前用户时先查缓存，命中时不访问数据库。缓存条目数有上限并按写入时间过期；
+ * 修改标题、删除会话或文件时由调用方显式失效。不存在的会话、文件不缓存。
+ * 命中率等统计通过 cache.gets / cache.evictions 等指标暴露（cache=session.ownership / file.ownership）。
+ */
+@Component
+public class OwnershipCache {
+
+    /**
+     * 会话归属与元数据
+     */
+    public record SessionMeta(Integer uid, String title) {
+    }
+
+    /**
+     * 文件归属与元数据
+     */
+    public record FileMeta(Integer uid, Integer sid, String originalName) {
+    }
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cache.ownership.max-size:10000}")
+    private long maxSize;
+
+    @Value("${cache.ownership.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private Cache<Integer, SessionMeta> sessions;
+    private Cache<String, FileMeta> files;
+
+    @PostConstruct
+    public void init() {
+        sessions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        files = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, sessions, "session.ownership");
+        CaffeineCacheMetrics.monitor(meterRegistry, files, "file.ownership");
+    }
+
+    /**
+     * 获取会话的归属信息，会话不存在时返回null
+     */
+    public SessionMeta session(Integer sid) {
+        return sessions.get(sid, id -> {
+            SessionRepository.SessionOwner owner = sessionRepository.findOwnerBySid(id);
+            return owner != null ? new SessionMeta(owner.getUid(), owner.getTitle()) : null;
+        });
+    }
+
+    /**
+     * 会话是否存在且属于该用户
+     */
+    public boolean ownsSession(Integer uid, Integer sid) {
+        SessionMeta meta = session(sid);
+        return meta != null && Objects.equals(meta.uid(), uid);
+    }
+
+    /**
+     * 获取文件的归属信息，文件不存在时返回null
+     */
+    public FileMeta file(String fileId) {
+        return files.get(fileId, id -> {
+            File file = fileRepository.findByFileId(id);
+            return file != null ? new FileMeta(file.getUid(), file.getSid(), file.getOriginalName()) : null;
+        });
+    }
+
+    /**
+     * 会话标题修改或会话删除后调用；删除会话时级联删除的文件一并失效
+     */
+    public void invalidateSession(Integer sid, boolean deleted) {
+        sessions.invalidate(sid);
+        if (deleted) {
+            files.asMap().values().removeIf(meta -> Objects.equals(meta.sid(), sid));
+        }
+    }
+
+    /**
+     * 文件删除后调用
+     */
+    public void invalidateFile(String fileId) {
+        files.invalidate(fileId);
+    }
+}
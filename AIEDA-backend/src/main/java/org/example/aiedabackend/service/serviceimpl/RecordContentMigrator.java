@@ -0,0 +1,118 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.aiedabackend.util.ContentCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 已有对话记录的压缩迁移
+ * <p>
+ * 设置 record.compression.migrate=true 启动时执行一次：按记录ID分批扫描尚未压缩的长内容，
+ * 按 {@link ContentCodec} 的配置压缩后回写。每批一个语句批次，条件带 content_data IS NULL，
+ * 可以中断后重新执行，也可以和正常写入同时进行。迁移前后的存储大小写入日志。
+ */
+@Slf4j
+@Component
+public class RecordContentMigrator implements ApplicationRunner {
+
+    private static final String SELECT_SQL = "SELECT rid, content FROM records " +
+            "WHERE rid > ? AND content_data IS NULL AND CHAR_LENGTH(content) >= ? ORDER BY rid LIMIT ?";
+
+    private static final String UPDATE_SQL = "UPDATE records SET content = ?, content_data = ?, content_length = ? " +
+            "WHERE rid = ? AND content_data IS NULL";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ContentCodec contentCodec;
+
+    @Value("${record.compression.migrate:false}")
+    private boolean migrateOnStartup;
+
+    @Value("${record.compression.threshold-chars:4096}")
+    private int thresholdChars;
+
+    @Value("${record.compression.migrate-batch-size:200}")
+    private int batchSize;
+
+    private record Row(int rid, String content) {
+    }
+
+    private record Update(int rid, ContentCodec.Encoded encoded) {
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (migrateOnStartup) {
+            migrate();
+        }
+    }
+
+    /**
+     * 压缩全部达到阈值的未压缩记录
+     * @return 压缩的记录数
+     */
+    public int migrate() {
+        log.info("开始压缩已有对话记录，迁移前存储大小: {}", storageSize());
+        int lastRid = 0;
+        int scanned = 0;
+        int compressed = 0;
+        long beforeBytes = 0;
+        long afterBytes = 0;
+        long start = System.currentTimeMillis();
+        while (true) {
+            List<Row> rows = jdbcTemplate.query(SELECT_SQL,
+                    (rs, rowNum) -> new Row(rs.getInt("rid"), rs.getString("content")),
+                    lastRid, thresholdChars, batchSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<Update> updates = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                ContentCodec.Encoded encoded = contentCodec.encode(row.content);
+                if (encoded != null) {
+                    updates.add(new Update(row.rid, encoded));
+                    beforeBytes += row.content.length();
+                    afterBytes += encoded.data().length + encoded.prefix().length();
+                }
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, updates, updates.size(), (ps, update) -> {
+                    ps.setString(1, update.encoded.prefix());
+                    ps.setBytes(2, update.encoded.data());
+                    ps.setObject(3, update.encoded.length(), Types.INTEGER);
+                    ps.setInt(4, update.rid);
+                });
+            }
+            scanned += rows.size();
+            compressed += updates.size();
+            lastRid = rows.get(rows.size() - 1).rid;
+        }
+        log.info("对话记录压缩完成 - 扫描: {}, 压缩: {}, 内容字符数: {} -> 存储字节数约 {}, 耗时: {}ms, 迁移后存储大小: {}",
+                scanned, compressed, beforeBytes, afterBytes, System.currentTimeMillis() - start, storageSize());
+        return compressed;
+    }
+
+    /**
+     * records表的数据和索引大小（MySQL统计信息，可能有延迟；其他数据库返回未知）
+     */
+    private String storageSize() {
+        try {
+            Long bytes = jdbcTemplate.queryForObject("SELECT data_length + index_length FROM information_schema.tables " +
+                    "WHERE table_schema = DATABASE() AND table_name = 'records'", Long.class);
+            return bytes != null ? bytes / 1024 + "KB" : "未知";
+        } catch (Exception e) {
+            return "未知";
+        }
+    }
+}
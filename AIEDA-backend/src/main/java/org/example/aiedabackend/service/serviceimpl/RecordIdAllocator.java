@@ -0,0 +1,152 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 对话记录ID的分段分配器（hi/lo）
+ * <p>
+ * 每次在独立事务中锁定 id_blocks 中的一行，把水位推进一个分段，之后在内存中逐个分配。
+ * ID在写入前就已确定，记录可以进入批量插入队列，调用方仍能立即拿到记录ID；
+ * 多个实例各自预留不重叠的分段。首次使用时从 records 表已有的最大ID开始。
+ * <p>
+ * 当前分段剩余的ID不多于 prefetch-threshold 时，由后台线程提前预留下一个分段；访问数据库时不持有分配锁，
+ * 只有下一个分段尚未预留完成而当前分段已用完时，分配方才等待。
+ */
+@Slf4j
+@Component
+public class RecordIdAllocator {
+
+    private static final String BLOCK_NAME = "records";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 每次预留的ID数量
+    @Value("${record.id.block-size:100}")
+    private int blockSize;
+
+    // 当前分段剩余的ID数不多于该值时提前预留下一个分段
+    @Value("${record.id.prefetch-threshold:20}")
+    private int prefetchThreshold;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService reserver;
+    // 以下字段由lock保护
+    private long next = 1;
+    private long last = 0;
+    // 正在预留或已预留、尚未启用的下一个分段（值为分段的最大ID）
+    private CompletableFuture<Long> nextBlock;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        reserver = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "record-id-reserver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reserver.shutdownNow();
+    }
+
+    /**
+     * 分配下一个记录ID
+     */
+    public int nextId() {
+        while (true) {
+            CompletableFuture<Long> pending;
+            lock.lock();
+            try {
+                if (next <= last) {
+                    int id = Math.toIntExact(next++);
+                    if (nextBlock == null && last - next + 1 <= prefetchThreshold) {
+                        nextBlock = CompletableFuture.supplyAsync(this::reserveBlock, reserver);
+                    }
+                    return id;
+                }
+                if (nextBlock == null) {
+                    nextBlock = CompletableFuture.supplyAsync(this::reserveBlock, reserver);
+                }
+                pending = nextBlock;
+            } finally {
+                lock.unlock();
+            }
+
+            // 当前分段已用完，在锁外等待下一个分段
+            long end;
+            try {
+                end = pending.join();
+            } catch (CompletionException e) {
+                lock.lock();
+                try {
+                    if (nextBlock == pending) {
+                        // 预留失败，下次分配时重新预留
+                        nextBlock = null;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            lock.lock();
+            try {
+                // 多个线程等待同一个分段时只由第一个启用，其余线程重新分配
+                if (nextBlock == pending) {
+                    nextBlock = null;
+                    next = end - blockSize + 1;
+                    last = end;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private long reserveBlock() {
+        try {
+            return transactionTemplate.execute(status -> advance());
+        } catch (DuplicateKeyException e) {
+            // 其他实例同时完成了初始化，重新预留
+            return transactionTemplate.execute(status -> advance());
+        }
+    }
+
+    private long advance() {
+        List<Long> current = jdbcTemplate.queryForList(
+                "SELECT max_id FROM id_blocks WHERE name = ? FOR UPDATE", Long.class, BLOCK_NAME);
+        if (current.isEmpty()) {
+            jdbcTemplate.update("INSERT INTO id_blocks (name, max_id) SELECT ?, COALESCE(MAX(rid), 0) FROM records", BLOCK_NAME);
+            current = jdbcTemplate.queryForList(
+                    "SELECT max_id FROM id_blocks WHERE name = ? FOR UPDATE", Long.class, BLOCK_NAME);
+            log.info("初始化记录ID水位: {}", current.get(0));
+        }
+        long end = current.get(0) + blockSize;
+        jdbcTemplate.update("UPDATE id_blocks SET max_id = ? WHERE name = ?", end, BLOCK_NAME);
+        return end;
+    }
+}
@@ -0,0 +1,376 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.aiedabackend.po.Record;
+import org.example.aiedabackend.util.ContentCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 对话记录的异步批量写入
+ * <p>
+ * 请求线程和生成线程提交记录后立即返回：记录ID由 {@link RecordIdAllocator} 预先分配，
+ * 记录进入内存队列，由单个写入线程按提交顺序取出，每批一条多值 INSERT（需要连接参数
+ * rewriteBatchedStatements=true）在一个事务中写入。
+ * <ul>
+ *     <li>单线程按队列顺序写入，同一会话的记录按提交顺序落库；写入失败时按批重试，不越过失败的批次；</li>
+ *     <li>尚未落库的记录可通过 {@link #unsaved(Integer)} / {@link #unsavedRecord(Integer)} 读到，
+ *     查询记录时合并，保证写后即读；</li>
+ *     <li>超过阈值的内容按 {@link ContentCodec} 压缩存储，压缩在提交方线程完成；</li>
+ *     <li>删除会话前调用 {@link #cancelSession(Integer, long)}：队列中该会话的记录直接丢弃，之后提交的也不再写入；</li>
+ *     <li>应用关闭时写完队列中的全部记录；进程崩溃时最多丢失队列中尚未写入的记录。</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class RecordPersistencePipeline {
+
+    private static final String INSERT_SQL = "INSERT INTO records " +
+            "(rid, sid, uid, direction, content, sequence, type, create_time, content_data, content_length) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RecordIdAllocator recordIdAllocator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ContentCodec contentCodec;
+
+    // 队列容量
+    @Value("${record.persistence.queue-capacity:10000}")
+    private int queueCapacity;
+
+    // 队列满时提交方最多等待的时间，超时后提交失败，不无限阻塞转发线程
+    @Value("${record.persistence.submit-timeout-ms:1000}")
+    private long submitTimeoutMs;
+
+    // 单批最多写入的记录数
+    @Value("${record.persistence.max-batch-size:100}")
+    private int maxBatchSize;
+
+    // 整批写入失败后的重试次数，仍失败时逐条写入以隔离问题记录
+    @Value("${record.persistence.max-retries:3}")
+    private int maxRetries;
+
+    // encoded为压缩后的内容，按原文存储时为null
+    private record Pending(Record record, ContentCodec.Encoded encoded, CompletableFuture<Record> future) {
+    }
+
+    private BlockingQueue<Pending> queue;
+    private TransactionTemplate transactionTemplate;
+    // 已提交但尚未落库的记录：记录ID -> 记录
+    private final ConcurrentHashMap<Integer, Record> unsavedByRid = new ConcurrentHashMap<>();
+    // 已删除的会话，其记录不再写入；会话ID不复用，条目过期后由生成线程迟到的提交也已结束
+    private final Cache<Integer, Boolean> deletedSids = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+    // 写入线程在筛选并写入一批记录期间持有，取消会话时据此等待正在写入的一批完成
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile boolean running = false;
+    private Thread writer;
+    private DistributionSummary batchSizes;
+    private Timer batchWrites;
+    private Counter failedRecords;
+    private Counter droppedRecords;
+    private Counter rejectedRecords;
+
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        batchSizes = DistributionSummary.builder("ai.records.batch.size")
+                .description("每批写入的对话记录数")
+                .register(meterRegistry);
+        batchWrites = Timer.builder("ai.records.batch.write")
+                .description("单批对话记录写入（含事务提交）的耗时，不含重试等待")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        failedRecords = Counter.builder("ai.records.failed")
+                .description("重试后仍写入失败的对话记录数")
+                .register(meterRegistry);
+        droppedRecords = Counter.builder("ai.records.dropped")
+                .description("所属会话已删除而未写入的对话记录数")
+                .register(meterRegistry);
+        rejectedRecords = Counter.builder("ai.records.rejected")
+                .description("写入队列已满、等待超时而未提交的对话记录数")
+                .register(meterRegistry);
+        Gauge.builder("ai.records.queued", queue, BlockingQueue::size)
+                .description("等待写入的对话记录数")
+                .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "record-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        if (!queue.isEmpty()) {
+            log.error("应用关闭时仍有{}条对话记录未写入", queue.size());
+        }
+    }
+
+    /**
+     * 提交一条记录，未设置记录ID时先分配
+     * <p>
+     * 队列已满时最多等待 record.persistence.submit-timeout-ms，仍无空位时返回以
+     * {@link RejectedExecutionException} 失败的future，记录不会写入。
+     * @return 记录落库后完成的future
+     */
+    public CompletableFuture<Record> submit(Record record) {
+        if (record.getRid() == null) {
+            record.setRid(recordIdAllocator.nextId());
+        }
+        // 在提交方线程压缩，不占用单个写入线程的时间
+        if (isDeleted(record.getSid())) {
+            // 会话已删除（生成线程在删除后才结束），不再写入
+            droppedRecords.increment();
+            CompletableFuture<Record> dropped = new CompletableFuture<>();
+            dropped.cancel(false);
+            return dropped;
+        }
+        Pending pending = new Pending(record, contentCodec.encode(record.getContent()), new CompletableFuture<>());
+        unsavedByRid.put(record.getRid(), record);
+
+        if (!running) {
+            // 写入线程已停止（应用关闭中），直接写入
+            write(List.of(pending));
+            return pending.future;
+        }
+        try {
+            if (!queue.offer(pending, submitTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejectedRecords.increment();
+                unsavedByRid.remove(record.getRid());
+                log.error("对话记录写入队列已满，等待{}ms后放弃 - rid: {}, sid: {}",
+                        submitTimeoutMs, record.getRid(), record.getSid());
+                pending.future.completeExceptionally(new RejectedExecutionException("对话记录写入队列已满"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unsavedByRid.remove(record.getRid());
+            pending.future.completeExceptionally(e);
+        }
+        return pending.future;
+    }
+
+    /**
+     * 会话中已提交但尚未落库的记录
+     */
+    public List<Record> unsaved(Integer sid) {
+        List<Record> result = new ArrayList<>();
+        if (unsavedByRid.isEmpty()) {
+            return result;
+        }
+        for (Record record : unsavedByRid.values()) {
+            if (record.getSid().equals(sid)) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 会话中已提交但尚未落库的记录的最大顺序号，没有时返回0
+     */
+    public int maxUnsavedSequence(Integer sid) {
+        int max = 0;
+        for (Record record : unsavedByRid.values()) {
+            if (record.getSid().equals(sid) && record.getSequence() != null) {
+                max = Math.max(max, record.getSequence());
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 尚未落库的单条记录，已落库或不存在时返回null
+     */
+    public Record unsavedRecord(Integer rid) {
+        return unsavedByRid.get(rid);
+    }
+
+    /**
+     * 取消会话尚未写入的记录（删除会话前、在删除事务之外调用）
+     * <p>
+     * 队列中该会话的记录直接丢弃（future被取消），之后提交的记录也不再写入；
+     * 写入线程正在写入的一批不会中断，方法等待这一批完成后返回，随后的删除会一并删掉这些记录。
+     * @param timeoutMs 等待正在写入的一批的最长时间
+     */
+    public void cancelSession(Integer sid, long timeoutMs) {
+        deletedSids.put(sid, Boolean.TRUE);
+        List<Pending> removed = new ArrayList<>();
+        queue.removeIf(pending -> {
+            if (sid.equals(pending.record.getSid())) {
+                removed.add(pending);
+                return true;
+            }
+            return false;
+        });
+        removed.forEach(this::drop);
+
+        try {
+            if (writeLock.tryLock(timeoutMs, TimeUnit.MILLISECONDS)) {
+                writeLock.unlock();
+            } else {
+                log.warn("等待正在写入的对话记录超时，会话{}删除后可能残留记录", sid);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isDeleted(Integer sid) {
+        return deletedSids.getIfPresent(sid) != null;
+    }
+
+    private void drop(Pending pending) {
+        droppedRecords.increment();
+        unsavedByRid.remove(pending.record.getRid());
+        pending.future.cancel(false);
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("对话记录写入线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        writeLock.lock();
+        try {
+            // 在锁内筛选：取消会话时等到锁，之后的批次都能看到删除标记
+            List<Pending> live = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                if (isDeleted(pending.record.getSid())) {
+                    drop(pending);
+                } else {
+                    live.add(pending);
+                }
+            }
+            if (!live.isEmpty()) {
+                writeWithRetry(live);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeWithRetry(List<Pending> batch) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                insert(batch);
+                batchSizes.record(batch.size());
+                for (Pending pending : batch) {
+                    unsavedByRid.remove(pending.record.getRid());
+                    pending.future.complete(pending.record);
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxRetries) {
+                    log.error("批量写入{}条对话记录失败，改为逐条写入: {}", batch.size(), e.getMessage());
+                    break;
+                }
+                log.warn("批量写入{}条对话记录失败，第{}次重试: {}", batch.size(), attempt + 1, e.getMessage());
+                sleepQuietly(100L << attempt);
+            }
+        }
+
+        for (Pending pending : batch) {
+            try {
+                insert(List.of(pending));
+                unsavedByRid.remove(pending.record.getRid());
+                pending.future.complete(pending.record);
+            } catch (RuntimeException e) {
+                failedRecords.increment();
+                Record record = pending.record;
+                log.error("对话记录写入失败 - rid: {}, sid: {}, sequence: {}, 内容长度: {}",
+                        record.getRid(), record.getSid(), record.getSequence(),
+                        record.getContent() != null ? record.getContent().length() : 0, e);
+                unsavedByRid.remove(record.getRid());
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void insert(List<Pending> batch) {
+        Timer.Sample sample = Timer.start();
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, pending) -> {
+                    Record record = pending.record;
+                    ContentCodec.Encoded encoded = pending.encoded;
+                    ps.setInt(1, record.getRid());
+                    ps.setInt(2, record.getSid());
+                    ps.setInt(3, record.getUid());
+                    ps.setBoolean(4, record.getDirection());
+                    ps.setString(5, encoded != null ? encoded.prefix() : record.getContent());
+                    ps.setInt(6, record.getSequence());
+                    ps.setInt(7, record.getType());
+                    ps.setTimestamp(8, Timestamp.valueOf(record.getCreateTime()));
+                    ps.setBytes(9, encoded != null ? encoded.data() : null);
+                    ps.setObject(10, encoded != null ? encoded.length() : null, Types.INTEGER);
+                }));
+        sample.stop(batchWrites);
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
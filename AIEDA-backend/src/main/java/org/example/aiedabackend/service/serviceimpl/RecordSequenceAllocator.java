@@ -0,0 +1,70 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.example.aiedabackend.dao.RecordRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 会话内消息顺序号分配器
+ * <p>
+ * 每个会话一个内存计数器，首次使用时初始化一次，之后原子递增分配，
+ * 发送消息时不再加载整个会话的历史记录。并发发送拿到的顺序号互不相同；
+ * 数据库上的 (sid, sequence) 唯一约束兜底多实例部署等内存计数器无法覆盖的情况。
+ * <p>
+ * 计数器空闲一段时间后淘汰，再次使用时重新初始化为数据库 MAX(sequence) 与写入管道中尚未落库记录的最大顺序号中较大的一个，
+ * 避免记录排队期间重新初始化而分配出重复的顺序号。AI回复的顺序号在生成开始时预留、生成结束才提交，
+ * 空闲时间需大于最长的一次生成。
+ */
+@Component
+public class RecordSequenceAllocator {
+
+    @Autowired
+    private RecordRepository recordRepository;
+
+    @Autowired
+    private RecordPersistencePipeline recordPersistencePipeline;
+
+    // 会话计数器空闲多久后淘汰（秒）
+    @Value("${record.sequence.idle-seconds:3600}")
+    private long idleSeconds;
+
+    private Cache<Integer, AtomicInteger> counters;
+
+    @PostConstruct
+    public void init() {
+        counters = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .build();
+    }
+
+    /**
+     * 为会话连续分配count个顺序号
+     * @return 第一个顺序号，分配到的是 [first, first + count)
+     */
+    public int allocate(Integer sid, int count) {
+        AtomicInteger counter = counters.get(sid, id -> new AtomicInteger(maxSequence(id)));
+        return counter.addAndGet(count) - count + 1;
+    }
+
+    /**
+     * 会话删除后丢弃其计数器
+     */
+    public void evict(Integer sid) {
+        counters.invalidate(sid);
+    }
+
+    /**
+     * 会话已用的最大顺序号。先取未落库的记录再查数据库：记录落库后才从管道中移除，两次读取之间落库的记录不会被漏掉
+     */
+    private int maxSequence(Integer sid) {
+        int unsaved = recordPersistencePipeline.maxUnsavedSequence(sid);
+        return Math.max(unsaved, recordRepository.findMaxSequenceBySid(sid));
+    }
+}
@@ -0,0 +1,222 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.example.aiedabackend.vo.RecordVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 活跃会话最近对话记录的进程内缓存
+ * <p>
+ * 每个会话一个定长环形缓冲区，按顺序号保存最近N条记录，覆盖顺序号不小于最早一条的全部记录；
+ * 若会话的记录总数不超过N，则缓冲区就是完整的历史。
+ * 首次读取时从数据库加载最近N条，之后由保存记录的路径追加，最近的记录读取不再访问数据库。
+ * 按空闲时间和内存预算（按内容长度估算）淘汰，删除会话或记录写入失败时失效。
+ */
+@Component
+public class RecordTailCache {
+
+    // 单条记录除内容外的估算开销（字节）
+    private static final int RECORD_OVERHEAD_BYTES = 160;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 每个会话缓存的记录数
+    @Value("${records.tail.size:50}")
+    private int tailSize;
+
+    // 全部会话缓存内容的内存预算（字节）
+    @Value("${records.tail.max-bytes:67108864}")
+    private long maxBytes;
+
+    // 会话空闲多久后淘汰（秒）
+    @Value("${records.tail.idle-seconds:600}")
+    private long idleSeconds;
+
+    private Cache<Integer, Tail> tails;
+
+    @PostConstruct
+    public void init() {
+        tails = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<Integer, Tail>weigher((sid, tail) -> tail.weight())
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tails, "records.tail");
+    }
+
+    public int getTailSize() {
+        return tailSize;
+    }
+
+    /**
+     * 读取一页记录，缓存无法完整覆盖该页时返回null
+     * 参数含义与 ChatService.getRecords 的分页参数相同，结果按顺序号正序
+     */
+    public List<RecordVO> page(Integer sid, Integer beforeSequence, Integer afterSequence, int limit) {
+        Tail tail = tails.getIfPresent(sid);
+        return tail != null ? tail.page(beforeSequence, afterSequence, limit) : null;
+    }
+
+    /**
+     * 读取完整的历史记录，只有会话记录总数不超过缓存容量时才可用，否则返回null
+     */
+    public List<RecordVO> fullHistory(Integer sid) {
+        Tail tail = tails.getIfPresent(sid);
+        return tail != null ? tail.fullHistory() : null;
+    }
+
+    /**
+     * 用最近的记录初始化会话缓存，已存在时不覆盖
+     * @param loader 返回会话最近的至多N条记录（按顺序号正序，含尚未落库的记录）
+     */
+    public void load(Integer sid, Supplier<List<RecordVO>> loader) {
+        tails.asMap().computeIfAbsent(sid, id -> {
+            List<RecordVO> recent = loader.get();
+            Tail tail = new Tail(tailSize, recent.size() < tailSize);
+            for (RecordVO record : recent) {
+                tail.insert(record);
+            }
+            return tail;
+        });
+    }
+
+    /**
+     * 用完整的历史记录初始化会话缓存（读取全部记录时顺便填充）
+     */
+    public void loadFromHistory(Integer sid, List<RecordVO> history) {
+        tails.asMap().computeIfAbsent(sid, id -> {
+            Tail tail = new Tail(tailSize, history.size() <= tailSize);
+            for (int i = Math.max(0, history.size() - tailSize); i < history.size(); i++) {
+                tail.insert(history.get(i));
+            }
+            return tail;
+        });
+    }
+
+    /**
+     * 追加新保存的记录；会话未缓存时忽略，等首次读取时再从数据库加载
+     */
+    public void append(Integer sid, RecordVO record) {
+        // 通过compute修改，让缓存按新的内容长度重新计算权重
+        tails.asMap().computeIfPresent(sid, (id, tail) -> {
+            tail.insert(record);
+            return tail;
+        });
+    }
+
+    public void invalidate(Integer sid) {
+        tails.invalidate(sid);
+    }
+
+    /**
+     * 单个会话的环形缓冲区，按顺序号升序保存
+     */
+    static final class Tail {
+        private final RecordVO[] ring;
+        private int head = 0;
+        private int size = 0;
+        // 缓冲区之前是否还有更早的记录；false表示缓冲区覆盖了会话的全部记录
+        private boolean truncated;
+        private int contentChars = 0;
+
+        Tail(int capacity, boolean complete) {
+            this.ring = new RecordVO[capacity];
+            this.truncated = !complete;
+        }
+
+        private RecordVO at(int index) {
+            return ring[(head + index) % ring.length];
+        }
+
+        private void set(int index, RecordVO record) {
+            ring[(head + index) % ring.length] = record;
+        }
+
+        /**
+         * 按顺序号插入；新记录通常就在末尾，只有并发发送时需要向前移动少量元素
+         */
+        synchronized void insert(RecordVO record) {
+            for (int i = 0; i < size; i++) {
+                if (at(i).getRid().equals(record.getRid())) {
+                    return;
+                }
+            }
+            if (size == ring.length) {
+                if (record.getSequence() < at(0).getSequence()) {
+                    return; // 比缓冲区中最早的记录还早，不属于最近N条
+                }
+                contentChars -= length(at(0));
+                set(0, null);
+                head = (head + 1) % ring.length;
+                size--;
+                truncated = true;
+            }
+            int position = size;
+            while (position > 0 && at(position - 1).getSequence() > record.getSequence()) {
+                set(position, at(position - 1));
+                position--;
+            }
+            set(position, record);
+            size++;
+            contentChars += length(record);
+        }
+
+        synchronized List<RecordVO> fullHistory() {
+            return truncated ? null : slice(0, size);
+        }
+
+        synchronized List<RecordVO> page(Integer beforeSequence, Integer afterSequence, int limit) {
+            if (afterSequence != null) {
+                // 需要缓冲区包含所有顺序号大于after的记录
+                if (truncated && (size == 0 || afterSequence < at(0).getSequence() - 1)) {
+                    return null;
+                }
+                int from = 0;
+                while (from < size && at(from).getSequence() <= afterSequence) {
+                    from++;
+                }
+                return slice(from, Math.min(size, from + limit));
+            }
+            int to = size;
+            if (beforeSequence != null) {
+                while (to > 0 && at(to - 1).getSequence() >= beforeSequence) {
+                    to--;
+                }
+            }
+            // 缓冲区中不足一页且更早的记录不在缓存中时，交给数据库
+            if (to < limit && truncated) {
+                return null;
+            }
+            return slice(Math.max(0, to - limit), to);
+        }
+
+        private List<RecordVO> slice(int from, int to) {
+            List<RecordVO> result = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                result.add(at(i));
+            }
+            return result;
+        }
+
+        synchronized int weight() {
+            return size * RECORD_OVERHEAD_BYTES + contentChars * 2;
+        }
+
+        private static int length(RecordVO record) {
+            return record.getContent() != null ? record.getContent().length() : 0;
+        }
+    }
+}
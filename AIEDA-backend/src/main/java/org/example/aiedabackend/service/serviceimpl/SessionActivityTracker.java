@@ -0,0 +1,150 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话活跃时间的延迟合并写入
+ * <p>
+ * 发送消息时只在内存中记录会话的最新活跃时间，由后台线程定期批量写回 sessions.update_time：
+ * 同一用户、同一秒（update_time为秒级DATETIME）内活跃的会话合并为一条
+ * {@code UPDATE sessions SET update_time=? WHERE uid=? AND sid IN (...)}，
+ * 条件中带上uid，只有会话属于该用户时才会更新，不再需要先查询实体校验归属。
+ * <p>
+ * 查询会话列表前先写回该用户尚未写入的活跃时间，保证列表排序正确；应用关闭时写回全部。
+ */
+@Slf4j
+@Component
+public class SessionActivityTracker {
+
+    private static final String UPDATE_SQL = "UPDATE sessions SET update_time = :time " +
+            "WHERE uid = :uid AND sid IN (:sids) AND update_time < :time";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    // 写回间隔（毫秒）
+    @Value("${session.activity.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    private record Activity(Integer uid, LocalDateTime time) {
+    }
+
+    // 尚未写回的活跃时间：会话ID -> 最新活跃时间
+    private final ConcurrentHashMap<Integer, Activity> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-activity-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush(null);
+            } catch (Exception e) {
+                log.error("写回会话活跃时间失败", e);
+            }
+        }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flush(null);
+            log.info("应用关闭，会话活跃时间已全部写回");
+        } catch (Exception e) {
+            log.error("应用关闭时写回会话活跃时间失败，未写回的会话数: {}", pending.size(), e);
+        }
+    }
+
+    /**
+     * 记录会话的最新活跃时间
+     */
+    public void touch(Integer uid, Integer sid) {
+        Activity activity = new Activity(uid, LocalDateTime.now());
+        pending.merge(sid, activity, (old, latest) -> latest.time.isAfter(old.time) ? latest : old);
+    }
+
+    /**
+     * 丢弃会话尚未写回的活跃时间（会话删除时调用）
+     */
+    public void forget(Integer sid) {
+        pending.remove(sid);
+    }
+
+    /**
+     * 写回指定用户尚未写入的活跃时间，查询会话列表前调用
+     */
+    public void flushUser(Integer uid) {
+        flush(uid);
+    }
+
+    /**
+     * 写回尚未写入的活跃时间
+     * @param uid 为null时写回全部用户
+     */
+    private void flush(Integer uid) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // 按 (uid, 秒) 分组，每组一条UPDATE
+        Map<Activity, List<Integer>> groups = new HashMap<>();
+        List<Map.Entry<Integer, Activity>> taken = new ArrayList<>();
+        for (Map.Entry<Integer, Activity> entry : pending.entrySet()) {
+            Activity activity = entry.getValue();
+            if (uid != null && !Objects.equals(uid, activity.uid)) {
+                continue;
+            }
+            // 只移除读到的这一次活跃时间，期间的新活跃留到下一次写回
+            if (pending.remove(entry.getKey(), activity)) {
+                taken.add(Map.entry(entry.getKey(), activity));
+                Activity group = new Activity(activity.uid, activity.time.truncatedTo(ChronoUnit.SECONDS));
+                groups.computeIfAbsent(group, key -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        if (groups.isEmpty()) {
+            return;
+        }
+
+        try {
+            int updated = 0;
+            for (Map.Entry<Activity, List<Integer>> group : groups.entrySet()) {
+                MapSqlParameterSource params = new MapSqlParameterSource()
+                        .addValue("time", group.getKey().time)
+                        .addValue("uid", group.getKey().uid)
+                        .addValue("sids", group.getValue());
+                updated += jdbcTemplate.update(UPDATE_SQL, params);
+            }
+            log.debug("写回会话活跃时间 - 会话数: {}, 语句数: {}, 更新行数: {}", taken.size(), groups.size(), updated);
+        } catch (RuntimeException e) {
+            // 写回失败时放回，保留更新的活跃时间
+            for (Map.Entry<Integer, Activity> entry : taken) {
+                pending.merge(entry.getKey(), entry.getValue(),
+                        (current, failed) -> current.time.isAfter(failed.time) ? current : failed);
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.aiedabackend.util;
+
+/**
+ * HTTP Range 请求头中的单个字节区间（闭区间）
+ * <p>
+ * 只支持单个区间（bytes=a-b、bytes=a-、bytes=-n），多个区间或格式不正确时按未指定Range处理，
+ * 返回完整内容，符合 RFC 9110 对无法处理的Range的要求。
+ */
+public record ByteRange(long start, long end) {
+
+    // 区间超出内容长度，应返回416
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    /**
+     * 解析Range请求头
+     * @param header Range请求头，可以为null
+     * @param length 完整内容的字节数
+     * @return 可满足的区间；不可满足时返回 {@link #UNSATISFIABLE}；应忽略Range时返回null
+     */
+    public static ByteRange parse(String header, long length) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // 最后n个字节
+                if (last.isEmpty()) {
+                    return null;
+                }
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return suffix == 0 ? UNSATISFIABLE : null;
+                }
+                if (length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(Math.max(0, length - suffix), length - 1);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            return new ByteRange(start, Math.min(end, length - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * Content-Range响应头的值
+     */
+    public String contentRange(long totalLength) {
+        return "bytes " + start + "-" + end + "/" + totalLength;
+    }
+}
@@ -0,0 +1,162 @@
+package org.example.aiedabackend.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 对话记录内容的存储编码
+ * <p>
+ * 超过阈值的内容压缩后写入 records.content_data，content 列只保留前缀（用于预览查询），
+ * content_length 记录完整内容的字符数。content_data 首字节为格式标记，其后是压缩数据；
+ * content_data 为空的记录（包括压缩功能上线前的记录）仍按 content 列原文读取。
+ */
+@Component
+public class ContentCodec {
+
+    // 格式标记：zlib格式的deflate数据
+    public static final byte FORMAT_DEFLATE = 1;
+
+    /**
+     * 压缩后的内容
+     * @param prefix 写入content列的前缀
+     * @param data 写入content_data列的数据（含格式标记）
+     * @param length 完整内容的字符数
+     */
+    public record Encoded(String prefix, byte[] data, int length) {
+    }
+
+    @Value("${record.compression.enabled:false}")
+    private boolean enabled;
+
+    // 内容达到该字符数才压缩
+    @Value("${record.compression.threshold-chars:4096}")
+    private int thresholdChars;
+
+    // 压缩后content列保留的前缀字符数
+    @Value("${record.compression.prefix-chars:1024}")
+    private int prefixChars;
+
+    @Value("${record.compression.level:6}")
+    private int level;
+
+    /**
+     * 按配置编码内容，未开启压缩、内容未达到阈值或压缩无收益时返回null（按原文存储）
+     */
+    public Encoded encode(String content) {
+        if (!enabled || content == null || content.length() < thresholdChars) {
+            return null;
+        }
+        byte[] data = deflate(content, level);
+        // 压缩后的字节数不小于原文的UTF-8字节数时没有收益，按原文存储，省去读取时的解压
+        if (data.length >= utf8Length(content)) {
+            return null;
+        }
+        return new Encoded(prefix(content, prefixChars), data, content.length());
+    }
+
+    /**
+     * 内容的前maxChars个字符，不在代理对中间截断（截断后可能少一个字符）
+     */
+    public static String prefix(String content, int maxChars) {
+        if (content.length() <= maxChars) {
+            return content;
+        }
+        int end = maxChars;
+        if (end > 0 && Character.isHighSurrogate(content.charAt(end - 1)) && Character.isLowSurrogate(content.charAt(end))) {
+            end--;
+        }
+        return content.substring(0, end);
+    }
+
+    /**
+     * 按UTF-8编码后的字节数，不生成字节数组
+     */
+    static int utf8Length(String content) {
+        int bytes = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < content.length() && Character.isLowSurrogate(content.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                // 其余BMP字符（孤立的代理字符按3字节估算）
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 压缩内容，返回带格式标记的数据
+     */
+    public static byte[] deflate(String content, int level) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, content.length() / 4));
+        out.write(FORMAT_DEFLATE);
+        Deflater deflater = new Deflater(level);
+        try (Writer writer = new OutputStreamWriter(new DeflaterOutputStream(out, deflater, 8192), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 以流的方式读取压缩内容，边解压边解码，不生成完整的解压字节数组
+     */
+    public static Reader reader(byte[] data) {
+        return new InputStreamReader(open(data), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解压为字符串
+     * @param length 完整内容的字符数（未知时传null）
+     */
+    public static String decode(byte[] data, Integer length) {
+        StringBuilder builder = new StringBuilder(length != null ? length : data.length * 4);
+        char[] buffer = new char[8192];
+        try (Reader reader = reader(data)) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                builder.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    private static InputStream open(byte[] data) {
+        if (data.length == 0 || data[0] != FORMAT_DEFLATE) {
+            throw new IllegalArgumentException("未知的内容编码格式: " + (data.length == 0 ? "空" : data[0]));
+        }
+        return new InflaterInputStream(new ByteArrayInputStream(data, 1, data.length - 1), new Inflater(), 8192) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inf.end();
+            }
+        };
+    }
+}
@@ -1,34 +1,159 @@
 package org.example.aiedabackend.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret:defaultSecret}")
+    /**
+     * 验证通过的token中的用户信息
+     * @param expiresAt 过期时间（毫秒时间戳）
+     */
+    public record TokenClaims(Integer userId, String username, long expiresAt) {
+    }
+
+    // HS512 签名密钥，必须配置且 UTF-8 编码后至少 64 字节
+    @Value("${jwt.secret:}")
     private String secret;
 
     @Value("${jwt.expiration:86400000}")
     private Long expiration; // 默认24小时
 
-    private SecretKey getSigningKey() {
-        // 注意：HS512 算法要求密钥长度至少 512 位（64 字节），否则会报错
-        // 若你的密钥较短，需先更新为长密钥（如随机生成 64 位字符串）
-        byte[] keyBytes = secret.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+    // 验证结果缓存的最大条目数，0表示不缓存
+    @Value("${jwt.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    // 验证结果最长缓存时间（秒），不超过token本身的过期时间
+    @Value("${jwt.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+    // token摘要 -> 验证结果
+    private Cache<String, TokenClaims> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secretBytes(secret));
+        // 解析器不可变且线程安全，构建一次复用
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        if (cacheMaxSize > 0) {
+            verifiedTokens = Caffeine.newBuilder()
+                    .maximumSize(cacheMaxSize)
+                    .expireAfter(new Expiry<String, TokenClaims>() {
+                        @Override
+                        public long expireAfterCreate(String key, TokenClaims claims, long currentTime) {
+                            long untilExpiry = claims.expiresAt() - System.currentTimeMillis();
+                            return TimeUnit.MILLISECONDS.toNanos(
+                                    Math.max(0, Math.min(untilExpiry, TimeUnit.SECONDS.toMillis(cacheTtlSeconds))));
+                        }
+
+                        @Override
+                        public long expireAfterUpdate(String key, TokenClaims claims, long currentTime, long currentDuration) {
+                            return currentDuration;
+                        }
+
+                        @Override
+                        public long expireAfterRead(String key, TokenClaims claims, long currentTime, long currentDuration) {
+                            return currentDuration;
+                        }
+                    })
+                    .recordStats()
+                    .build();
+            if (meterRegistry != null) {
+                CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified");
+            }
+        }
+    }
+
+    /**
+     * 校验配置的签名密钥：HS512 要求密钥至少 512 位（64 字节），不满足时启动失败并说明如何配置
+     */
+    static byte[] secretBytes(String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("未配置 jwt.secret：请设置至少 64 字节的随机字符串作为 HS512 签名密钥");
+        }
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 64) {
+            throw new IllegalStateException("jwt.secret 过短：HS512 签名密钥至少需要 64 字节，当前为 " + bytes.length + " 字节");
+        }
+        return bytes;
+    }
+
+    /**
+     * 验证token并取出用户信息，只解析和验签一次；token无效或已过期时返回null
+     * <p>
+     * 验证结果按token的SHA-256摘要缓存，缓存时间不超过token的过期时间，同一token的后续请求不再验签。
+     */
+    public TokenClaims verify(String token) {
+        if (verifiedTokens == null) {
+            return parse(token);
+        }
+        String digest = digest(token);
+        TokenClaims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            return cached;
+        }
+        TokenClaims claims = parse(token);
+        if (claims != null) {
+            verifiedTokens.put(digest, claims);
+        }
+        return claims;
+    }
+
+    private TokenClaims parse(String token) {
+        try {
+            // 过期的token在解析时抛出ExpiredJwtException
+            Claims claims = getClaimsFromToken(token);
+            Date expirationDate = claims.getExpiration();
+            if (expirationDate == null) {
+                return null;
+            }
+            Object userId = claims.get("userId");
+            return new TokenClaims(userId != null ? Integer.valueOf(userId.toString()) : null,
+                    claims.get("username", String.class), expirationDate.getTime());
+        } catch (Exception e) {
+            return null;
+        }
     }
 
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
     // 从token中获取用户ID
     public Integer getUserIdFromToken(String token) {
@@ -57,17 +182,13 @@ public class JwtUtil {
                 .setClaims(claims)
                 .setIssuedAt(createdDate)
                 .setExpiration(expirationDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .signWith(signingKey, SignatureAlgorithm.HS512)
                 .compact();
     }
 
-    // 从 token 中获取 Claims（更新解析方法）
+    // 从 token 中获取 Claims
     private Claims getClaimsFromToken(String token) {
-        return Jwts.parserBuilder() // 注意：新版本用 parserBuilder() 替代 parser()
-                .setSigningKey(getSigningKey()) // 设置签名密钥
-                .build() // 构建解析器
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     public String extractUsername(String token) {
@@ -101,4 +222,4 @@ public class JwtUtil {
         final Claims claims = getClaimsFromToken(token);
         return claimsResolver.apply(claims);
     }
-}
\ No newline at end of file
+}
@@ -48,4 +48,14 @@ public class RecordVO {
      * 消息创建时间
      */
     private LocalDateTime createTime;
+
+    /**
+     * 完整内容的字符数（仅预览模式返回）
+     */
+    private Integer contentLength;
+
+    /**
+     * content是否为截断后的预览，为true时需按rid单独获取完整内容（仅预览模式返回）
+     */
+    private Boolean truncated;
 }
@@ -1,4 +1,5 @@
 USE ai_eda;
+DROP TABLE IF EXISTS id_blocks;
 DROP TABLE IF EXISTS records;
 DROP TABLE IF EXISTS sessions;
 DROP TABLE IF EXISTS users;
@@ -24,7 +25,8 @@ CREATE TABLE sessions (
     title VARCHAR(50) NOT NULL COMMENT '标题',
     create_time DATETIME NOT NULL COMMENT '创建时间',
     update_time DATETIME NOT NULL COMMENT '更新时间',
-    FOREIGN KEY (uid) REFERENCES users(uid) ON DELETE CASCADE
+    FOREIGN KEY (uid) REFERENCES users(uid) ON DELETE CASCADE,
+    INDEX idx_sessions_uid_update_time (uid, update_time)
 );
 
 -- 对话记录表
@@ -34,12 +36,21 @@ CREATE TABLE records (
     sid INT NOT NULL COMMENT '会话ID',
     uid INT NOT NULL COMMENT '用户ID',
     direction BOOLEAN NOT NULL COMMENT '消息方向：true=用户消息，false=AI消息',
-    content LONGTEXT NOT NULL COMMENT '消息内容',
+    content LONGTEXT NOT NULL COMMENT '消息内容，压缩存储时只保留前缀',
+    content_data LONGBLOB NULL COMMENT '压缩后的完整内容（首字节为格式标记），未压缩时为NULL',
+    content_length INT NULL COMMENT '压缩存储时完整内容的字符数',
     sequence INT NOT NULL COMMENT '消息顺序',
     type INT NOT NULL COMMENT '消息类型：1=user，2=llm_generation，3=llm_toconfirmed，4=tool_execution_result',
     create_time DATETIME NOT NULL COMMENT '创建时间',
     FOREIGN KEY (sid) REFERENCES sessions(sid) ON DELETE CASCADE,
-    FOREIGN KEY (uid) REFERENCES users(uid) ON DELETE CASCADE
+    FOREIGN KEY (uid) REFERENCES users(uid) ON DELETE CASCADE,
+    UNIQUE KEY uk_records_sid_sequence (sid, sequence)
+);
+
+-- 应用侧分段分配的ID水位（对话记录ID由应用预分配后批量写入）
+CREATE TABLE id_blocks (
+    name VARCHAR(32) PRIMARY KEY COMMENT '分配器名称',
+    max_id BIGINT NOT NULL COMMENT '已分配出去的最大ID'
 );
 
 -- 文件管理表
@@ -95,4 +106,7 @@ INSERT INTO records (sid, uid, direction, content, sequence, type, create_time)
 (3, 1, true, '我们的AI加速芯片在布局布线后出现严重的信号完整性问题，尤其是高速数据总线，串扰噪声超过200mV，该如何解决？', 1, 1, '2024-01-17 10:16:00'),
 (3, 1, false, '高速数据总线的串扰问题主要源于耦合电容，建议从以下方面优化：\n\n1. 物理布线优化：\n   - 增加信号线间距（至少3倍线宽）\n   - 插入屏蔽线并接地\n   - 采用差分对布线\n\n2. 时序优化：\n   - 调整驱动强度\n   - 增加缓冲器隔离\n   - 优化信号跳变时间\n\n您的总线频率和数据宽度是多少？使用的是哪种拓扑结构？', 2, 2, '2024-01-17 10:18:00'),
 (3, 1, true, '总线频率800MHz，32位宽，目前是菊花链拓扑，使用的是0.18μm工艺', 3, 1, '2024-01-17 10:22:00'),
-(3, 1, false, '800MHz在0.18μm工艺下建议改为树状拓扑，并采用以下策略：\n1. 总线分组：将32位分成4组，每组8位，组间增加隔离\n2. 布线规则：\n   - 线宽增加到2μm，间距4μm\n   - 长度匹配控制在±5%以内\n   - 参考平面连续，避免分割\n3. 终端匹配：在总线两端添加50Ω匹配电阻\n\n这些措施可将串扰降低60%以上，需要我提供具体的布线规则设置吗？', 4, 2, '2024-01-17 10:25:00');
\ No newline at end of file
+(3, 1, false, '800MHz在0.18μm工艺下建议改为树状拓扑，并采用以下策略：\n1. 总线分组：将32位分成4组，每组8位，组间增加隔离\n2. 布线规则：\n   - 线宽增加到2μm，间距4μm\n   - 长度匹配控制在±5%以内\n   - 参考平面连续，避免分割\n3. 终端匹配：在总线两端添加50Ω匹配电阻\n\n这些措施可将串扰降低60%以上，需要我提供具体的布线规则设置吗？', 4, 2, '2024-01-17 10:25:00');
+
+-- 记录ID从已有数据之后开始分配
+INSERT INTO id_blocks (name, max_id) SELECT 'records', COALESCE(MAX(rid), 0) FROM records;
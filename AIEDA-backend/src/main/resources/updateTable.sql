@@ -0,0 +1,24 @@
+USE ai_eda;
+
+-- 对已有数据库的增量变更，按顺序执行
+
+-- 消息顺序号在会话内唯一（同时作为按会话分页查询记录的索引）
+-- 执行前先确认没有重复的顺序号：
+-- SELECT sid, sequence, COUNT(*) FROM records GROUP BY sid, sequence HAVING COUNT(*) > 1;
+ALTER TABLE records ADD UNIQUE KEY uk_records_sid_sequence (sid, sequence);
+
+-- 会话列表按更新时间倒序分页（InnoDB二级索引自带主键sid，游标条件无需回表）
+ALTER TABLE sessions ADD INDEX idx_sessions_uid_update_time (uid, update_time);
+
+-- 对话记录ID改为应用分段预分配，记录可批量写入
+CREATE TABLE IF NOT EXISTS id_blocks (
+    name VARCHAR(32) PRIMARY KEY COMMENT '分配器名称',
+    max_id BIGINT NOT NULL COMMENT '已分配出去的最大ID'
+);
+INSERT IGNORE INTO id_blocks (name, max_id) SELECT 'records', COALESCE(MAX(rid), 0) FROM records;
+
+-- 长内容压缩存储：content_data 保存压缩后的完整内容（首字节为格式标记），content 只保留前缀
+-- 已有记录按原文读取，需要压缩时设置 record.compression.migrate=true 启动一次
+ALTER TABLE records
+    ADD COLUMN content_data LONGBLOB NULL COMMENT '压缩后的完整内容，未压缩时为NULL' AFTER content,
+    ADD COLUMN content_length INT NULL COMMENT '压缩存储时完整内容的字符数' AFTER content_data;
@@ -0,0 +1,89 @@
+package org.example.aiedabackend.dao;
+
+import org.example.aiedabackend.po.Record;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+class RecordRepositoryTest {
+
+    private static final int SID = 1;
+
+    @Autowired
+    private RecordRepository recordRepository;
+
+    @BeforeEach
+    void setUp() {
+        int rid = 1;
+        // 会话1有顺序号1..5的记录；会话2有相同的顺序号，不应出现在会话1的结果中
+        for (int sequence = 1; sequence <= 5; sequence++) {
+            recordRepository.save(record(rid++, SID, sequence, "message-" + sequence));
+            recordRepository.save(record(rid++, 2, sequence, "other-" + sequence));
+        }
+    }
+
+    @Test
+    void pagesBackwardFromCursor() {
+        assertEquals(List.of(5, 4), sequences(recordRepository.findBySidAndSequenceLessThanOrderBySequenceDesc(
+                SID, Integer.MAX_VALUE, PageRequest.of(0, 2))));
+        // 游标本身不包含在结果中
+        assertEquals(List.of(3, 2), sequences(recordRepository.findBySidAndSequenceLessThanOrderBySequenceDesc(
+                SID, 4, PageRequest.of(0, 2))));
+        // 最后一页不足limit条
+        assertEquals(List.of(1), sequences(recordRepository.findBySidAndSequenceLessThanOrderBySequenceDesc(
+                SID, 2, PageRequest.of(0, 2))));
+        // 越过第一条后为空页
+        assertTrue(recordRepository.findBySidAndSequenceLessThanOrderBySequenceDesc(
+                SID, 1, PageRequest.of(0, 2)).isEmpty());
+    }
+
+    @Test
+    void pagesForwardFromCursor() {
+        assertEquals(List.of(1, 2), sequences(recordRepository.findBySidAndSequenceGreaterThanOrderBySequenceAsc(
+                SID, 0, PageRequest.of(0, 2))));
+        assertEquals(List.of(5), sequences(recordRepository.findBySidAndSequenceGreaterThanOrderBySequenceAsc(
+                SID, 4, PageRequest.of(0, 2))));
+        assertTrue(recordRepository.findBySidAndSequenceGreaterThanOrderBySequenceAsc(
+                SID, 5, PageRequest.of(0, 2)).isEmpty());
+        assertTrue(recordRepository.findBySidAndSequenceGreaterThanOrderBySequenceAsc(
+                99, 0, PageRequest.of(0, 2)).isEmpty());
+    }
+
+    @Test
+    void previewsCutContentAndKeepFullLength() {
+        List<RecordRepository.RecordPreview> before = recordRepository.findPreviewsBefore(SID, 3, 4, PageRequest.of(0, 10));
+        assertEquals(List.of(2, 1), before.stream().map(RecordRepository.RecordPreview::getSequence).toList());
+        assertEquals("mess", before.get(0).getContent());
+        assertEquals("message-2".length(), before.get(0).getContentLength());
+
+        List<RecordRepository.RecordPreview> after = recordRepository.findPreviewsAfter(SID, 3, 100, PageRequest.of(0, 10));
+        assertEquals(List.of(4, 5), after.stream().map(RecordRepository.RecordPreview::getSequence).toList());
+        assertEquals("message-4", after.get(0).getContent());
+        assertTrue(recordRepository.findPreviewsAfter(SID, 5, 4, PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void maxSequenceIsZeroForEmptySession() {
+        assertEquals(5, recordRepository.findMaxSequenceBySid(SID));
+        assertEquals(0, recordRepository.findMaxSequenceBySid(99));
+    }
+
+    private static Record record(int rid, int sid, int sequence, String content) {
+        Record record = new Record(sid, 1, sequence % 2 == 1, content, sequence, 0, LocalDateTime.now());
+        record.setRid(rid);
+        return record;
+    }
+
+    private static List<Integer> sequences(List<Record> records) {
+        return records.stream().map(Record::getSequence).toList();
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.aiedabackend.dao;
+
+import org.example.aiedabackend.po.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+class SessionRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    private final List<Integer> sids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // 用户1的会话：s0 最新；s1、s2、s3 更新时间相同，按sid倒序排列；s4 最早
+        sids.add(save(1, "s0", T0.plusMinutes(10)));
+        sids.add(save(1, "s1", T0.plusMinutes(5)));
+        sids.add(save(1, "s2", T0.plusMinutes(5)));
+        sids.add(save(1, "s3", T0.plusMinutes(5)));
+        sids.add(save(1, "s4", T0));
+        save(2, "other", T0.plusMinutes(20));
+    }
+
+    @Test
+    void firstPageOrdersByUpdateTimeThenSid() {
+        assertEquals(List.of("s0", "s3", "s2"), titles(sessionRepository.findSummariesByUid(1, PageRequest.of(0, 3))));
+        assertTrue(sessionRepository.findSummariesByUid(99, PageRequest.of(0, 3)).isEmpty());
+    }
+
+    @Test
+    void cursorSplitsTiesOnUpdateTime() {
+        // 游标停在更新时间相同的一组中间，下一页从同组sid更小的会话继续，不重复也不遗漏
+        List<SessionRepository.SessionSummary> page = sessionRepository.findSummariesByUidBefore(
+                1, T0.plusMinutes(5), sids.get(2), PageRequest.of(0, 2));
+        assertEquals(List.of("s1", "s4"), titles(page));
+    }
+
+    @Test
+    void walksAllPagesToEmpty() {
+        List<String> seen = new ArrayList<>();
+        List<SessionRepository.SessionSummary> page = sessionRepository.findSummariesByUid(1, PageRequest.of(0, 2));
+        int pages = 0;
+        while (!page.isEmpty()) {
+            pages++;
+            seen.addAll(titles(page));
+            SessionRepository.SessionSummary last = page.get(page.size() - 1);
+            page = sessionRepository.findSummariesByUidBefore(1, last.getUpdateTime(), last.getSid(), PageRequest.of(0, 2));
+        }
+        assertEquals(List.of("s0", "s3", "s2", "s1", "s4"), seen);
+        // 最后一页只有一条，之后为空页
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void cursorWithoutSidIncludesWholeTieGroup() {
+        // 只给出更新时间时，服务层用 Integer.MAX_VALUE 作为sid游标
+        assertEquals(List.of("s3", "s2", "s1", "s4"), titles(sessionRepository.findSummariesByUidBefore(
+                1, T0.plusMinutes(5), Integer.MAX_VALUE, PageRequest.of(0, 10))));
+        assertTrue(sessionRepository.findSummariesByUidBefore(1, T0, sids.get(4), PageRequest.of(0, 10)).isEmpty());
+    }
+
+    private int save(int uid, String title, LocalDateTime updateTime) {
+        return sessionRepository.save(new Session(uid, title, T0, updateTime)).getSid();
+    }
+
+    private static List<String> titles(List<SessionRepository.SessionSummary> summaries) {
+        return summaries.stream().map(SessionRepository.SessionSummary::getTitle).toList();
+    }
+}
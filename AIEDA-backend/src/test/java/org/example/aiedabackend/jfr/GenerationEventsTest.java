@@ -0,0 +1,127 @@
+package org.example.aiedabackend.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.example.aiedabackend.po.Record;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerationEventsTest {
+
+    @Test
+    void recordsLifecycleEventsWithTags() throws Exception {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(InputSubmitEvent.class);
+            recording.enable(UpstreamConnectEvent.class);
+            recording.enable(FirstTokenEvent.class);
+            recording.enable(DeltaFlushEvent.class);
+            recording.enable(RecordPersistEvent.class);
+            recording.enable(GenerationCompleteEvent.class);
+            recording.start();
+
+            GenerationEvents generation = new GenerationEvents(7, 3, "orchestrator");
+            generation.beginInputSubmit("question").finish(true);
+            UpstreamConnectEvent connect = generation.beginUpstreamConnect(true);
+            connect.finish(200);
+            connect.finish(-1);
+            generation.firstToken(2);
+            generation.firstToken(5);
+            generation.beginDeltaFlush(10, 0).commit();
+            generation.beginDeltaFlush(4, 1_000_000).commit();
+            Record record = new Record(7, 3, false, "reply", 2, 2, LocalDateTime.now());
+            record.setRid(42);
+            CompletableFuture<Record> saved = new CompletableFuture<>();
+            generation.persisting(record, saved);
+            saved.complete(record);
+            generation.complete("complete", 14);
+            generation.complete("error", 0);
+
+            recording.stop();
+            Path file = Files.createTempFile("generation-events", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        assertEquals(List.of("aieda.InputSubmit", "aieda.UpstreamConnect", "aieda.FirstToken",
+                        "aieda.DeltaFlush", "aieda.DeltaFlush", "aieda.RecordPersist", "aieda.GenerationComplete"),
+                events.stream().sorted((a, b) -> a.getEndTime().compareTo(b.getEndTime()))
+                        .map(event -> event.getEventType().getName()).toList());
+        for (RecordedEvent event : events) {
+            assertEquals(7, event.getInt("sid"));
+            assertEquals(3, event.getInt("uid"));
+            assertEquals("orchestrator", event.getString("agentType"));
+        }
+        RecordedEvent connect = find(events, "aieda.UpstreamConnect");
+        assertEquals(200, connect.getInt("statusCode"));
+        assertTrue(connect.getBoolean("reactive"));
+        assertEquals(2, find(events, "aieda.FirstToken").getInt("upstreamFrames"));
+        RecordedEvent persist = find(events, "aieda.RecordPersist");
+        assertEquals(42, persist.getInt("rid"));
+        assertTrue(persist.getBoolean("succeeded"));
+        RecordedEvent complete = find(events, "aieda.GenerationComplete");
+        assertEquals("complete", complete.getString("outcome"));
+        assertEquals(14, complete.getInt("replyChars"));
+    }
+
+    @Test
+    void skipsPerFrameEventsWhenNotRecording() {
+        GenerationEvents generation = new GenerationEvents(7, 3, "orchestrator");
+        assertNull(generation.beginDeltaFlush(10, 0));
+        Record record = new Record(7, 3, false, "reply", 2, 2, LocalDateTime.now());
+        CompletableFuture<Record> saved = new CompletableFuture<>();
+        generation.persisting(record, saved);
+        assertEquals(0, saved.getNumberOfDependents());
+    }
+
+    @Test
+    void managerStartsStopsAndDumps() throws Exception {
+        FlightRecordingManager manager = new FlightRecordingManager();
+        ReflectionTestUtils.setField(manager, "defaultSettings", "default");
+        ReflectionTestUtils.setField(manager, "maxAgeSeconds", 60L);
+        ReflectionTestUtils.setField(manager, "maxSizeBytes", 16L * 1024 * 1024);
+        try {
+            assertEquals("NONE", manager.status().get("state"));
+            assertFalse(manager.dump(new ByteArrayOutputStream()));
+
+            Map<String, Object> started = manager.start(null);
+            assertEquals("RUNNING", started.get("state"));
+            assertEquals(started.get("startTime"), manager.start(null).get("startTime"));
+
+            new GenerationEvents(1, 1, "orchestrator").complete("complete", 0);
+            assertEquals("STOPPED", manager.stop().get("state"));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertTrue(manager.dump(out));
+            Path file = Files.createTempFile("manager-dump", ".jfr");
+            try {
+                Files.write(file, out.toByteArray());
+                assertTrue(RecordingFile.readAllEvents(file).stream()
+                        .anyMatch(event -> event.getEventType().getName().equals("aieda.GenerationComplete")));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } finally {
+            manager.closeRecording();
+        }
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).findFirst().orElseThrow();
+    }
+}
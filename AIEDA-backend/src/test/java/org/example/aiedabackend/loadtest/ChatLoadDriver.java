@@ -0,0 +1,502 @@
+package org.example.aiedabackend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.aiedabackend.AiedaBackendApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 聊天接口的单机容量压测
+ * <p>
+ * 启动 {@link StubLlmServer} 作为大模型服务，并在同一进程内启动后端（{@code llm.service.base-url} 指向桩），
+ * 注册并登录一个压测用户，创建N个会话，每个会话并发地通过 {@code POST /api/chats/messages/{sid}/stream}
+ * 依次发送若干条消息并读取SSE回复。结束后输出吞吐、首字延迟（TTFT）和相邻增量帧间隔的p50/p99。
+ * <p>
+ * mode=files 时改为压测文件接口：每个会话重复 messages 轮“上传 → 若干次完整下载和区间下载 → 预览 → 列表 → 删除”，
+ * 按操作输出p50/p99，并对比桩实际写出的字节数与客户端收到的字节数，用来观察后端截取区间时多读了多少上游内容。
+ * <p>
+ * 参数均为 key=value 形式，以 {@code --} 开头的参数原样传给后端（Spring配置）：
+ * <pre>
+ * mvn -B -Ploadtest test-compile exec:exec@load -Dload.args="sessions=200 messages=3 tokens=100 tokensPerSecond=50"
+ * </pre>
+ * <ul>
+ *     <li>压测：sessions（并发会话数，默认100）、messages（每个会话发送的消息数，默认3）、thinkMs（同一会话两条消息的间隔，默认200）、
+ *     backend（已运行后端的地址，给出时不在进程内启动后端，该后端的 llm.service.base-url 需指向 stubPort）</li>
+ *     <li>文件：mode（chat 或 files，默认chat）、fileBytes（上传文件的字节数，默认262144）、
+ *     downloads（每个文件完整下载和区间下载的次数，默认3）、rangeBytes（区间下载的字节数，默认1024）；
+ *     配合 honorRange=false 让桩忽略Range，由后端截取区间</li>
+ *     <li>大模型桩：见 {@link StubLlmServer.Options}，另有 stubPort（默认随机）</li>
+ * </ul>
+ * 进程内启动后端时默认使用H2内存数据库（MySQL兼容模式），可用 --spring.datasource.url 等参数改为真实数据库。
+ */
+public class ChatLoadDriver {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 一次生成的结果，时间均为纳秒
+     */
+    private record Generation(boolean completed, String failure, long ttft, long[] gaps, int frames, int chars) {
+    }
+
+    /**
+     * 一次文件接口调用的结果
+     * @param bytes 客户端收到的文件内容字节数（下载类操作）
+     */
+    private record FileOp(String op, long nanos, String failure, long bytes) {
+    }
+
+    /**
+     * 每个会话线程执行的压测任务
+     */
+    private interface SessionTask {
+        void run(int sid) throws Exception;
+    }
+
+    private static final List<String> FILE_OPS = List.of("upload", "download", "range", "preview", "list", "delete");
+
+    public static void main(String[] args) throws Exception {
+        LoadArgs loadArgs = new LoadArgs(args);
+        int sessions = loadArgs.getInt("sessions", 100);
+        int messages = loadArgs.getInt("messages", 3);
+        long thinkMs = loadArgs.getLong("thinkMs", 200);
+        StubLlmServer.Options stubOptions = StubLlmServer.Options.from(loadArgs.options());
+
+        try (StubLlmServer stub = StubLlmServer.start(stubOptions, loadArgs.getInt("stubPort", 0))) {
+            ConfigurableApplicationContext app = null;
+            String backend = loadArgs.get("backend");
+            if (backend == null) {
+                app = startBackend(stub.baseUrl(), loadArgs.springArgs());
+                backend = "http://127.0.0.1:" + ((WebServerApplicationContext) app).getWebServer().getPort();
+            }
+            try {
+                System.out.printf("backend=%s stub=%s%n%s%n", backend, stub.baseUrl(), stubOptions);
+                System.out.printf("sessions=%d messages=%d thinkMs=%d%n", sessions, messages, thinkMs);
+                ChatLoadDriver driver = new ChatLoadDriver(backend);
+                if ("files".equals(loadArgs.get("mode", "chat"))) {
+                    driver.runFiles(sessions, messages, loadArgs.getInt("fileBytes", 256 * 1024),
+                            loadArgs.getInt("downloads", 3), loadArgs.getInt("rangeBytes", 1024), stub);
+                } else {
+                    driver.run(sessions, messages, thinkMs, stub);
+                }
+            } finally {
+                if (app != null) {
+                    app.close();
+                }
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startBackend(String stubUrl, List<String> springArgs) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.profiles.active", "dev");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.jpa.database-platform", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("server.port", "0");
+        properties.put("management.server.port", "0");
+        properties.put("logging.level.org.example.aiedabackend", "WARN");
+        // 压测时使用随机密钥，不使用配置文件中的示例密钥
+        properties.put("jwt.secret", UUID.randomUUID() + "-" + UUID.randomUUID());
+        // 没有写在配置文件中的模型参数，桩不使用，只需能启动
+        properties.put("llm.openai.api-key", "stub");
+        properties.put("llm.openai.base-url", stubUrl);
+        properties.put("llm.openai.model", "stub");
+        properties.put("llm.execution.model", "stub");
+        properties.put("llm.temperature", "0.7");
+        properties.put("llm.max-tokens", "2048");
+        // 命令行给出的配置覆盖上面的默认值，桩地址总是使用本次启动的桩
+        for (String arg : springArgs) {
+            int eq = arg.indexOf('=');
+            properties.put(eq > 0 ? arg.substring(2, eq) : arg.substring(2), eq > 0 ? arg.substring(eq + 1) : "");
+        }
+        properties.put("llm.service.base-url", stubUrl);
+        // devtools的重启类加载器会在另一个线程中重新启动应用，压测时关闭
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        return new SpringApplicationBuilder(AiedaBackendApplication.class)
+                .run(properties.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue()).toArray(String[]::new));
+    }
+
+    private final String backend;
+    private final HttpClient client;
+    private String token;
+    private int uid;
+
+    private ChatLoadDriver(String backend) {
+        this.backend = backend;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    private void run(int sessions, int messages, long thinkMs, StubLlmServer stub) throws Exception {
+        List<Integer> sids = loginAndCreateSessions(sessions);
+        ConcurrentLinkedQueue<Generation> results = new ConcurrentLinkedQueue<>();
+        long elapsed = forEachSession(sids, sid -> {
+            for (int m = 0; m < messages; m++) {
+                if (m > 0 && thinkMs > 0) {
+                    Thread.sleep(thinkMs);
+                }
+                results.add(generate(sid, "压测消息 " + m));
+            }
+        });
+        report(new ArrayList<>(results), elapsed, stub);
+    }
+
+    private void runFiles(int sessions, int rounds, int fileBytes, int downloads, int rangeBytes, StubLlmServer stub)
+            throws Exception {
+        List<Integer> sids = loginAndCreateSessions(sessions);
+        byte[] content = fileContent(fileBytes);
+        ConcurrentLinkedQueue<FileOp> results = new ConcurrentLinkedQueue<>();
+        long elapsed = forEachSession(sids, sid -> {
+            for (int round = 0; round < rounds; round++) {
+                fileRound(sid, "load-" + sid + "-" + round + ".v", content, downloads, rangeBytes, results);
+            }
+        });
+        reportFiles(new ArrayList<>(results), elapsed, stub);
+    }
+
+    private List<Integer> loginAndCreateSessions(int sessions) throws IOException, InterruptedException {
+        login();
+        List<Integer> sids = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            sids.add(createSession("load-" + i));
+        }
+        return sids;
+    }
+
+    /**
+     * 每个会话一个线程并发执行任务，返回总耗时（纳秒）
+     */
+    private static long forEachSession(List<Integer> sids, SessionTask task) throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(sids.size(), r -> {
+            Thread thread = new Thread(r, "load-session-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CountDownLatch done = new CountDownLatch(sids.size());
+        long start = System.nanoTime();
+        for (Integer sid : sids) {
+            executor.execute(() -> {
+                try {
+                    task.run(sid);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    System.err.println("会话 " + sid + " 压测中断: " + e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdownNow();
+        return elapsed;
+    }
+
+    /**
+     * 一轮文件操作：上传、完整下载和区间下载、预览、列表、删除
+     */
+    private void fileRound(int sid, String name, byte[] content, int downloads, int rangeBytes,
+                           ConcurrentLinkedQueue<FileOp> results) throws InterruptedException {
+        long start = System.nanoTime();
+        String fid;
+        try {
+            JsonNode uploaded = uploadFile(sid, name, content);
+            fid = uploaded.path("data").path("fileId").asText(null);
+            if (fid == null) {
+                results.add(new FileOp("upload", System.nanoTime() - start, "upload: " + uploaded.path("msg").asText(), 0));
+                return;
+            }
+            results.add(new FileOp("upload", System.nanoTime() - start, null, 0));
+        } catch (IOException e) {
+            results.add(new FileOp("upload", System.nanoTime() - start, "upload: " + e.getClass().getSimpleName(), 0));
+            return;
+        }
+
+        for (int i = 0; i < downloads; i++) {
+            results.add(download("download", fid, null, 200, content.length));
+            int from = ThreadLocalRandom.current().nextInt(Math.max(1, content.length - rangeBytes));
+            int length = Math.min(rangeBytes, content.length - from);
+            results.add(download("range", fid, "bytes=" + from + "-" + (from + length - 1), 206, length));
+        }
+        results.add(call("preview", authorized("/api/files/preview-legacy/" + fid).GET().build()));
+        results.add(call("list", authorized("/api/files/structure?uid=" + uid + "&sid=" + sid).GET().build()));
+        results.add(call("delete", authorized("/api/files/" + fid).DELETE().build()));
+    }
+
+    private JsonNode uploadFile(int sid, String name, byte[] content) throws IOException, InterruptedException {
+        String boundary = "load-" + UUID.randomUUID();
+        StringBuilder head = new StringBuilder();
+        head.append("--").append(boundary).append("\r\nContent-Disposition: form-data; name=\"uid\"\r\n\r\n")
+                .append(uid).append("\r\n");
+        head.append("--").append(boundary).append("\r\nContent-Disposition: form-data; name=\"sid\"\r\n\r\n")
+                .append(sid).append("\r\n");
+        head.append("--").append(boundary).append("\r\nContent-Disposition: form-data; name=\"file\"; filename=\"")
+                .append(name).append("\"\r\nContent-Type: application/octet-stream\r\n\r\n");
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        HttpRequest request = authorized("/api/files/upload")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(
+                        head.toString().getBytes(StandardCharsets.UTF_8), content, tail)))
+                .build();
+        return send(request);
+    }
+
+    private FileOp download(String op, String fid, String range, int expectedStatus, long expectedBytes)
+            throws InterruptedException {
+        HttpRequest.Builder builder = authorized("/api/files/download/" + fid).GET();
+        if (range != null) {
+            builder.header("Range", range);
+        }
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+            long elapsed = System.nanoTime() - start;
+            int bytes = response.body().length;
+            if (response.statusCode() != expectedStatus) {
+                return new FileOp(op, elapsed, op + ": HTTP " + response.statusCode(), bytes);
+            }
+            if (bytes != expectedBytes) {
+                return new FileOp(op, elapsed, op + ": 收到 " + bytes + " 字节，应为 " + expectedBytes, bytes);
+            }
+            return new FileOp(op, elapsed, null, bytes);
+        } catch (IOException e) {
+            return new FileOp(op, System.nanoTime() - start, op + ": " + e.getClass().getSimpleName(), 0);
+        }
+    }
+
+    /**
+     * 调用返回 Response 包装的接口，code为200视为成功
+     */
+    private FileOp call(String op, HttpRequest request) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            JsonNode body = send(request);
+            long elapsed = System.nanoTime() - start;
+            String code = body.path("code").asText();
+            return new FileOp(op, elapsed, "200".equals(code) ? null : op + ": code " + code, 0);
+        } catch (IOException e) {
+            return new FileOp(op, System.nanoTime() - start, op + ": " + e.getClass().getSimpleName(), 0);
+        }
+    }
+
+    /**
+     * 生成指定字节数的文本文件内容（ASCII，预览时不会截断多字节字符）
+     */
+    private static byte[] fileContent(int bytes) {
+        byte[] line = "always @(posedge clk) begin q <= d; end\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] content = new byte[bytes];
+        for (int i = 0; i < bytes; i++) {
+            content[i] = line[i % line.length];
+        }
+        return content;
+    }
+
+    private static void reportFiles(List<FileOp> results, long elapsedNanos, StubLlmServer stub) {
+        double seconds = elapsedNanos / 1e9;
+        long succeeded = results.stream().filter(op -> op.failure == null).count();
+        long received = results.stream().mapToLong(FileOp::bytes).sum();
+        Map<String, Long> failures = new LinkedHashMap<>();
+        for (FileOp op : results) {
+            if (op.failure != null) {
+                failures.merge(op.failure, 1L, Long::sum);
+            }
+        }
+
+        System.out.printf("%n文件操作: %d 成功, %d 失败, 耗时 %.1fs, %.1f 次/s%n",
+                succeeded, results.size() - succeeded, seconds, succeeded / seconds);
+        System.out.printf("%-14s %10s %10s %10s %10s%n", "", "count", "p50(ms)", "p99(ms)", "max(ms)");
+        for (String name : FILE_OPS) {
+            printPercentiles(name, results.stream().filter(op -> op.op.equals(name) && op.failure == null)
+                    .mapToLong(FileOp::nanos).sorted().toArray());
+        }
+        failures.forEach((reason, count) -> System.out.printf("失败原因: %s x %d%n", reason, count));
+        System.out.printf("文件内容: 客户端收到 %.1f MB, 大模型桩写出 %.1f MB%n", received / 1e6, stub.fileBytesSent() / 1e6);
+        System.out.printf("大模型桩: 文件请求 %d, 剩余文件 %d%n", stub.fileRequests(), stub.storedFiles());
+    }
+
+    /**
+     * 发送一条消息并读完SSE回复
+     */
+    private Generation generate(int sid, String content) {
+        long sent = System.nanoTime();
+        long ttft = -1;
+        long last = 0;
+        long[] gaps = new long[64];
+        int gapCount = 0;
+        int frames = 0;
+        int chars = 0;
+        try {
+            Map<String, Object> body = Map.of("uid", uid, "content", content);
+            HttpRequest request = authorized("/api/chats/messages/" + sid + "/stream")
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "text/event-stream")
+                    .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(body)))
+                    .build();
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                return failed("HTTP " + response.statusCode(), ttft, gaps, gapCount, frames, chars);
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+                    String data = line.substring(line.charAt(5) == ' ' ? 6 : 5);
+                    if (data.startsWith("{\"type\":\"delta\"")) {
+                        long now = System.nanoTime();
+                        if (ttft < 0) {
+                            ttft = now - sent;
+                        } else {
+                            if (gapCount == gaps.length) {
+                                gaps = Arrays.copyOf(gaps, gapCount * 2);
+                            }
+                            gaps[gapCount++] = now - last;
+                        }
+                        last = now;
+                        frames++;
+                        chars += MAPPER.readTree(data).path("content").asText().length();
+                    } else if (data.startsWith("{\"type\":\"complete\"")) {
+                        return new Generation(true, null, ttft, Arrays.copyOf(gaps, gapCount), frames, chars);
+                    } else if (data.startsWith("{\"type\":\"error\"")) {
+                        return failed("error: " + MAPPER.readTree(data).path("message").asText(), ttft, gaps, gapCount, frames, chars);
+                    }
+                }
+            }
+            return failed("stream closed", ttft, gaps, gapCount, frames, chars);
+        } catch (IOException e) {
+            return failed(e.getClass().getSimpleName(), ttft, gaps, gapCount, frames, chars);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed("interrupted", ttft, gaps, gapCount, frames, chars);
+        }
+    }
+
+    private static Generation failed(String reason, long ttft, long[] gaps, int gapCount, int frames, int chars) {
+        return new Generation(false, reason, ttft, Arrays.copyOf(gaps, gapCount), frames, chars);
+    }
+
+    private static void report(List<Generation> results, long elapsedNanos, StubLlmServer stub) {
+        double seconds = elapsedNanos / 1e9;
+        long completed = results.stream().filter(Generation::completed).count();
+        long frames = results.stream().mapToLong(Generation::frames).sum();
+        long chars = results.stream().mapToLong(Generation::chars).sum();
+        long[] ttft = results.stream().filter(g -> g.ttft >= 0).mapToLong(Generation::ttft).sorted().toArray();
+        long[] gaps = results.stream().flatMapToLong(g -> Arrays.stream(g.gaps)).sorted().toArray();
+        Map<String, Long> failures = new LinkedHashMap<>();
+        for (Generation g : results) {
+            if (!g.completed) {
+                failures.merge(g.failure, 1L, Long::sum);
+            }
+        }
+
+        System.out.printf("%n生成: %d 完成, %d 失败, 耗时 %.1fs%n", completed, results.size() - completed, seconds);
+        System.out.printf("吞吐: %.1f 次生成/s, %.1f 增量帧/s, %.1f 字符/s%n",
+                completed / seconds, frames / seconds, chars / seconds);
+        System.out.printf("%-14s %10s %10s %10s %10s%n", "", "count", "p50(ms)", "p99(ms)", "max(ms)");
+        printPercentiles("TTFT", ttft);
+        printPercentiles("delta gap", gaps);
+        failures.forEach((reason, count) -> System.out.printf("失败原因: %s x %d%n", reason, count));
+        // 上游中途断开时后端按已收到的内容正常结束，只能通过回复长度发现
+        long truncated = results.stream()
+                .filter(g -> g.completed && g.chars < stub.options().replyChars()).count();
+        if (truncated > 0) {
+            System.out.printf("回复不完整（正常结束但短于 %d 字符）: %d%n", stub.options().replyChars(), truncated);
+        }
+        System.out.printf("大模型桩: 输入 %d, 事件流 %d, 注入失败 %d%n", stub.inputs(), stub.streams(), stub.injectedFailures());
+    }
+
+    private static void printPercentiles(String name, long[] sorted) {
+        if (sorted.length == 0) {
+            System.out.printf("%-14s %10d %10s %10s %10s%n", name, 0, "-", "-", "-");
+            return;
+        }
+        System.out.printf("%-14s %10d %10.1f %10.1f %10.1f%n", name, sorted.length,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, Math.max(0, (int) Math.ceil(sorted.length * p) - 1))];
+    }
+
+    /**
+     * 注册一个压测用户并登录，记录令牌和用户ID
+     */
+    private void login() throws IOException, InterruptedException {
+        String phone = "199" + String.format("%08d", ThreadLocalRandom.current().nextInt(100_000_000));
+        Map<String, Object> account = Map.of("username", "load-" + phone, "phone", phone, "password", "load-test");
+        JsonNode registered = post("/api/accounts", account);
+        if (!"200".equals(registered.path("code").asText())) {
+            throw new IllegalStateException("注册压测用户失败: " + registered);
+        }
+        JsonNode login = post("/api/accounts/login", Map.of("phone", phone, "password", "load-test"));
+        token = login.path("data").asText(null);
+        if (token == null) {
+            throw new IllegalStateException("登录失败: " + login);
+        }
+        JsonNode user = send(authorized("/api/accounts/" + phone).GET().build());
+        uid = user.path("data").path("uid").asInt();
+    }
+
+    private int createSession(String title) throws IOException, InterruptedException {
+        JsonNode session = post("/api/chats/sessions", Map.of("uid", uid, "title", title));
+        if (!session.path("data").has("sid")) {
+            throw new IllegalStateException("创建会话失败: " + session);
+        }
+        return session.path("data").path("sid").asInt();
+    }
+
+    private JsonNode post(String path, Object body) throws IOException, InterruptedException {
+        return send(authorized(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(body)))
+                .build());
+    }
+
+    private JsonNode send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        return MAPPER.readTree(response.body());
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(backend + path)).timeout(Duration.ofMinutes(5));
+        if (token != null) {
+            builder.header("token", token);
+        }
+        return builder;
+    }
+}
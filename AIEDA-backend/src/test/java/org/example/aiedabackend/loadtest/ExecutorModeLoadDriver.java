@@ -0,0 +1,167 @@
+package org.example.aiedabackend.loadtest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.aiedabackend.config.GenerationExecutorConfig;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 平台线程与虚拟线程执行模式的对比压测
+ * <p>
+ * 在进程内启动大模型服务桩（{@link StubLlmServer}），分别用 {@link GenerationExecutorConfig} 创建的两种生成执行器
+ * （有界队列的平台线程池、信号量限流的虚拟线程执行器）同时提交N个阻塞式流读取任务，输出吞吐、p50/p99延迟、
+ * 被拒绝的任务数以及平台线程和载体线程的峰值数量。虚拟线程模式需要在 Java 21+ 上运行。
+ * <pre>
+ * mvn -B -Ploadtest test-compile exec:exec@load-executor \
+ *     -Dload.args="sessions=2000 corePoolSize=8 maxPoolSize=32 queueCapacity=200 maxConcurrent=1000 latencyMs=50 tokens=20 tokenIntervalMs=20"
+ * </pre>
+ * 执行器参数与 {@code llm.generation.*} 配置同名，未给出时使用相同的默认值。
+ * 虚拟线程模式下可加 -Djdk.tracePinnedThreads=short 检查阻塞时是否固定了载体线程。
+ */
+public class ExecutorModeLoadDriver {
+
+    public static void main(String[] args) throws Exception {
+        LoadArgs loadArgs = new LoadArgs(args);
+        int sessions = loadArgs.getInt("sessions", 2000);
+        int latencyMs = loadArgs.getInt("latencyMs", 50);
+        int tokens = loadArgs.getInt("tokens", 20);
+        int tokenIntervalMs = loadArgs.getInt("tokenIntervalMs", 20);
+
+        StubLlmServer server = StubLlmServer.start(new StubLlmServer.Options(tokens, 2,
+                tokenIntervalMs > 0 ? 1000 / tokenIntervalMs : 0, 1, StubLlmServer.Format.BATCHED,
+                latencyMs, 0, 0, 0, 0, true), 0);
+        URI streamUri = URI.create(server.baseUrl() + "/api/v1/stream");
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        try {
+            System.out.printf("sessions=%d latencyMs=%d tokens=%d tokenIntervalMs=%d%n",
+                    sessions, latencyMs, tokens, tokenIntervalMs);
+            System.out.printf("%-10s %10s %10s %10s %10s %14s %14s%n",
+                    "mode", "req/s", "p50(ms)", "p99(ms)", "rejected", "peakPlatform", "peakCarrier");
+
+            run("platform", generationExecutor(loadArgs, false), client, streamUri, sessions);
+
+            if (Runtime.version().feature() >= 21) {
+                run("virtual", generationExecutor(loadArgs, true), client, streamUri, sessions);
+            } else {
+                System.out.printf("%-10s 当前JDK（%s）不支持虚拟线程，已跳过%n", "virtual", Runtime.version());
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * 按应用配置创建生成执行器，参数未给出时使用与 @Value 相同的默认值
+     */
+    private static Executor generationExecutor(LoadArgs args, boolean virtual) {
+        GenerationExecutorConfig config = new GenerationExecutorConfig();
+        ReflectionTestUtils.setField(config, "corePoolSize", args.getInt("corePoolSize", 8));
+        ReflectionTestUtils.setField(config, "maxPoolSize", args.getInt("maxPoolSize", 32));
+        ReflectionTestUtils.setField(config, "queueCapacity", args.getInt("queueCapacity", 200));
+        ReflectionTestUtils.setField(config, "keepAliveSeconds", args.getLong("keepAliveSeconds", 60));
+        ReflectionTestUtils.setField(config, "maxConcurrent", args.getInt("maxConcurrent", 1000));
+        ReflectionTestUtils.setField(config, "virtualThreadsEnabled", virtual);
+        return config.generationExecutor(new SimpleMeterRegistry());
+    }
+
+    private static void run(String mode, Executor executor, HttpClient client, URI streamUri, int sessions)
+            throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        AtomicInteger peakCarrier = new AtomicInteger();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakCarrier.accumulateAndGet(countCarrierThreads(), Math::max),
+                0, 10, TimeUnit.MILLISECONDS);
+
+        long[] latencies = new long[sessions];
+        int accepted = 0;
+        int rejected = 0;
+        CountDownLatch done = new CountDownLatch(sessions);
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            long submitted = System.nanoTime();
+            int index = accepted;
+            try {
+                executor.execute(() -> {
+                    try {
+                        readStream(client, streamUri);
+                    } catch (Exception e) {
+                        System.err.println(mode + " 请求失败: " + e.getMessage());
+                    } finally {
+                        latencies[index] = System.nanoTime() - submitted;
+                        done.countDown();
+                    }
+                });
+                accepted++;
+            } catch (RejectedExecutionException e) {
+                // 与应用一致：执行器已满时直接拒绝，调用方转换为SSE错误事件
+                rejected++;
+                done.countDown();
+            }
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        sampler.shutdownNow();
+        if (executor instanceof ExecutorService service) {
+            service.shutdown();
+        }
+
+        long[] sorted = Arrays.copyOf(latencies, accepted);
+        Arrays.sort(sorted);
+        System.out.printf("%-10s %10.1f %10s %10s %10d %14d %14d%n", mode,
+                accepted / (elapsed / 1e9),
+                millis(sorted, 0.50),
+                millis(sorted, 0.99),
+                rejected,
+                threads.getPeakThreadCount(),
+                peakCarrier.get());
+    }
+
+    private static String millis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return "-";
+        }
+        int index = Math.min(sorted.length - 1, Math.max(0, (int) Math.ceil(sorted.length * percentile) - 1));
+        return String.format("%.1f", sorted[index] / 1e6);
+    }
+
+    private static void readStream(HttpClient client, URI streamUri) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(streamUri).header("Accept", "text/event-stream").GET().build();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            while (reader.readLine() != null) {
+                // 只消费数据，模拟转发线程在流读取上的阻塞
+            }
+        }
+    }
+
+    private static int countCarrierThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("ForkJoinPool-") && thread.getName().contains("worker")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
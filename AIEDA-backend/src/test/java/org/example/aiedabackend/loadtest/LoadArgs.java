@@ -0,0 +1,53 @@
+package org.example.aiedabackend.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测程序的命令行参数：key=value 为压测参数，以 {@code --} 开头的原样交给Spring
+ */
+final class LoadArgs {
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final List<String> springArgs = new ArrayList<>();
+
+    LoadArgs(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                springArgs.add(arg);
+            } else if (arg.contains("=")) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                throw new IllegalArgumentException("参数应为 key=value 形式: " + arg);
+            }
+        }
+    }
+
+    Map<String, String> options() {
+        return options;
+    }
+
+    List<String> springArgs() {
+        return springArgs;
+    }
+
+    String get(String key) {
+        return options.get(key);
+    }
+
+    String get(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    int getInt(String key, int defaultValue) {
+        String value = options.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    long getLong(String key, long defaultValue) {
+        String value = options.get(key);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+}
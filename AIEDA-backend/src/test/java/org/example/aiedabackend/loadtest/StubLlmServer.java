@@ -0,0 +1,585 @@
+package org.example.aiedabackend.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.aiedabackend.relay.UpstreamEvent;
+import org.example.aiedabackend.util.ByteRange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内的大模型服务桩
+ * <p>
+ * 实现后端用到的提交输入（{@code POST /api/v1/user/input}）和事件流（{@code GET /api/v1/stream?session_id=}）两个接口：
+ * 每次连接事件流先发送连接确认，等待首字延迟后按设定速率逐个发送 {@code llm_tool.chunk}，最后发送 {@code agent.loop_end}。
+ * 事件帧可以是批量格式 {@code {"events":[...]}}，也可以是旧的 {@code {"type":"event",...}} 格式。
+ * 可按比例注入输入被拒绝、事件流返回503、事件流中途断开三种失败。
+ * <p>
+ * 文件接口（上传、下载、预览、列表、删除）把文件保存在内存中。下载支持单个字节区间、If-Range 和
+ * If-None-Match；honorRange=false 时忽略Range总是返回完整内容，用来压测后端在本地截取区间的路径。
+ * <p>
+ * 配合 {@link ChatLoadDriver} 在单机上压测，不依赖真实的大模型服务和网络。
+ */
+public class StubLlmServer implements AutoCloseable {
+
+    /**
+     * 事件帧格式
+     */
+    public enum Format {
+        /** {@code {"events":[{"event":...,"payload":{"delta":...}}]}} */
+        BATCHED,
+        /** {@code {"type":"event","data":{"data":{"batch":true,"events":[{"data":{...}}]}}}} */
+        LEGACY
+    }
+
+    /**
+     * 桩的行为参数
+     * @param tokens            每次回复的chunk个数
+     * @param chunkChars        每个chunk的字符数
+     * @param tokensPerSecond   每秒发送的chunk个数，0表示不限速
+     * @param eventsPerFrame    每个事件帧合并的chunk个数
+     * @param format            事件帧格式
+     * @param latencyMs         连接事件流后到第一个chunk的延迟
+     * @param inputLatencyMs    提交输入接口的响应延迟
+     * @param inputFailureRate  提交输入返回失败的比例
+     * @param streamFailureRate 事件流直接返回503的比例
+     * @param dropRate          事件流发送一半后断开（不发送 agent.loop_end）的比例
+     * @param honorRange        文件下载是否处理Range请求头，false时总是返回完整内容
+     */
+    public record Options(int tokens, int chunkChars, int tokensPerSecond, int eventsPerFrame, Format format,
+                          int latencyMs, int inputLatencyMs,
+                          double inputFailureRate, double streamFailureRate, double dropRate, boolean honorRange) {
+
+        public static Options defaults() {
+            return new Options(100, 4, 50, 1, Format.BATCHED, 200, 0, 0, 0, 0, true);
+        }
+
+        /**
+         * 从 key=value 参数读取，未给出的参数使用默认值
+         */
+        public static Options from(Map<String, String> args) {
+            Options d = defaults();
+            return new Options(
+                    Integer.parseInt(args.getOrDefault("tokens", String.valueOf(d.tokens))),
+                    Integer.parseInt(args.getOrDefault("chunkChars", String.valueOf(d.chunkChars))),
+                    Integer.parseInt(args.getOrDefault("tokensPerSecond", String.valueOf(d.tokensPerSecond))),
+                    Integer.parseInt(args.getOrDefault("eventsPerFrame", String.valueOf(d.eventsPerFrame))),
+                    Format.valueOf(args.getOrDefault("format", d.format.name()).toUpperCase()),
+                    Integer.parseInt(args.getOrDefault("latencyMs", String.valueOf(d.latencyMs))),
+                    Integer.parseInt(args.getOrDefault("inputLatencyMs", String.valueOf(d.inputLatencyMs))),
+                    Double.parseDouble(args.getOrDefault("inputFailureRate", String.valueOf(d.inputFailureRate))),
+                    Double.parseDouble(args.getOrDefault("streamFailureRate", String.valueOf(d.streamFailureRate))),
+                    Double.parseDouble(args.getOrDefault("dropRate", String.valueOf(d.dropRate))),
+                    Boolean.parseBoolean(args.getOrDefault("honorRange", String.valueOf(d.honorRange))));
+        }
+
+        public int replyChars() {
+            return tokens * chunkChars;
+        }
+    }
+
+    /** chunk内容取自这段文字（中英混合，覆盖多字节UTF-8），不含需要JSON转义的字符 */
+    private static final String TEXT = "The quick brown fox 跳过了懒狗，电路设计自动化负载测试 0123456789 ";
+
+    /**
+     * 上传到桩的文件
+     */
+    private record StoredFile(String fileId, String uid, String sid, String name, byte[] content) {
+
+        String etag() {
+            return "\"" + fileId + "-" + content.length + "\"";
+        }
+    }
+
+    /**
+     * multipart请求中的一个字段
+     */
+    private record Part(String filename, byte[] content) {
+
+        String text() {
+            return new String(content, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // 预览接口返回的内容字节数上限
+    private static final int PREVIEW_BYTES = 1024;
+
+    private final Options options;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong inputs = new AtomicLong();
+    private final AtomicLong streams = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong fileRequests = new AtomicLong();
+    private final AtomicLong fileBytesSent = new AtomicLong();
+    private final AtomicLong fileIds = new AtomicLong();
+    private final Map<String, StoredFile> files = new ConcurrentHashMap<>();
+
+    private StubLlmServer(Options options, int port) throws IOException {
+        this.options = options;
+        AtomicInteger counter = new AtomicInteger();
+        // 每个事件流占用一个线程按节奏写出，连接数即线程数
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "stub-llm-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 4096);
+        server.setExecutor(executor);
+        server.createContext("/api/v1/user/input", this::handleInput);
+        server.createContext("/api/v1/stream", this::handleStream);
+        server.createContext("/api/v1/user/upload", this::handleUpload);
+        server.createContext("/api/v1/user/download/", this::handleDownload);
+        server.createContext("/api/v1/user/preview/", this::handlePreview);
+        server.createContext("/api/v1/user/list/", this::handleList);
+        server.createContext("/api/v1/user/files/", this::handleDelete);
+    }
+
+    /**
+     * 在本机回环地址上启动
+     * @param port 端口，0表示随机分配
+     */
+    public static StubLlmServer start(Options options, int port) throws IOException {
+        StubLlmServer stub = new StubLlmServer(options, port);
+        stub.server.start();
+        return stub;
+    }
+
+    /**
+     * 供 {@code llm.service.base-url} 使用的地址
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public Options options() {
+        return options;
+    }
+
+    public long inputs() {
+        return inputs.get();
+    }
+
+    public long streams() {
+        return streams.get();
+    }
+
+    /**
+     * 已注入的失败次数（三种失败合计）
+     */
+    public long injectedFailures() {
+        return failures.get();
+    }
+
+    /**
+     * 文件接口收到的请求数
+     */
+    public long fileRequests() {
+        return fileRequests.get();
+    }
+
+    /**
+     * 下载接口实际写出的文件字节数（后端中途断开时只计已写出的部分）
+     */
+    public long fileBytesSent() {
+        return fileBytesSent.get();
+    }
+
+    /**
+     * 当前保存的文件数
+     */
+    public int storedFiles() {
+        return files.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleInput(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            body.readAllBytes();
+            inputs.incrementAndGet();
+            sleep(options.inputLatencyMs);
+            String response = inject(options.inputFailureRate)
+                    ? "{\"status\":\"error\",\"message\":\"injected failure\"}"
+                    : "{\"status\":\"success\",\"message\":\"accepted\"}";
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    private void handleStream(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            streams.incrementAndGet();
+            String sessionId = queryParam(exchange.getRequestURI().getRawQuery(), "session_id");
+            if (inject(options.streamFailureRate)) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            writeFrame(out, "{\"type\":\"connection\",\"message\":\"stub connected\"}");
+
+            int stopAfter = inject(options.dropRate) ? options.tokens / 2 : -1;
+            long intervalNanos = options.tokensPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / options.tokensPerSecond : 0;
+            long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.latencyMs);
+            int offset = ThreadLocalRandom.current().nextInt(TEXT.length());
+            StringBuilder frame = new StringBuilder(256);
+            int sent = 0;
+            while (sent < options.tokens) {
+                if (stopAfter >= 0 && sent >= stopAfter) {
+                    // 不发送结束事件直接断开，模拟上游异常中断
+                    return;
+                }
+                // 按绝对时间排期，避免逐次sleep累积误差
+                parkUntil(start + sent * intervalNanos);
+                int count = Math.min(Math.max(1, options.eventsPerFrame), options.tokens - sent);
+                beginFrame(frame);
+                for (int i = 0; i < count; i++) {
+                    appendEvent(frame, i, UpstreamEvent.EVENT_CHUNK, sessionId, chunk(offset + (sent + i) * options.chunkChars));
+                }
+                endFrame(frame);
+                writeFrame(out, frame);
+                sent += count;
+            }
+            beginFrame(frame);
+            appendEvent(frame, 0, UpstreamEvent.EVENT_LOOP_END, sessionId, null);
+            endFrame(frame);
+            writeFrame(out, frame);
+        } catch (IOException e) {
+            // 后端提前断开连接（例如前端取消），不影响桩继续服务
+        }
+    }
+
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            fileRequests.incrementAndGet();
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            Map<String, Part> parts = parseMultipart(exchange.getRequestHeaders().getFirst("Content-Type"), body.readAllBytes());
+            Part file = parts.get("file");
+            if (file == null || file.filename() == null || parts.get("user_id") == null || parts.get("session_id") == null) {
+                writeJson(exchange, 400, Map.of("status", "error", "message", "file, user_id and session_id are required"));
+                return;
+            }
+            String uid = parts.get("user_id").text();
+            String sid = parts.get("session_id").text();
+            StoredFile stored = new StoredFile("stub-" + fileIds.incrementAndGet(), uid, sid, file.filename(), file.content());
+            files.put(stored.fileId(), stored);
+
+            int dot = stored.name().lastIndexOf('.');
+            Map<String, Object> fileInfo = new LinkedHashMap<>();
+            fileInfo.put("file_id", stored.fileId());
+            fileInfo.put("original_name", stored.name());
+            fileInfo.put("saved_name", stored.fileId() + "_" + stored.name());
+            fileInfo.put("file_path", "app/workspace/" + uid + "/" + sid + "/uploads/" + stored.name());
+            fileInfo.put("file_size", stored.content().length);
+            fileInfo.put("file_type", dot >= 0 ? stored.name().substring(dot + 1) : "");
+            writeJson(exchange, 200, Map.of("status", "success", "file_info", fileInfo));
+        }
+    }
+
+    private void handleDownload(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            fileRequests.incrementAndGet();
+            StoredFile file = files.get(pathTail(exchange, "/api/v1/user/download/"));
+            if (file == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] content = file.content();
+            String etag = file.etag();
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+
+            ByteRange range = null;
+            if (options.honorRange) {
+                exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+                String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+                if (ifRange == null || ifRange.equals(etag)) {
+                    range = ByteRange.parse(exchange.getRequestHeaders().getFirst("Range"), content.length);
+                }
+            }
+            if (range == ByteRange.UNSATISFIABLE) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            if (range != null) {
+                exchange.getResponseHeaders().set("Content-Range", range.contentRange(content.length));
+                exchange.sendResponseHeaders(206, range.length());
+                writeContent(exchange.getResponseBody(), content, (int) range.start(), (int) range.length());
+            } else {
+                exchange.sendResponseHeaders(200, content.length > 0 ? content.length : -1);
+                writeContent(exchange.getResponseBody(), content, 0, content.length);
+            }
+        } catch (IOException e) {
+            // 后端截取区间或客户端断开后中止了连接
+        }
+    }
+
+    private void handlePreview(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            fileRequests.incrementAndGet();
+            StoredFile file = files.get(pathTail(exchange, "/api/v1/user/preview/"));
+            if (file == null) {
+                writeJson(exchange, 404, Map.of("status", "error", "message", "file not found"));
+                return;
+            }
+            byte[] content = file.content();
+            Map<String, Object> preview = new LinkedHashMap<>();
+            preview.put("status", "success");
+            preview.put("file_name", file.name());
+            preview.put("file_size", content.length);
+            preview.put("content_type", "text/plain");
+            preview.put("preview_content", new String(content, 0, Math.min(PREVIEW_BYTES, content.length), StandardCharsets.UTF_8));
+            preview.put("is_truncated", content.length > PREVIEW_BYTES);
+            writeJson(exchange, 200, preview);
+        }
+    }
+
+    private void handleList(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            fileRequests.incrementAndGet();
+            // /api/v1/user/list/{uid}/{sid}
+            String[] ids = pathTail(exchange, "/api/v1/user/list/").split("/");
+            Map<String, Object> uploads = new LinkedHashMap<>();
+            if (ids.length == 2) {
+                for (StoredFile file : files.values()) {
+                    if (file.uid().equals(ids[0]) && file.sid().equals(ids[1])) {
+                        Map<String, Object> entry = new HashMap<>();
+                        entry.put("file_id", file.fileId());
+                        entry.put("url", baseUrl() + "/api/v1/user/download/" + file.fileId());
+                        uploads.put(file.name(), entry);
+                    }
+                }
+            }
+            writeJson(exchange, 200, Map.of("status", "success", "file_structure", Map.of("uploads", uploads)));
+        }
+    }
+
+    private void handleDelete(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            fileRequests.incrementAndGet();
+            if (!"DELETE".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            boolean removed = files.remove(pathTail(exchange, "/api/v1/user/files/")) != null;
+            writeJson(exchange, removed ? 200 : 404, removed
+                    ? Map.of("status", "success")
+                    : Map.of("status", "error", "message", "file not found"));
+        }
+    }
+
+    /**
+     * 分块写出文件内容，边写边计数，后端中途断开时只计已写出的部分
+     */
+    private void writeContent(OutputStream out, byte[] content, int offset, int length) throws IOException {
+        int end = offset + length;
+        for (int position = offset; position < end; ) {
+            int count = Math.min(64 * 1024, end - position);
+            out.write(content, position, count);
+            fileBytesSent.addAndGet(count);
+            position += count;
+        }
+    }
+
+    private static void writeJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static String pathTail(HttpExchange exchange, String prefix) {
+        String path = exchange.getRequestURI().getPath();
+        return path.length() > prefix.length() ? path.substring(prefix.length()) : "";
+    }
+
+    /**
+     * 解析 multipart/form-data 请求体，字段名 -> 字段
+     */
+    private static Map<String, Part> parseMultipart(String contentType, byte[] body) {
+        Map<String, Part> parts = new HashMap<>();
+        int boundaryAt = contentType != null ? contentType.indexOf("boundary=") : -1;
+        if (boundaryAt < 0) {
+            return parts;
+        }
+        String boundary = contentType.substring(boundaryAt + "boundary=".length());
+        int semicolon = boundary.indexOf(';');
+        if (semicolon >= 0) {
+            boundary = boundary.substring(0, semicolon);
+        }
+        boundary = boundary.trim();
+        if (boundary.startsWith("\"") && boundary.endsWith("\"") && boundary.length() > 1) {
+            boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        byte[] delimiter = ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        byte[] headerEnd = "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+        int position = indexOf(body, delimiter, 0);
+        while (position >= 0) {
+            int start = position + delimiter.length;
+            // 结束分隔符 --boundary--
+            if (start + 1 < body.length && body[start] == '-' && body[start + 1] == '-') {
+                break;
+            }
+            int headersEnd = indexOf(body, headerEnd, start);
+            int next = indexOf(body, delimiter, start);
+            if (headersEnd < 0 || next < 0 || headersEnd > next) {
+                break;
+            }
+            String headers = new String(body, start, headersEnd - start, StandardCharsets.UTF_8);
+            // 内容到下一个分隔符前的CRLF为止
+            byte[] content = Arrays.copyOfRange(body, headersEnd + headerEnd.length, next - 2);
+            String name = dispositionParam(headers, "name");
+            if (name != null) {
+                parts.put(name, new Part(dispositionParam(headers, "filename"), content));
+            }
+            position = next;
+        }
+        return parts;
+    }
+
+    private static String dispositionParam(String headers, String param) {
+        for (String line : headers.split("\r\n")) {
+            if (!line.regionMatches(true, 0, "Content-Disposition:", 0, "Content-Disposition:".length())) {
+                continue;
+            }
+            for (String item : line.split(";")) {
+                String trimmed = item.trim();
+                if (trimmed.startsWith(param + "=")) {
+                    String value = trimmed.substring(param.length() + 1);
+                    return value.startsWith("\"") && value.endsWith("\"") && value.length() > 1
+                            ? value.substring(1, value.length() - 1) : value;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private void beginFrame(StringBuilder frame) {
+        frame.setLength(0);
+        frame.append(options.format == Format.BATCHED
+                ? "{\"events\":["
+                : "{\"type\":\"event\",\"data\":{\"data\":{\"batch\":true,\"events\":[");
+    }
+
+    private void appendEvent(StringBuilder frame, int index, String name, String sessionId, String delta) {
+        if (index > 0) {
+            frame.append(',');
+        }
+        if (options.format == Format.LEGACY) {
+            frame.append("{\"data\":");
+        }
+        frame.append("{\"event\":\"").append(name).append('"');
+        if (sessionId != null) {
+            frame.append(",\"session_id\":\"").append(sessionId).append('"');
+        }
+        if (delta != null) {
+            frame.append(",\"payload\":{\"delta\":\"").append(delta).append("\"}");
+        }
+        frame.append('}');
+        if (options.format == Format.LEGACY) {
+            frame.append('}');
+        }
+    }
+
+    private void endFrame(StringBuilder frame) {
+        frame.append(options.format == Format.BATCHED ? "]}" : "]}}}");
+    }
+
+    private String chunk(int from) {
+        StringBuilder chunk = new StringBuilder(options.chunkChars);
+        for (int i = 0; i < options.chunkChars; i++) {
+            chunk.append(TEXT.charAt((from + i) % TEXT.length()));
+        }
+        return chunk.toString();
+    }
+
+    private boolean inject(double rate) {
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            failures.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private static void writeFrame(OutputStream out, CharSequence data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void parkUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis > 0) {
+            parkUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    private static String queryParam(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return pair.substring(eq + 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,202 @@
+package org.example.aiedabackend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.aiedabackend.relay.SseFrameParser;
+import org.example.aiedabackend.relay.UpstreamEvent;
+import org.example.aiedabackend.relay.UpstreamFrameDecoder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StubLlmServerTest {
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    void streamsBothFormatsThroughTheRelayDecoder() throws Exception {
+        for (StubLlmServer.Format format : StubLlmServer.Format.values()) {
+            StubLlmServer.Options options = new StubLlmServer.Options(7, 3, 0, 3, format, 0, 0, 0, 0, 0, true);
+            try (StubLlmServer stub = StubLlmServer.start(options, 0)) {
+                assertEquals("{\"status\":\"success\",\"message\":\"accepted\"}", submitInput(stub));
+
+                List<UpstreamEvent> events = readStream(stub, "42");
+                assertEquals(UpstreamEvent.Kind.CONNECTION, events.get(0).kind(), format.name());
+                assertEquals(UpstreamEvent.Kind.LOOP_END, events.get(events.size() - 1).kind(), format.name());
+                StringBuilder reply = new StringBuilder();
+                for (UpstreamEvent event : events.subList(1, events.size() - 1)) {
+                    assertEquals(UpstreamEvent.Kind.CHUNK, event.kind());
+                    assertEquals("42", event.sessionId());
+                    reply.append(event.text());
+                }
+                assertEquals(options.replyChars(), reply.length(), format.name());
+                assertEquals(1, stub.inputs());
+                assertEquals(1, stub.streams());
+            }
+        }
+    }
+
+    @Test
+    void injectsFailures() throws Exception {
+        StubLlmServer.Options rejecting = new StubLlmServer.Options(4, 2, 0, 1, StubLlmServer.Format.BATCHED, 0, 0, 1, 1, 0, true);
+        try (StubLlmServer stub = StubLlmServer.start(rejecting, 0)) {
+            assertTrue(submitInput(stub).contains("\"status\":\"error\""));
+            HttpResponse<Void> response = client.send(
+                    HttpRequest.newBuilder(URI.create(stub.baseUrl() + "/api/v1/stream?session_id=1")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            assertEquals(503, response.statusCode());
+            assertEquals(2, stub.injectedFailures());
+        }
+
+        StubLlmServer.Options dropping = new StubLlmServer.Options(10, 2, 0, 1, StubLlmServer.Format.BATCHED, 0, 0, 0, 0, 1, true);
+        try (StubLlmServer stub = StubLlmServer.start(dropping, 0)) {
+            List<UpstreamEvent> events = readStream(stub, "1");
+            // 连接确认加一半的chunk，没有结束事件
+            assertEquals(1 + 5, events.size());
+            assertTrue(events.stream().noneMatch(event -> event.kind() == UpstreamEvent.Kind.LOOP_END));
+        }
+    }
+
+    @Test
+    void pacesChunksAtTheConfiguredRate() throws Exception {
+        StubLlmServer.Options options = new StubLlmServer.Options(11, 1, 100, 1, StubLlmServer.Format.BATCHED, 50, 0, 0, 0, 0, true);
+        try (StubLlmServer stub = StubLlmServer.start(options, 0)) {
+            long start = System.nanoTime();
+            readStream(stub, "1");
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            // 首字延迟50ms，之后10个间隔各10ms
+            assertTrue(elapsedMs >= 150, "elapsed " + elapsedMs + "ms");
+        }
+    }
+
+    @Test
+    void servesUploadedFilesWithRanges() throws Exception {
+        byte[] content = new byte[3000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        try (StubLlmServer stub = StubLlmServer.start(StubLlmServer.Options.defaults(), 0)) {
+            JsonNode info = upload(stub, "top.v", content).path("file_info");
+            String fid = info.path("file_id").asText();
+            assertEquals("top.v", info.path("original_name").asText());
+            assertEquals(3000, info.path("file_size").asInt());
+            assertEquals("v", info.path("file_type").asText());
+
+            HttpResponse<byte[]> full = download(stub, fid, null, null);
+            assertEquals(200, full.statusCode());
+            assertArrayEquals(content, full.body());
+            String etag = full.headers().firstValue("ETag").orElseThrow();
+
+            HttpResponse<byte[]> partial = download(stub, fid, "Range", "bytes=100-199");
+            assertEquals(206, partial.statusCode());
+            assertEquals("bytes 100-199/3000", partial.headers().firstValue("Content-Range").orElseThrow());
+            assertArrayEquals(Arrays.copyOfRange(content, 100, 200), partial.body());
+
+            assertEquals(416, download(stub, fid, "Range", "bytes=5000-").statusCode());
+            assertEquals(304, download(stub, fid, "If-None-Match", etag).statusCode());
+
+            JsonNode preview = getJson(stub, "/api/v1/user/preview/" + fid);
+            assertEquals(1024, preview.path("preview_content").asText().length());
+            assertTrue(preview.path("is_truncated").asBoolean());
+
+            JsonNode uploads = getJson(stub, "/api/v1/user/list/7/42").path("file_structure").path("uploads");
+            assertEquals(fid, uploads.path("top.v").path("file_id").asText());
+            assertEquals(0, getJson(stub, "/api/v1/user/list/7/43").path("file_structure").path("uploads").size());
+
+            HttpRequest delete = HttpRequest.newBuilder(URI.create(stub.baseUrl() + "/api/v1/user/files/" + fid)).DELETE().build();
+            assertEquals(200, client.send(delete, HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(404, download(stub, fid, null, null).statusCode());
+            assertEquals(0, stub.storedFiles());
+            // 完整下载一次加100字节的区间
+            assertEquals(3100, stub.fileBytesSent());
+        }
+
+        StubLlmServer.Options ignoringRange = new StubLlmServer.Options(7, 3, 0, 3, StubLlmServer.Format.BATCHED, 0, 0, 0, 0, 0, false);
+        try (StubLlmServer stub = StubLlmServer.start(ignoringRange, 0)) {
+            String fid = upload(stub, "top.v", content).path("file_info").path("file_id").asText();
+            HttpResponse<byte[]> response = download(stub, fid, "Range", "bytes=100-199");
+            // 忽略Range时返回完整内容，由调用方自行截取
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Accept-Ranges").isEmpty());
+            assertArrayEquals(content, response.body());
+        }
+    }
+
+    private JsonNode upload(StubLlmServer stub, String name, byte[] content) throws IOException, InterruptedException {
+        String boundary = "stub-test";
+        String head = "--" + boundary + "\r\nContent-Disposition: form-data; name=\"user_id\"\r\n\r\n7\r\n"
+                + "--" + boundary + "\r\nContent-Disposition: form-data; name=\"session_id\"\r\n\r\n42\r\n"
+                + "--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + name + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(stub.baseUrl() + "/api/v1/user/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(
+                        head.getBytes(StandardCharsets.UTF_8), content, tail.getBytes(StandardCharsets.UTF_8))))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return new ObjectMapper().readTree(response.body());
+    }
+
+    private HttpResponse<byte[]> download(StubLlmServer stub, String fid, String header, String value)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(stub.baseUrl() + "/api/v1/user/download/" + fid));
+        if (header != null) {
+            builder.header(header, value);
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private JsonNode getJson(StubLlmServer stub, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(stub.baseUrl() + path)).build();
+        return new ObjectMapper().readTree(client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    private String submitInput(StubLlmServer stub) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(stub.baseUrl() + "/api/v1/user/input"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"session_id\":\"1\",\"content\":\"hi\"}"))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private List<UpstreamEvent> readStream(StubLlmServer stub, String sessionId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(stub.baseUrl() + "/api/v1/stream?session_id=" + sessionId))
+                .header("Accept", "text/event-stream")
+                .build();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        List<UpstreamEvent> events = new ArrayList<>();
+        SseFrameParser parser = new SseFrameParser((eventType, lastEventId, data, length) -> {
+            try {
+                events.addAll(UpstreamFrameDecoder.decode(data, length));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return false;
+        });
+        try (InputStream body = response.body()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                parser.feed(buffer, 0, read);
+            }
+        }
+        return events;
+    }
+}
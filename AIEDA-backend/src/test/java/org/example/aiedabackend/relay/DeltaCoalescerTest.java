@@ -0,0 +1,49 @@
+package org.example.aiedabackend.relay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DeltaCoalescerTest {
+
+    private final List<String> frames = new ArrayList<>();
+
+    @Test
+    void sendsImmediatelyAfterQuietPeriodAndBatchesWithinWindow() throws Exception {
+        DeltaCoalescer coalescer = new DeltaCoalescer(1024, 20, content -> frames.add(content.toString()));
+
+        assertEquals(-1, coalescer.append("a", 1000));
+        assertEquals(15, coalescer.append("b", 1005));
+        assertEquals(5, coalescer.append("c", 1015));
+        coalescer.flush(1020);
+        assertEquals(-1, coalescer.append("d", 1100));
+
+        assertEquals(List.of("a", "bc", "d"), frames);
+        assertEquals(3, coalescer.getFramesSent());
+        assertEquals(4, coalescer.getDeltasReceived());
+    }
+
+    @Test
+    void flushesWhenByteLimitIsReached() throws Exception {
+        DeltaCoalescer coalescer = new DeltaCoalescer(6, 20, content -> frames.add(content.toString()));
+
+        coalescer.append("x", 0);
+        coalescer.append("中", 1);
+        assertEquals(-1, coalescer.append("文", 2));
+
+        assertEquals(List.of("x", "中文"), frames);
+    }
+
+    @Test
+    void zeroWindowSendsEveryDelta() throws Exception {
+        DeltaCoalescer coalescer = new DeltaCoalescer(1024, 0, content -> frames.add(content.toString()));
+
+        coalescer.append("a", 0);
+        coalescer.append("b", 0);
+
+        assertEquals(List.of("a", "b"), frames);
+    }
+}
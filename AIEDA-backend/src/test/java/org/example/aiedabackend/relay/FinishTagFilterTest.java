@@ -0,0 +1,108 @@
+package org.example.aiedabackend.relay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 基于随机生成输入的性质测试：每个性质在大量随机文本和随机切分方式上验证，
+ * 失败信息中带有种子，便于复现
+ */
+class FinishTagFilterTest {
+
+    private static final int CASES = 3000;
+    private static final String[] PIECES = {
+            "<finish>", "</finish>", "<FINISH>", "</Finish>", "<fin", "ish>", "</", "<", ">", "/",
+            "f", "i", "n", "s", "h", "F", "H", "a", " ", "中文", "x < y", "<div>", "a<=b", "\n"
+    };
+
+    @Test
+    void outputEqualsWholeTextFilteringForAnyChunking() {
+        for (int seed = 0; seed < CASES; seed++) {
+            Random random = new Random(seed);
+            String text = randomText(random);
+            String streamed = filterChunks(new FinishTagFilter(), randomChunks(random, text));
+
+            assertEquals(reference(text), streamed, "seed=" + seed + ", text=" + text);
+        }
+    }
+
+    @Test
+    void emittedTextIsAlwaysAPrefixOfFinalOutputAndPendingIsBounded() {
+        for (int seed = 0; seed < CASES; seed++) {
+            Random random = new Random(seed);
+            String text = randomText(random);
+            String expected = reference(text);
+            FinishTagFilter filter = new FinishTagFilter();
+            StringBuilder emitted = new StringBuilder();
+
+            for (String chunk : randomChunks(random, text)) {
+                emitted.append(filter.filter(chunk));
+                assertTrue(expected.startsWith(emitted.toString()), "seed=" + seed + ", text=" + text);
+                assertTrue(filter.pendingLength() <= "</finish".length(), "seed=" + seed);
+            }
+        }
+    }
+
+    @Test
+    void textWithoutAngleBracketPassesThroughChunkByChunk() {
+        for (int seed = 0; seed < CASES; seed++) {
+            Random random = new Random(seed);
+            String text = randomText(random).replace("<", "");
+            FinishTagFilter filter = new FinishTagFilter();
+
+            for (String chunk : randomChunks(random, text)) {
+                assertEquals(chunk, filter.filter(chunk).toString(), "seed=" + seed);
+            }
+        }
+    }
+
+    @Test
+    void tagSplitAcrossChunksIsRemovedAndOtherTagsKept() {
+        FinishTagFilter filter = new FinishTagFilter();
+        String out = filterChunks(filter, List.of("结果<fi", "NiSh>", "<b>正确</b>", "</", "finish", ">", "<fin"));
+
+        assertEquals("结果<b>正确</b><fin", out);
+    }
+
+    private static String filterChunks(FinishTagFilter filter, List<String> chunks) {
+        StringBuilder out = new StringBuilder();
+        for (String chunk : chunks) {
+            out.append(filter.filter(chunk));
+        }
+        out.append(filter.flush());
+        return out.toString();
+    }
+
+    private static String reference(String text) {
+        return text.replaceAll("(?i)</?finish>", "");
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int pieces = random.nextInt(30);
+        for (int i = 0; i < pieces; i++) {
+            text.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return text.toString();
+    }
+
+    private static List<String> randomChunks(Random random, String text) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + 1 + random.nextInt(6));
+            chunks.add(text.substring(start, end));
+            start = end;
+        }
+        if (random.nextBoolean()) {
+            chunks.add(random.nextInt(Math.max(1, chunks.size())), "");
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.aiedabackend.relay;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class RelayMetricsTest {
+
+    @Test
+    void registersGenerationTimersOncePerOutcome() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RelayMetrics metrics = new RelayMetrics(registry);
+        // 构造时即注册全部结果的计时器
+        assertEquals(4, registry.find("ai.generation.duration").timers().size());
+
+        Timer complete = registry.get("ai.generation.duration").tag("outcome", "complete").timer();
+        metrics.generationCompleted("complete", TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.generationCompleted("complete", TimeUnit.MILLISECONDS.toNanos(40));
+        metrics.generationCompleted("error", TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertEquals(2, complete.count());
+        assertEquals(60, complete.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get("ai.generation.duration").tag("outcome", "error").timer().count());
+        assertEquals(4, registry.find("ai.generation.duration").timers().size());
+
+        metrics.generationCompleted("cancelled", 1);
+        assertNotNull(registry.find("ai.generation.duration").tag("outcome", "cancelled").timer());
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.aiedabackend.relay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelayTracerTest {
+
+    @Test
+    void skipsUnsampledSessionsUnlessForced() {
+        RelayTracer tracer = new RelayTracer(8, 16, 0, 60);
+        RelayTracer.Trace off = tracer.begin("s1");
+        assertSame(RelayTracer.Trace.OFF, off);
+        off.record(RelayTracer.Kind.FRAME, 1, 10, 1);
+        assertTrue(tracer.dump("s1").isEmpty());
+
+        tracer.enable("s1");
+        RelayTracer.Trace trace = tracer.begin("s1");
+        assertTrue(trace.isOn());
+        trace.record(RelayTracer.Kind.DELTA, 1, 5, 4);
+        List<RelayTracer.Event> events = tracer.dump("s1");
+        assertEquals(2, events.size());
+        assertEquals(RelayTracer.Kind.GENERATION_START, events.get(0).kind());
+        assertEquals(RelayTracer.Kind.DELTA, events.get(1).kind());
+        assertEquals(5, events.get(1).a());
+        assertEquals(4, events.get(1).b());
+        assertEquals(1, tracer.getTracedGenerations());
+
+        tracer.disable("s1");
+        assertFalse(tracer.begin("s1").isOn());
+    }
+
+    @Test
+    void keepsOnlyTheMostRecentEventsInOrder() {
+        RelayTracer tracer = new RelayTracer(4, 16, 1.0, 60);
+        RelayTracer.Trace trace = tracer.begin("s2");
+        for (int frame = 1; frame <= 10; frame++) {
+            trace.record(RelayTracer.Kind.FRAME, frame, frame * 10, 1);
+        }
+        trace.record(RelayTracer.Kind.SESSION_MISMATCH, 10, 0, "other-session");
+
+        List<RelayTracer.Event> events = tracer.dump("s2");
+        assertEquals(List.of(8, 9, 10, 10), events.stream().map(RelayTracer.Event::frame).toList());
+        assertEquals("other-session", events.get(3).detail());
+        assertEquals(0, events.get(0).offsetMicros());
+        assertTrue(events.get(3).offsetMicros() >= 0);
+        assertEquals(List.of("s2"), tracer.sessions());
+    }
+}
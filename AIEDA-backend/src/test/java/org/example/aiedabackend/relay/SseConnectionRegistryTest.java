@@ -0,0 +1,94 @@
+package org.example.aiedabackend.relay;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SseConnectionRegistryTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final SseConnectionRegistry registry = new SseConnectionRegistry(10_000, 1000, 4, clock::get);
+
+    private SseEmitter register(int sid) {
+        SseEmitter emitter = new SseEmitter();
+        registry.register(sid, emitter, new SseFrameWriter(emitter));
+        return emitter;
+    }
+
+    private void advance(long ms) {
+        // 逐个tick推进，模拟推进线程
+        for (long step = 0; step < ms; step += 1000) {
+            clock.addAndGet(1000);
+            registry.tick();
+        }
+    }
+
+    @Test
+    void closesIdleConnectionAfterTimeout() {
+        SseEmitter emitter = register(1);
+        registry.tick();
+
+        advance(9000);
+        assertSame(emitter, registry.getEmitter(1));
+
+        advance(1000);
+        assertNull(registry.getEmitter(1));
+        assertEquals(0, registry.size());
+        assertEquals(1, registry.getTimeoutCount());
+    }
+
+    @Test
+    void activityPushesDeadlineBack() {
+        SseEmitter emitter = register(1);
+        registry.tick();
+
+        // 超时时间超过时间轮一圈，连接会被提前检查并按实际到期时间放回
+        advance(8000);
+        registry.touch(emitter);
+        advance(9000);
+        assertSame(emitter, registry.getEmitter(1));
+
+        advance(1000);
+        assertNull(registry.getEmitter(1));
+    }
+
+    @Test
+    void pausedConnectionDoesNotTimeOutUntilResumed() {
+        SseEmitter emitter = register(1);
+        registry.tick();
+
+        assertTrue(registry.pauseTimeout(1));
+        advance(30_000);
+        assertSame(emitter, registry.getEmitter(1));
+
+        assertTrue(registry.resumeTimeout(1));
+        advance(9000);
+        assertSame(emitter, registry.getEmitter(1));
+        advance(1000);
+        assertNull(registry.getEmitter(1));
+        assertFalse(registry.resumeTimeout(1));
+    }
+
+    @Test
+    void replacingConnectionKeepsNewMappingWhenOldOneUnregisters() {
+        SseEmitter first = register(7);
+        SseEmitter second = register(7);
+
+        // 旧连接的完成回调晚于新连接注册
+        registry.unregister(first);
+
+        assertSame(second, registry.getEmitter(7));
+        assertNull(registry.getWriter(first));
+        assertEquals(1, registry.size());
+
+        registry.close(second, "测试");
+        assertEquals(0, registry.size());
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.aiedabackend.relay;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SseFrameParserTest {
+
+    private final List<String> frames = new ArrayList<>();
+    private final List<String> types = new ArrayList<>();
+    private final SseFrameParser parser = new SseFrameParser((eventType, lastEventId, data, length) -> {
+        types.add(eventType);
+        frames.add(new String(data, 0, length, StandardCharsets.UTF_8));
+        return false;
+    });
+
+    @Test
+    void parsesFramesSplitAtArbitraryBoundaries() {
+        byte[] stream = ("data: {\"a\":1}\n\n"
+                + ": comment\r\n"
+                + "event: chunk\r\nid: 7\r\ndata: line1\r\ndata:line2\r\n\r\n"
+                + "data: 中文\r\rretry: 3000\n\n").getBytes(StandardCharsets.UTF_8);
+        for (byte b : stream) {
+            parser.feed(new byte[]{b}, 0, 1);
+        }
+
+        assertEquals(List.of("{\"a\":1}", "line1\nline2", "中文"), frames);
+        assertEquals(Arrays.asList(null, "chunk", null), types);
+        assertEquals("7", parser.getLastEventId());
+        assertEquals(3000, parser.getRetryMs());
+    }
+
+    @Test
+    void stopsWhenHandlerRequestsIt() {
+        SseFrameParser stopping = new SseFrameParser((eventType, lastEventId, data, length) -> {
+            frames.add(new String(data, 0, length, StandardCharsets.UTF_8));
+            return true;
+        });
+        byte[] stream = "data: first\n\ndata: second\n\n".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(stopping.feed(stream, 0, stream.length));
+        assertEquals(List.of("first"), frames);
+    }
+}
@@ -0,0 +1,102 @@
+package org.example.aiedabackend.relay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SseFrameWriterTest {
+
+    @Test
+    void deltaFrameMatchesSseEmitterEventBuilder() {
+        String content = "第一行\n\"引号\" \\ 制表\t";
+        String json = "{\"type\":\"delta\",\"content\":\"第一行\\n\\\"引号\\\" \\\\ 制表\\t\"}";
+        Set<ResponseBodyEmitter.DataWithMediaType> expected = SseEmitter.event()
+                .name("message")
+                .data(json)
+                .reconnectTime(3000)
+                .build();
+
+        assertEquals(text(expected), text(new SseFrameWriter(new SseEmitter()).deltaFrame(content)));
+    }
+
+    @Test
+    void escapesEveryControlCharacter() throws Exception {
+        StringBuilder raw = new StringBuilder();
+        for (char c = 0; c < 0x20; c++) {
+            raw.append(c);
+        }
+        raw.append("\"\\中文");
+        StringBuilder json = new StringBuilder();
+        SseFrameWriter.appendJsonString(json, raw);
+
+        assertEquals(-1, json.indexOf("\n"));
+        assertEquals(raw.toString(), new ObjectMapper().readValue("{\"v\":" + json + "}", Map.class).get("v"));
+    }
+
+    @Test
+    void recordsDeltaMetricsPerGeneration() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SseFrameWriter writer = new SseFrameWriter(new SseEmitter(), 0, 0, null, new RelayMetrics(registry));
+
+        writer.beginGeneration(null);
+        writer.sendDelta("ab");
+        writer.sendDelta("中文");
+        writer.sendDelta("c");
+        // 新的生成不把与上一次生成最后一帧之间的间隔计入帧间隔
+        writer.beginGeneration(null);
+        writer.sendDelta("d");
+
+        assertEquals(4, registry.get("ai.sse.delta.frames").counter().count());
+        assertEquals(2 + 6 + 1 + 1, registry.get("ai.sse.delta.bytes").counter().count());
+        assertEquals(2, registry.get("ai.sse.delta.gap").timer().count());
+    }
+
+    @Test
+    void windowFlushWritesOnFlushExecutorInsteadOfScheduler() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        CountDownLatch sent = new CountDownLatch(2);
+        SseEmitter emitter = new SseEmitter() {
+            @Override
+            public void send(Set<ResponseBodyEmitter.DataWithMediaType> items) {
+                threads.add(Thread.currentThread().getName());
+                sent.countDown();
+            }
+        };
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "test-scheduler"));
+        ExecutorService flushExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-flush"));
+        try {
+            SseFrameWriter writer = new SseFrameWriter(emitter, 1024, 20, scheduler, flushExecutor, null);
+            // 空闲后的第一个delta立即写出，紧随其后的暂存到窗口结束
+            writer.sendDelta("a");
+            writer.sendDelta("b");
+            assertTrue(sent.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(Thread.currentThread().getName(), "test-flush"), threads);
+        } finally {
+            scheduler.shutdownNow();
+            flushExecutor.shutdownNow();
+        }
+    }
+
+    private static String text(Set<ResponseBodyEmitter.DataWithMediaType> items) {
+        StringBuilder text = new StringBuilder();
+        for (ResponseBodyEmitter.DataWithMediaType item : items) {
+            text.append(item.getData());
+        }
+        return text.toString();
+    }
+}
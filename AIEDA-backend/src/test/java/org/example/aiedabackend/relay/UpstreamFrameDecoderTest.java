@@ -0,0 +1,49 @@
+package org.example.aiedabackend.relay;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class UpstreamFrameDecoderTest {
+
+    @Test
+    void streamingPathMatchesFullBinding() throws Exception {
+        String[] frames = {
+                "{\"events\":[{\"session_id\":\"1\",\"user_id\":\"2\",\"event\":\"llm_tool.chunk\",\"tool\":\"llm\","
+                        + "\"payload\":{\"index\":3,\"delta\":\"hi\",\"meta\":{\"a\":[1,2]}}}]}",
+                "{\"events\":[{\"data\":{\"session_id\":\"1\",\"event\":\"llm_tool.chunk\",\"payload\":{\"delta\":\"nested\"}}},"
+                        + "{\"event\":\"agent.loop_end\",\"extra\":[{}]}]}",
+                "{\"ts\":1,\"events\":[null,{\"event\":\"tool.call\",\"payload\":{\"delta\":\"ignored\"}}]}"
+        };
+        for (String frame : frames) {
+            byte[] bytes = frame.getBytes(StandardCharsets.UTF_8);
+            assertEquals(UpstreamFrameDecoder.decodeFrame(bytes, bytes.length).toEvents(),
+                    UpstreamFrameDecoder.decodeEventsFrame(bytes, bytes.length), frame);
+        }
+    }
+
+    @Test
+    void decodesChunkDelta() throws Exception {
+        byte[] bytes = "{\"events\":[{\"session_id\":\"1\",\"event\":\"llm_tool.chunk\",\"payload\":{\"delta\":\"你好\"}}]}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        List<UpstreamEvent> events = UpstreamFrameDecoder.decode(bytes, bytes.length);
+
+        assertEquals(List.of(new UpstreamEvent(UpstreamEvent.Kind.CHUNK, "llm_tool.chunk", "1", null, null, "你好")), events);
+    }
+
+    @Test
+    void fallsBackToBindingForLegacyAndConnectionFrames() throws Exception {
+        byte[] legacy = ("{\"type\":\"event\",\"data\":{\"data\":{\"batch\":true,\"events\":"
+                + "[{\"data\":{\"event\":\"llm_tool.chunk\",\"payload\":{\"delta\":\"yo\"}}}]}}}").getBytes(StandardCharsets.UTF_8);
+        byte[] connection = "{\"type\":\"connection\",\"message\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertNull(UpstreamFrameDecoder.decodeEventsFrame(legacy, legacy.length));
+        assertEquals("yo", UpstreamFrameDecoder.decode(legacy, legacy.length).get(0).text());
+        assertEquals(List.of(UpstreamEvent.connection("ok")), UpstreamFrameDecoder.decode(connection, connection.length));
+    }
+}
@@ -0,0 +1,205 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class FileServiceImplStreamTest {
+
+    private static final String URL = "http://llm/api/v1/user/download/f1";
+    private static final byte[] CONTENT = "module top(input clk); endmodule\n".getBytes(StandardCharsets.UTF_8);
+
+    private FileServiceImpl fileService;
+    private MockRestServiceServer server;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        fileService = new FileServiceImpl();
+        ReflectionTestUtils.setField(fileService, "fileRestTemplate", restTemplate);
+        ReflectionTestUtils.setField(fileService, "llmServiceUserUrl", "http://llm/api/v1/user");
+        ReflectionTestUtils.setField(fileService, "streamBufferSize", 8);
+    }
+
+    private static HttpHeaders etag() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag("\"v1\"");
+        headers.setContentLength(CONTENT.length);
+        return headers;
+    }
+
+    @Test
+    void streamsWholeFileWithLengthAndEtag() {
+        server.expect(requestTo(URL)).andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess(CONTENT, MediaType.APPLICATION_OCTET_STREAM).headers(etag()));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        fileService.streamFile("f1", new MockHttpServletRequest(), response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT.length, response.getContentLength());
+        assertEquals("\"v1\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(new String(CONTENT, StandardCharsets.UTF_8), new String(response.getContentAsByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void slicesRangeLocallyWhenUpstreamReturnsFullContent() {
+        server.expect(requestTo(URL)).andExpect(header(HttpHeaders.RANGE, "bytes=7-9"))
+                .andRespond(withSuccess(CONTENT, MediaType.APPLICATION_OCTET_STREAM).headers(etag()));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=7-9");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        fileService.streamFile("f1", request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 7-9/" + CONTENT.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("top", new String(response.getContentAsByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void forwardsUpstreamPartialContentAndUnsatisfiableRanges() {
+        HttpHeaders partial = etag();
+        partial.set(HttpHeaders.CONTENT_RANGE, "bytes 0-5/" + CONTENT.length);
+        partial.setContentLength(6);
+        server.expect(requestTo(URL)).andRespond(withStatus(HttpStatus.PARTIAL_CONTENT)
+                .body("module".getBytes(StandardCharsets.UTF_8)).headers(partial));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-5");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileService.streamFile("f1", request, response);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 0-5/" + CONTENT.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("module", new String(response.getContentAsByteArray(), StandardCharsets.UTF_8));
+
+        server.reset();
+        server.expect(requestTo(URL))
+                .andRespond(withSuccess(CONTENT, MediaType.APPLICATION_OCTET_STREAM).headers(etag()));
+        MockHttpServletRequest outOfRange = new MockHttpServletRequest();
+        outOfRange.addHeader(HttpHeaders.RANGE, "bytes=1000-");
+        MockHttpServletResponse unsatisfiable = new MockHttpServletResponse();
+        fileService.streamFile("f1", outOfRange, unsatisfiable);
+        assertEquals(416, unsatisfiable.getStatus());
+        assertEquals("bytes */" + CONTENT.length, unsatisfiable.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    /**
+     * 真实连接上的大文件：上游忽略Range返回完整内容，返回服务端实际写出的字节数
+     */
+    private static long relayFromLargeUpstream(MockHttpServletRequest request, MockHttpServletResponse response,
+                                               boolean expectFailure) throws Exception {
+        long total = 1L << 30;
+        CompletableFuture<Long> sent = new CompletableFuture<>();
+        HttpServer upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        upstream.createContext("/api/v1/user/download", exchange -> {
+            exchange.sendResponseHeaders(200, total);
+            byte[] chunk = new byte[64 * 1024];
+            long written = 0;
+            try (OutputStream out = exchange.getResponseBody()) {
+                while (written < total) {
+                    out.write(chunk);
+                    written += chunk.length;
+                }
+            } catch (IOException e) {
+                // 客户端断开连接
+            } finally {
+                sent.complete(written);
+            }
+        });
+        upstream.start();
+        try {
+            FileServiceImpl service = new FileServiceImpl();
+            ReflectionTestUtils.setField(service, "fileRestTemplate",
+                    new RestTemplate(new HttpComponentsClientHttpRequestFactory()));
+            ReflectionTestUtils.setField(service, "llmServiceUserUrl",
+                    "http://127.0.0.1:" + upstream.getAddress().getPort() + "/api/v1/user");
+            ReflectionTestUtils.setField(service, "streamBufferSize", 8192);
+            if (expectFailure) {
+                assertThrows(RuntimeException.class, () -> service.streamFile("f1", request, response));
+            } else {
+                service.streamFile("f1", request, response);
+            }
+            return sent.get(30, TimeUnit.SECONDS);
+        } finally {
+            upstream.stop(0);
+        }
+    }
+
+    @Test
+    void abortsUpstreamInsteadOfDrainingAfterLocalRangeCut() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        long sent = relayFromLargeUpstream(request, response, false);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(10, response.getContentAsByteArray().length);
+        // 关闭响应时若读完剩余内容，服务端会写出全部1GB
+        assertTrue(sent < (1L << 30) / 4, "upstream sent " + sent);
+    }
+
+    @Test
+    void abortsUpstreamWhenClientDisconnects() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse() {
+            private final ServletOutputStream disconnecting = new ServletOutputStream() {
+                private long written;
+
+                @Override
+                public void write(int b) throws IOException {
+                    if (++written > 1024 * 1024) {
+                        throw new IOException("Broken pipe");
+                    }
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+            };
+
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return disconnecting;
+            }
+        };
+
+        long sent = relayFromLargeUpstream(new MockHttpServletRequest(), response, true);
+
+        assertTrue(sent < (1L << 30) / 4, "upstream sent " + sent);
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.aiedabackend.dao.FileRepository;
+import org.example.aiedabackend.dao.SessionRepository;
+import org.example.aiedabackend.po.File;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OwnershipCacheTest {
+
+    private final SessionRepository sessionRepository = mock(SessionRepository.class);
+    private final FileRepository fileRepository = mock(FileRepository.class);
+    private OwnershipCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new OwnershipCache();
+        ReflectionTestUtils.setField(cache, "sessionRepository", sessionRepository);
+        ReflectionTestUtils.setField(cache, "fileRepository", fileRepository);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 600L);
+        cache.init();
+    }
+
+    private static SessionRepository.SessionOwner owner(int uid, String title) {
+        return new SessionRepository.SessionOwner() {
+            @Override
+            public Integer getUid() {
+                return uid;
+            }
+
+            @Override
+            public String getTitle() {
+                return title;
+            }
+        };
+    }
+
+    private static File file(String fileId, int uid, int sid) {
+        return new File(fileId, uid, sid, fileId + ".txt", fileId, "/tmp/" + fileId, 1L, "txt", LocalDateTime.now());
+    }
+
+    @Test
+    void servesRepeatedChecksFromCacheUntilSessionDeleted() {
+        when(sessionRepository.findOwnerBySid(1)).thenReturn(owner(7, "title"));
+        assertTrue(cache.ownsSession(7, 1));
+        assertFalse(cache.ownsSession(8, 1));
+        verify(sessionRepository, times(1)).findOwnerBySid(1);
+
+        // 删除会话后重新查询数据库，不再命中旧条目
+        when(sessionRepository.findOwnerBySid(1)).thenReturn(null);
+        cache.invalidateSession(1, true);
+        assertFalse(cache.ownsSession(7, 1));
+        verify(sessionRepository, times(2)).findOwnerBySid(1);
+    }
+
+    @Test
+    void missingSessionIsNotCached() {
+        assertFalse(cache.ownsSession(7, 2));
+        when(sessionRepository.findOwnerBySid(2)).thenReturn(owner(7, "created"));
+        assertTrue(cache.ownsSession(7, 2));
+    }
+
+    @Test
+    void reloadsTitleAfterRename() {
+        when(sessionRepository.findOwnerBySid(1)).thenReturn(owner(7, "old"));
+        assertEquals("old", cache.session(1).title());
+        when(sessionRepository.findOwnerBySid(1)).thenReturn(owner(7, "new"));
+        cache.invalidateSession(1, false);
+        assertEquals("new", cache.session(1).title());
+    }
+
+    @Test
+    void deletingSessionDropsItsFilesOnly() {
+        when(fileRepository.findByFileId("a")).thenReturn(file("a", 7, 1));
+        when(fileRepository.findByFileId("b")).thenReturn(file("b", 7, 2));
+        assertEquals(1, cache.file("a").sid());
+        assertEquals(2, cache.file("b").sid());
+
+        // 会话1删除后其文件随之失效，会话2的文件仍命中缓存
+        when(fileRepository.findByFileId("a")).thenReturn(null);
+        cache.invalidateSession(1, true);
+        assertNull(cache.file("a"));
+        assertEquals(2, cache.file("b").sid());
+        verify(fileRepository, times(2)).findByFileId("a");
+        verify(fileRepository, times(1)).findByFileId("b");
+    }
+
+    @Test
+    void deletingFileDropsItsEntry() {
+        when(fileRepository.findByFileId("a")).thenReturn(file("a", 7, 1));
+        assertEquals(7, cache.file("a").uid());
+        assertEquals(7, cache.file("a").uid());
+        verify(fileRepository, times(1)).findByFileId("a");
+
+        when(fileRepository.findByFileId("a")).thenReturn(null);
+        cache.invalidateFile("a");
+        assertNull(cache.file("a"));
+    }
+}
@@ -0,0 +1,137 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecordIdAllocatorTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    // id_blocks 中 records 行的水位
+    private final AtomicLong maxId = new AtomicLong();
+    private final AtomicInteger reservations = new AtomicInteger();
+    private RecordIdAllocator allocator;
+
+    private RecordIdAllocator allocator(int blockSize, int prefetchThreshold) {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any())).thenAnswer(invocation -> {
+            reservations.incrementAndGet();
+            return List.of(maxId.get());
+        });
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            maxId.set(invocation.getArgument(1));
+            return 1;
+        });
+
+        allocator = new RecordIdAllocator();
+        ReflectionTestUtils.setField(allocator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(allocator, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(allocator, "blockSize", blockSize);
+        ReflectionTestUtils.setField(allocator, "prefetchThreshold", prefetchThreshold);
+        allocator.init();
+        return allocator;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (allocator != null) {
+            allocator.shutdown();
+        }
+    }
+
+    @Test
+    void allocatesContiguousIdsAcrossBlockBoundaries() {
+        maxId.set(40);
+        RecordIdAllocator allocator = allocator(5, 0);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            ids.add(allocator.nextId());
+        }
+        assertEquals(List.of(41, 42, 43, 44, 45, 46, 47, 48, 49, 50, 51, 52), ids);
+        assertEquals(55, maxId.get());
+        assertEquals(3, reservations.get());
+    }
+
+    @Test
+    void reservesNextBlockBeforeCurrentRunsOutWithoutBlockingAllocation() throws Exception {
+        RecordIdAllocator allocator = allocator(10, 3);
+        CountDownLatch reserving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any())).thenAnswer(invocation -> {
+            if (reservations.incrementAndGet() == 2) {
+                reserving.countDown();
+                release.await(10, TimeUnit.SECONDS);
+            }
+            return List.of(maxId.get());
+        });
+
+        for (int expected = 1; expected <= 6; expected++) {
+            assertEquals(expected, allocator.nextId());
+        }
+        assertEquals(1, reservations.get());
+        // 剩余3个时开始预留下一个分段
+        assertEquals(7, allocator.nextId());
+        assertTrue(reserving.await(5, TimeUnit.SECONDS));
+        // 预留仍在进行，当前分段剩余的ID照常分配，不等待数据库
+        assertEquals(8, allocator.nextId());
+        assertEquals(9, allocator.nextId());
+        assertEquals(10, allocator.nextId());
+        release.countDown();
+        assertEquals(11, allocator.nextId());
+        assertEquals(2, reservations.get());
+    }
+
+    @Test
+    void retriesReservationAfterFailure() {
+        RecordIdAllocator allocator = allocator(5, 1);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"))
+                .thenAnswer(invocation -> List.of(maxId.get()));
+
+        assertThrows(DataAccessResourceFailureException.class, allocator::nextId);
+        assertEquals(1, allocator.nextId());
+    }
+
+    @Test
+    void allocatesDistinctIdsConcurrently() throws Exception {
+        RecordIdAllocator allocator = allocator(7, 2);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 800; i++) {
+            pool.execute(() -> ids.add(allocator.nextId()));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(800, ids.size());
+        // 分段依次预留、依次启用，已分配的ID连续（之后可能还预留了一个分段）
+        for (int id = 1; id <= 800; id++) {
+            assertTrue(ids.contains(id), "missing " + id);
+        }
+    }
+}
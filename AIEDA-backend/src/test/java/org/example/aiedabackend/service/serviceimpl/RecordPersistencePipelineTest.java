@@ -0,0 +1,243 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.aiedabackend.po.Record;
+import org.example.aiedabackend.util.ContentCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecordPersistencePipelineTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final AtomicInteger rids = new AtomicInteger();
+    // 按写入顺序记录已提交事务中的记录ID
+    private final List<Integer> written = new CopyOnWriteArrayList<>();
+    private final AtomicInteger batchCalls = new AtomicInteger();
+    private volatile Predicate<List<Integer>> failWhen = batch -> false;
+    private volatile CountDownLatch writerBlocked;
+    private volatile CountDownLatch releaseWriter;
+    private RecordPersistencePipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        RecordIdAllocator allocator = mock(RecordIdAllocator.class);
+        when(allocator.nextId()).thenAnswer(invocation -> rids.incrementAndGet());
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any())).thenAnswer(invocation -> {
+            List<Integer> batch = ridsOf(invocation.getArgument(1), invocation.getArgument(3));
+            batchCalls.incrementAndGet();
+            if (writerBlocked != null) {
+                writerBlocked.countDown();
+                releaseWriter.await(10, TimeUnit.SECONDS);
+            }
+            if (failWhen.test(batch)) {
+                throw new DataIntegrityViolationException("rejected " + batch);
+            }
+            written.addAll(batch);
+            return new int[0][];
+        });
+
+        pipeline = new RecordPersistencePipeline();
+        ReflectionTestUtils.setField(pipeline, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(pipeline, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(pipeline, "recordIdAllocator", allocator);
+        ReflectionTestUtils.setField(pipeline, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(pipeline, "contentCodec", new ContentCodec());
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(pipeline, "maxBatchSize", 10);
+        ReflectionTestUtils.setField(pipeline, "maxRetries", 2);
+        ReflectionTestUtils.setField(pipeline, "submitTimeoutMs", 100L);
+        pipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (releaseWriter != null) {
+            releaseWriter.countDown();
+        }
+        pipeline.stop();
+    }
+
+    /**
+     * 通过语句设置器取出一批记录的ID（第1个参数）
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Integer> ridsOf(Collection<Object> batch, ParameterizedPreparedStatementSetter<Object> setter)
+            throws Exception {
+        List<Integer> result = new ArrayList<>();
+        PreparedStatement ps = mock(PreparedStatement.class);
+        doAnswer(invocation -> {
+            if ((int) invocation.getArgument(0) == 1) {
+                result.add(invocation.getArgument(1));
+            }
+            return null;
+        }).when(ps).setInt(anyInt(), anyInt());
+        for (Object pending : batch) {
+            setter.setValues(ps, pending);
+        }
+        return result;
+    }
+
+    private static Record record(int sid, int sequence) {
+        return new Record(sid, 1, sequence % 2 == 1, "message-" + sequence, sequence, 0, LocalDateTime.now());
+    }
+
+    private void blockWriter() {
+        writerBlocked = new CountDownLatch(1);
+        releaseWriter = new CountDownLatch(1);
+    }
+
+    @Test
+    void writesRecordsOfSessionInSubmitOrder() throws Exception {
+        List<CompletableFuture<Record>> futures = new ArrayList<>();
+        for (int sequence = 1; sequence <= 50; sequence++) {
+            futures.add(pipeline.submit(record(1, sequence)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int rid = 1; rid <= 50; rid++) {
+            expected.add(rid);
+        }
+        assertEquals(expected, written);
+        assertTrue(pipeline.unsaved(1).isEmpty());
+        assertEquals(0, pipeline.maxUnsavedSequence(1));
+    }
+
+    @Test
+    void retriesFailedBatchUntilItSucceeds() throws Exception {
+        AtomicInteger failures = new AtomicInteger(2);
+        failWhen = batch -> failures.getAndDecrement() > 0;
+
+        Record saved = pipeline.submit(record(1, 1)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, saved.getRid());
+        assertEquals(List.of(1), written);
+        assertEquals(3, batchCalls.get());
+    }
+
+    @Test
+    void isolatesRecordThatKeepsFailing() throws Exception {
+        blockWriter();
+        CompletableFuture<Record> first = pipeline.submit(record(1, 1));
+        assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+        // 后续三条进入同一批，其中rid=3始终写入失败
+        failWhen = batch -> batch.contains(3);
+        CompletableFuture<Record> second = pipeline.submit(record(1, 2));
+        CompletableFuture<Record> bad = pipeline.submit(record(1, 3));
+        CompletableFuture<Record> fourth = pipeline.submit(record(1, 4));
+        writerBlocked = null;
+        releaseWriter.countDown();
+
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        fourth.get(10, TimeUnit.SECONDS);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> bad.get(10, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof DataIntegrityViolationException);
+        // 整批重试后逐条写入，其余记录仍按顺序落库
+        assertEquals(List.of(1, 2, 4), written);
+        assertNull(pipeline.unsavedRecord(3));
+    }
+
+    @Test
+    void cancelSessionDropsQueuedRecordsAndWaitsForBatchInFlight() throws Exception {
+        blockWriter();
+        CompletableFuture<Record> inFlight = pipeline.submit(record(1, 1));
+        assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Record> queued = pipeline.submit(record(1, 2));
+        CompletableFuture<Record> otherSession = pipeline.submit(record(2, 1));
+        assertEquals(2, pipeline.maxUnsavedSequence(1));
+
+        CompletableFuture<Void> cancelled = CompletableFuture.runAsync(() -> pipeline.cancelSession(1, 10000L));
+        // 队列中的记录立即丢弃，正在写入的一批完成前不返回
+        assertThrows(CancellationException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertNull(pipeline.unsavedRecord(2));
+        Thread.sleep(200);
+        assertFalse(cancelled.isDone());
+
+        writerBlocked = null;
+        releaseWriter.countDown();
+        cancelled.get(5, TimeUnit.SECONDS);
+        inFlight.get(5, TimeUnit.SECONDS);
+        otherSession.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(1, 3), written);
+
+        // 删除后生成线程迟到的提交不再写入
+        assertTrue(pipeline.submit(record(1, 3)).isCancelled());
+        assertTrue(pipeline.unsaved(1).isEmpty());
+    }
+
+    @Test
+    void cancelSessionGivesUpWaitingAfterTimeout() throws Exception {
+        blockWriter();
+        pipeline.submit(record(1, 1));
+        assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        pipeline.cancelSession(1, 100L);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs >= 100 && elapsedMs < 5000, "elapsed " + elapsedMs);
+    }
+
+    @Test
+    void rejectsSubmitWhenQueueStaysFull() throws Exception {
+        // 以容量1重新启动，写入线程阻塞时队列只容得下一条
+        pipeline.stop();
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 1);
+        pipeline.start();
+        blockWriter();
+        CompletableFuture<Record> inFlight = pipeline.submit(record(1, 1));
+        assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Record> queued = pipeline.submit(record(1, 2));
+
+        long start = System.nanoTime();
+        CompletableFuture<Record> rejected = pipeline.submit(record(1, 3));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs >= 100 && elapsedMs < 5000, "elapsed " + elapsedMs);
+        ExecutionException error = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(error.getCause() instanceof RejectedExecutionException);
+        assertNull(pipeline.unsavedRecord(3));
+        assertEquals(2, pipeline.maxUnsavedSequence(1));
+
+        writerBlocked = null;
+        releaseWriter.countDown();
+        inFlight.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(1, 2), written);
+    }
+}
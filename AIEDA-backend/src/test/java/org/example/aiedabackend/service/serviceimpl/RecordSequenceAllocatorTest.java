@@ -0,0 +1,77 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.example.aiedabackend.dao.RecordRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecordSequenceAllocatorTest {
+
+    private final RecordRepository repository = mock(RecordRepository.class);
+    private final RecordPersistencePipeline pipeline = mock(RecordPersistencePipeline.class);
+
+    private RecordSequenceAllocator allocator() {
+        RecordSequenceAllocator allocator = new RecordSequenceAllocator();
+        ReflectionTestUtils.setField(allocator, "recordRepository", repository);
+        ReflectionTestUtils.setField(allocator, "recordPersistencePipeline", pipeline);
+        ReflectionTestUtils.setField(allocator, "idleSeconds", 3600L);
+        allocator.init();
+        return allocator;
+    }
+
+    @Test
+    void seedsOnceFromMaxSequenceAndAllocatesDistinctBlocksConcurrently() throws Exception {
+        when(repository.findMaxSequenceBySid(1)).thenReturn(4);
+        RecordSequenceAllocator allocator = allocator();
+
+        Set<Integer> firsts = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 100; i++) {
+            pool.execute(() -> firsts.add(allocator.allocate(1, 2)));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, firsts.size());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(firsts.contains(5 + 2 * i));
+        }
+        verify(repository, times(1)).findMaxSequenceBySid(1);
+
+        allocator.evict(1);
+        when(repository.findMaxSequenceBySid(1)).thenReturn(0);
+        assertEquals(1, allocator.allocate(1, 2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reseedsAfterIdleEvictionFromUnsavedRecordsAheadOfDatabase() {
+        when(repository.findMaxSequenceBySid(1)).thenReturn(4);
+        RecordSequenceAllocator allocator = allocator();
+        assertEquals(5, allocator.allocate(1, 2));
+
+        // 计数器空闲淘汰时 5、6 仍在写入管道中排队，数据库里最大仍是4
+        ((Cache<Integer, ?>) ReflectionTestUtils.getField(allocator, "counters")).invalidateAll();
+        when(pipeline.maxUnsavedSequence(1)).thenReturn(6);
+        assertEquals(7, allocator.allocate(1, 2));
+
+        // 已全部落库时以数据库为准
+        allocator.evict(1);
+        when(pipeline.maxUnsavedSequence(1)).thenReturn(0);
+        when(repository.findMaxSequenceBySid(1)).thenReturn(8);
+        assertEquals(9, allocator.allocate(1, 2));
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import org.example.aiedabackend.vo.RecordVO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecordTailCacheTest {
+
+    private static RecordVO record(int sequence) {
+        RecordVO recordVO = new RecordVO();
+        recordVO.setRid(1000 + sequence);
+        recordVO.setSid(1);
+        recordVO.setSequence(sequence);
+        recordVO.setContent("content-" + sequence);
+        return recordVO;
+    }
+
+    private static List<Integer> sequences(List<RecordVO> records) {
+        return records.stream().map(RecordVO::getSequence).toList();
+    }
+
+    @Test
+    void keepsLastRecordsInSequenceOrderWhenAppendedOutOfOrder() {
+        RecordTailCache.Tail tail = new RecordTailCache.Tail(4, true);
+        tail.insert(record(1));
+        tail.insert(record(3));
+        tail.insert(record(2));
+        tail.insert(record(3));
+        assertEquals(List.of(1, 2, 3), sequences(tail.fullHistory()));
+
+        tail.insert(record(5));
+        tail.insert(record(4));
+        // 超出容量后丢弃最早的记录，不再是完整历史
+        assertNull(tail.fullHistory());
+        assertEquals(List.of(4, 5), sequences(tail.page(null, null, 2)));
+        assertEquals(List.of(2, 3, 4, 5), sequences(tail.page(null, null, 4)));
+    }
+
+    @Test
+    void fallsBackWhenPageIsNotFullyCovered() {
+        RecordTailCache.Tail tail = new RecordTailCache.Tail(3, false);
+        tail.insert(record(10));
+        tail.insert(record(11));
+        tail.insert(record(12));
+
+        assertEquals(List.of(10, 11), sequences(tail.page(12, null, 2)));
+        assertNull(tail.page(11, null, 2));
+        assertEquals(List.of(11, 12), sequences(tail.page(null, 10, 5)));
+        assertNull(tail.page(null, 5, 5));
+
+        RecordTailCache.Tail complete = new RecordTailCache.Tail(3, true);
+        complete.insert(record(1));
+        assertEquals(List.of(1), sequences(complete.page(null, null, 3)));
+        assertEquals(List.of(), sequences(complete.page(1, null, 3)));
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.aiedabackend.service.serviceimpl;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionActivityTrackerTest {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+    private final SessionActivityTracker tracker = new SessionActivityTracker();
+
+    SessionActivityTrackerTest() {
+        ReflectionTestUtils.setField(tracker, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushesOnlyTheRequestedUserAndBatchesSessionIds() {
+        tracker.touch(1, 10);
+        tracker.touch(1, 11);
+        tracker.touch(1, 10);
+        tracker.touch(2, 20);
+
+        tracker.flushUser(1);
+
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate, atLeastOnce()).update(anyString(), params.capture());
+        Set<Integer> flushed = new HashSet<>();
+        for (MapSqlParameterSource source : params.getAllValues()) {
+            assertEquals(1, source.getValue("uid"));
+            flushed.addAll((List<Integer>) source.getValue("sids"));
+        }
+        assertEquals(Set.of(10, 11), flushed);
+
+        // 已写回的会话不会重复写入
+        reset(jdbcTemplate);
+        tracker.flushUser(1);
+        verify(jdbcTemplate, never()).update(anyString(), any(MapSqlParameterSource.class));
+    }
+
+    @Test
+    void keepsActivityWhenWriteFails() {
+        tracker.touch(1, 10);
+        when(jdbcTemplate.update(anyString(), any(MapSqlParameterSource.class))).thenThrow(new IllegalStateException("db down"));
+        assertThrows(IllegalStateException.class, () -> tracker.flushUser(1));
+
+        reset(jdbcTemplate);
+        tracker.flushUser(1);
+        verify(jdbcTemplate).update(anyString(), any(MapSqlParameterSource.class));
+    }
+}
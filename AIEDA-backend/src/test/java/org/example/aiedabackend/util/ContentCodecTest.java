@@ -0,0 +1,94 @@
+package org.example.aiedabackend.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentCodecTest {
+
+    private static ContentCodec codec(boolean enabled) {
+        ContentCodec codec = new ContentCodec();
+        ReflectionTestUtils.setField(codec, "enabled", enabled);
+        ReflectionTestUtils.setField(codec, "thresholdChars", 100);
+        ReflectionTestUtils.setField(codec, "prefixChars", 16);
+        ReflectionTestUtils.setField(codec, "level", 6);
+        return codec;
+    }
+
+    @Test
+    void compressesLongContentAndRoundTrips() throws Exception {
+        String content = "always @(posedge clk) q <= d; // 触发器\n".repeat(50);
+        ContentCodec.Encoded encoded = codec(true).encode(content);
+
+        assertNotNull(encoded);
+        assertEquals(ContentCodec.FORMAT_DEFLATE, encoded.data()[0]);
+        assertEquals(content.substring(0, 16), encoded.prefix());
+        assertEquals(content.length(), encoded.length());
+        assertTrue(encoded.data().length < content.length());
+        assertEquals(content, ContentCodec.decode(encoded.data(), encoded.length()));
+
+        char[] head = new char[10];
+        try (Reader reader = ContentCodec.reader(encoded.data())) {
+            assertEquals(10, reader.read(head));
+        }
+        assertArrayEquals(content.substring(0, 10).toCharArray(), head);
+    }
+
+    @Test
+    void keepsShortContentAndDisabledCodecAsPlainText() {
+        assertNull(codec(true).encode("module top; endmodule"));
+        assertNull(codec(false).encode("x".repeat(1000)));
+        assertNull(codec(true).encode(null));
+    }
+
+    @Test
+    void rejectsUnknownFormat() {
+        assertThrows(IllegalArgumentException.class, () -> ContentCodec.decode(new byte[]{9, 1, 2}, null));
+    }
+
+    @Test
+    void comparesCompressedSizeWithUtf8Bytes() {
+        // 随机汉字压缩后多于字符数、少于UTF-8字节数，仍有收益
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            builder.append((char) (0x4E00 + random.nextInt(0x5000)));
+        }
+        String content = builder.toString();
+        ContentCodec.Encoded encoded = codec(true).encode(content);
+
+        assertNotNull(encoded);
+        assertTrue(encoded.data().length > content.length());
+        assertTrue(encoded.data().length < content.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(content, ContentCodec.decode(encoded.data(), encoded.length()));
+    }
+
+    @Test
+    void cutsPrefixAtCodePointBoundary() {
+        // 第16个字符是代理对的高位，前缀不包含半个字符
+        String content = "x".repeat(15) + "😀" + "module top; endmodule\n".repeat(20);
+        ContentCodec.Encoded encoded = codec(true).encode(content);
+
+        assertNotNull(encoded);
+        assertEquals("x".repeat(15), encoded.prefix());
+        assertEquals("x".repeat(14) + "😀", ContentCodec.prefix("x".repeat(14) + "😀" + "y", 16));
+        assertEquals("abc", ContentCodec.prefix("abc", 16));
+    }
+
+    @Test
+    void countsUtf8Bytes() {
+        for (String text : new String[]{"", "abc", "é", "触发器", "😀", "a😀b触"}) {
+            assertEquals(text.getBytes(StandardCharsets.UTF_8).length, ContentCodec.utf8Length(text), text);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.aiedabackend.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "0123456789abcdef".repeat(4);
+
+    private static JwtUtil jwtUtil(long expirationMs, long cacheMaxSize) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", expirationMs);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaxSize", cacheMaxSize);
+        ReflectionTestUtils.setField(jwtUtil, "cacheTtlSeconds", 300L);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    @Test
+    void verifiesOnceAndServesRepeatedTokensFromCache() {
+        JwtUtil jwtUtil = jwtUtil(60_000, 100);
+        String token = jwtUtil.generateToken(42, "alice");
+
+        JwtUtil.TokenClaims claims = jwtUtil.verify(token);
+        assertNotNull(claims);
+        assertEquals(42, claims.userId());
+        assertEquals("alice", claims.username());
+        assertSame(claims, jwtUtil.verify(token));
+    }
+
+    @Test
+    void rejectsTamperedAndExpiredTokens() {
+        JwtUtil jwtUtil = jwtUtil(60_000, 100);
+        String token = jwtUtil.generateToken(42, "alice");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        assertNull(jwtUtil.verify(tampered));
+        assertNull(jwtUtil.verify("not-a-token"));
+
+        JwtUtil expiring = jwtUtil(-1_000, 100);
+        assertNull(expiring.verify(expiring.generateToken(42, "alice")));
+    }
+
+    @Test
+    void verifiesWithoutCacheWhenDisabled() {
+        JwtUtil jwtUtil = jwtUtil(60_000, 0);
+        String token = jwtUtil.generateToken(7, "bob");
+        assertEquals(7, jwtUtil.verify(token).userId());
+        assertEquals(jwtUtil.verify(token), jwtUtil.verify(token));
+    }
+
+    @Test
+    void rejectsMissingOrShortSecretAtStartup() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "");
+        IllegalStateException missing = assertThrows(IllegalStateException.class, jwtUtil::init);
+        assertTrue(missing.getMessage().contains("jwt.secret"));
+
+        ReflectionTestUtils.setField(jwtUtil, "secret", "defaultSecret");
+        IllegalStateException weak = assertThrows(IllegalStateException.class, jwtUtil::init);
+        assertTrue(weak.getMessage().contains("13"));
+    }
+}